@@ -0,0 +1,142 @@
+/*
+ * The MIT License (MIT)
+ * <p/>
+ * Copyright (c) 2016-2017 Bertrand Martel
+ * <p/>
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ * <p/>
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ * <p/>
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+package fr.bmartel.speedtest;
+
+/**
+ * Size of read buffer or upload chunk of a connection, adapted to observed throughput.
+ * <p/>
+ * At each adaptation period, size is doubled if calls fill the requested size at a rate higher than max call rate (too
+ * many syscalls and progress callbacks), and halved if calls fill less than a quarter of requested size or happen at a
+ * rate lower than min call rate (memory wasted, coarse progress). Size stays within min and max bounds.
+ *
+ * @author Bertrand Martel
+ */
+class AdaptiveSize {
+
+    /**
+     * minimum size in octet.
+     */
+    private final int mMinSize;
+
+    /**
+     * maximum size in octet.
+     */
+    private final int mMaxSize;
+
+    /**
+     * current size in octet.
+     */
+    private volatile int mSize;
+
+    /**
+     * start time of current adaptation period in nanoseconds (0 until first call so that connection setup is not
+     * taken into account).
+     */
+    private long mPeriodStart;
+
+    /**
+     * number of calls in current adaptation period.
+     */
+    private long mCallCount;
+
+    /**
+     * number of octet requested in current adaptation period.
+     */
+    private long mRequested;
+
+    /**
+     * number of octet transferred in current adaptation period.
+     */
+    private long mTransferred;
+
+    /**
+     * Build an adaptive size.
+     *
+     * @param size    initial size in octet
+     * @param minSize minimum size in octet
+     * @param maxSize maximum size in octet
+     */
+    AdaptiveSize(final int size, final int minSize, final int maxSize) {
+        mMinSize = minSize;
+        mMaxSize = maxSize;
+        mSize = Math.max(minSize, Math.min(maxSize, size));
+    }
+
+    /**
+     * Build a size that never changes.
+     *
+     * @param size size in octet
+     */
+    AdaptiveSize(final int size) {
+        this(size, size, size);
+    }
+
+    /**
+     * Get current size.
+     *
+     * @return size in octet
+     */
+    int getSize() {
+        return mSize;
+    }
+
+    /**
+     * Account for a read/write call and adapt size at the end of adaptation period.
+     *
+     * @param transferred number of octet transferred
+     * @param requested   number of octet requested
+     */
+    void onTransfer(final int transferred, final int requested) {
+
+        if (mMinSize == mMaxSize) {
+            return;
+        }
+        final long now = System.nanoTime();
+
+        if (mPeriodStart == 0) {
+            mPeriodStart = now;
+        }
+        mCallCount++;
+        mRequested += requested;
+        mTransferred += transferred;
+
+        final long elapsed = now - mPeriodStart;
+
+        if (elapsed < SpeedTestConst.ADAPTIVE_SIZE_PERIOD) {
+            return;
+        }
+        final long callRate = mCallCount * SpeedTestConst.NANO_DIVIDER.longValue() / elapsed;
+
+        if (mTransferred * 4 < mRequested || callRate < SpeedTestConst.ADAPTIVE_MIN_CALL_RATE) {
+            mSize = Math.max(mMinSize, mSize / 2);
+        } else if (mTransferred * 4 >= mRequested * 3 && callRate > SpeedTestConst.ADAPTIVE_MAX_CALL_RATE) {
+            mSize = (int) Math.min(mMaxSize, mSize * 2L);
+        }
+        mPeriodStart = now;
+        mCallCount = 0;
+        mRequested = 0;
+        mTransferred = 0;
+    }
+}
@@ -0,0 +1,251 @@
+/*
+ * The MIT License (MIT)
+ * <p/>
+ * Copyright (c) 2016-2017 Bertrand Martel
+ * <p/>
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ * <p/>
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ * <p/>
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+package fr.bmartel.speedtest;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+
+/**
+ * Streaming decoder of HTTP chunked transfer encoding.
+ * <p/>
+ * Data is decoded in place : the decoder only tracks chunk boundaries and gives the number of payload octets found
+ * in each block of received data so that payload is never copied.
+ *
+ * @author Bertrand Martel
+ */
+class ChunkedDecoder {
+
+    /**
+     * max number of hexadecimal digits of a chunk size.
+     */
+    private static final int MAX_SIZE_DIGITS = 15;
+
+    /**
+     * size of the shortest last chunk ("0" followed by two line feeds).
+     */
+    private static final int MIN_LAST_CHUNK_SIZE = 3;
+
+    /**
+     * decoder states.
+     */
+    private enum State {
+        SIZE,
+        EXTENSION,
+        SIZE_LF,
+        DATA,
+        DATA_CR,
+        DATA_LF,
+        TRAILER,
+        TRAILER_LINE,
+        TRAILER_LF,
+        DONE
+    }
+
+    /**
+     * current decoder state.
+     */
+    private State mState = State.SIZE;
+
+    /**
+     * size of current chunk being parsed.
+     */
+    private long mChunkSize;
+
+    /**
+     * number of digits of current chunk size.
+     */
+    private int mSizeDigits;
+
+    /**
+     * number of payload octets remaining in current chunk.
+     */
+    private long mRemaining;
+
+    /**
+     * Decode a block of received data. Buffer position and limit are left unchanged.
+     *
+     * @param data   data buffer
+     * @param offset offset of received data in buffer
+     * @param length number of octets received
+     * @return number of payload octets in received data
+     * @throws IOException invalid chunked encoding
+     */
+    int decode(final ByteBuffer data, final int offset, final int length) throws IOException {
+
+        int payload = 0;
+        int i = offset;
+        final int end = offset + length;
+
+        while (i < end && mState != State.DONE) {
+
+            if (mState == State.DATA) {
+                final int size = (int) Math.min(mRemaining, end - i);
+                payload += size;
+                i += size;
+                mRemaining -= size;
+                if (mRemaining == 0) {
+                    mState = State.DATA_CR;
+                }
+                continue;
+            }
+
+            final byte value = data.get(i++);
+
+            switch (mState) {
+                case SIZE:
+                    final int digit = Character.digit(value, 16);
+                    if (digit != -1 && mSizeDigits < MAX_SIZE_DIGITS) {
+                        mChunkSize = mChunkSize * 16 + digit;
+                        mSizeDigits++;
+                    } else if (mSizeDigits != 0 && (value == ';' || value == ' ' || value == '\t')) {
+                        mState = State.EXTENSION;
+                    } else if (mSizeDigits != 0 && value == '\r') {
+                        mState = State.SIZE_LF;
+                    } else if (mSizeDigits != 0 && value == '\n') {
+                        onSizeLine();
+                    } else {
+                        throw new IOException("invalid chunk size");
+                    }
+                    break;
+                case EXTENSION:
+                    if (value == '\n') {
+                        onSizeLine();
+                    } else if (value == '\r') {
+                        mState = State.SIZE_LF;
+                    }
+                    break;
+                case SIZE_LF:
+                    if (value != '\n') {
+                        throw new IOException("invalid chunk size line");
+                    }
+                    onSizeLine();
+                    break;
+                case DATA_CR:
+                    if (value == '\n') {
+                        mState = State.SIZE;
+                    } else if (value == '\r') {
+                        mState = State.DATA_LF;
+                    } else {
+                        throw new IOException("invalid chunk end");
+                    }
+                    break;
+                case DATA_LF:
+                    if (value != '\n') {
+                        throw new IOException("invalid chunk end");
+                    }
+                    mState = State.SIZE;
+                    break;
+                case TRAILER:
+                    if (value == '\n') {
+                        mState = State.DONE;
+                    } else if (value == '\r') {
+                        mState = State.TRAILER_LF;
+                    } else {
+                        mState = State.TRAILER_LINE;
+                    }
+                    break;
+                case TRAILER_LINE:
+                    if (value == '\n') {
+                        mState = State.TRAILER;
+                    }
+                    break;
+                case TRAILER_LF:
+                    if (value != '\n') {
+                        throw new IOException("invalid chunked body end");
+                    }
+                    mState = State.DONE;
+                    break;
+                default:
+                    break;
+            }
+        }
+        return payload;
+    }
+
+    /**
+     * Process end of chunk size line : last chunk has a size of 0 and is followed by trailer headers.
+     */
+    private void onSizeLine() {
+        mRemaining = mChunkSize;
+        mState = (mChunkSize == 0) ? State.TRAILER : State.DATA;
+        mChunkSize = 0;
+        mSizeDigits = 0;
+    }
+
+    /**
+     * Get number of octets that can be read without going past the end of chunked body : this is the size of the
+     * shortest data that would complete the body from current state.
+     *
+     * @param max max number of octets to read
+     * @return number of octets to read next
+     */
+    int getReadLimit(final int max) {
+
+        final long minimum;
+
+        switch (mState) {
+            case DATA:
+                // chunk data is followed by at least a line feed and last chunk
+                minimum = mRemaining + 1 + MIN_LAST_CHUNK_SIZE;
+                break;
+            case DATA_CR:
+            case DATA_LF:
+                minimum = 1 + MIN_LAST_CHUNK_SIZE;
+                break;
+            case SIZE:
+                minimum = (mSizeDigits == 0) ? MIN_LAST_CHUNK_SIZE : getSizeLineMinimum();
+                break;
+            case EXTENSION:
+            case SIZE_LF:
+                minimum = getSizeLineMinimum();
+                break;
+            case TRAILER_LINE:
+                minimum = 2;
+                break;
+            default:
+                minimum = 1;
+                break;
+        }
+        return (int) Math.min(max, minimum);
+    }
+
+    /**
+     * Get size of the shortest data completing the body when a chunk size line is being read.
+     *
+     * @return number of octets
+     */
+    private long getSizeLineMinimum() {
+        return 1 + ((mChunkSize == 0) ? 1 : mChunkSize + 1 + MIN_LAST_CHUNK_SIZE);
+    }
+
+    /**
+     * Check if last chunk and trailer have been received.
+     *
+     * @return true if chunked body is complete
+     */
+    boolean isDone() {
+        return mState == State.DONE;
+    }
+}
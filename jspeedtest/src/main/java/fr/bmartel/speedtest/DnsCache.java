@@ -0,0 +1,192 @@
+/*
+ * The MIT License (MIT)
+ * <p/>
+ * Copyright (c) 2016-2017 Bertrand Martel
+ * <p/>
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ * <p/>
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ * <p/>
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+
+package fr.bmartel.speedtest;
+
+import fr.bmartel.speedtest.inter.IHostResolver;
+
+import java.net.InetAddress;
+import java.net.UnknownHostException;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Process wide cache of resolved hostnames shared by all speed test tasks : hosts are resolved once per TTL instead
+ * of once per connection, and can be resolved in advance with prefetch so that no test waits for a resolver.
+ * <p/>
+ * Hostnames are resolved by system resolver unless another resolver is set. Failed resolutions are not cached.
+ *
+ * @author Bertrand Martel
+ */
+public final class DnsCache {
+
+    /**
+     * system resolver.
+     */
+    private static final IHostResolver SYSTEM_RESOLVER = new IHostResolver() {
+        @Override
+        public InetAddress[] resolve(final String hostname) throws UnknownHostException {
+            return InetAddress.getAllByName(hostname);
+        }
+    };
+
+    /**
+     * cached address and expiration time in nanoseconds by hostname.
+     */
+    private static final Map<String, Entry> ENTRIES = new ConcurrentHashMap<>();
+
+    /**
+     * resolver used on cache miss.
+     */
+    private static volatile IHostResolver sResolver = SYSTEM_RESOLVER;
+
+    /**
+     * time to live of cached addresses in milliseconds.
+     */
+    private static volatile long sTtl = SpeedTestConst.DEFAULT_DNS_CACHE_TTL;
+
+    /**
+     * Utility class.
+     */
+    private DnsCache() {
+    }
+
+    /**
+     * Get address of a host from cache, resolving it if not cached or expired.
+     *
+     * @param hostname hostname to resolve
+     * @return host address
+     * @throws UnknownHostException hostname could not be resolved
+     */
+    public static InetAddress resolve(final String hostname) throws UnknownHostException {
+
+        final Entry entry = ENTRIES.get(hostname);
+        final long now = System.nanoTime();
+
+        if (entry != null && now - entry.mExpiration < 0) {
+            return entry.mAddress;
+        }
+
+        final InetAddress[] addresses = sResolver.resolve(hostname);
+
+        if (addresses == null || addresses.length == 0) {
+            throw new UnknownHostException(hostname);
+        }
+        // hostname is kept so that it is not looked up again from address (TLS server name, proxy)
+        final InetAddress address = InetAddress.getByAddress(hostname, addresses[0].getAddress());
+
+        if (sTtl > 0) {
+            ENTRIES.put(hostname, new Entry(address, now + TimeUnit.MILLISECONDS.toNanos(sTtl)));
+        }
+        return address;
+    }
+
+    /**
+     * Resolve hosts in advance so that tests don't wait for their resolution.
+     *
+     * @param hostnames hostnames to resolve
+     * @throws UnknownHostException a hostname could not be resolved
+     */
+    public static void prefetch(final String... hostnames) throws UnknownHostException {
+        for (final String hostname : hostnames) {
+            resolve(hostname);
+        }
+    }
+
+    /**
+     * Set resolver used on cache miss.
+     *
+     * @param resolver hostname resolver (null for system resolver)
+     */
+    public static void setResolver(final IHostResolver resolver) {
+        sResolver = (resolver != null) ? resolver : SYSTEM_RESOLVER;
+        ENTRIES.clear();
+    }
+
+    /**
+     * Set time to live of cached addresses.
+     *
+     * @param ttl time to live in milliseconds (0 to disable cache)
+     */
+    public static void setTtl(final long ttl) {
+        if (ttl >= 0) {
+            sTtl = ttl;
+            ENTRIES.clear();
+        }
+    }
+
+    /**
+     * Get time to live of cached addresses.
+     *
+     * @return time to live in milliseconds
+     */
+    public static long getTtl() {
+        return sTtl;
+    }
+
+    /**
+     * Get number of cached hostnames, expired ones included.
+     *
+     * @return number of cached hostnames
+     */
+    public static int getCachedCount() {
+        return ENTRIES.size();
+    }
+
+    /**
+     * Remove all cached addresses.
+     */
+    public static void clear() {
+        ENTRIES.clear();
+    }
+
+    /**
+     * Cached address.
+     */
+    private static final class Entry {
+
+        /**
+         * resolved address.
+         */
+        private final InetAddress mAddress;
+
+        /**
+         * expiration time in nanoseconds.
+         */
+        private final long mExpiration;
+
+        /**
+         * Build a cache entry.
+         *
+         * @param address    resolved address
+         * @param expiration expiration time in nanoseconds
+         */
+        private Entry(final InetAddress address, final long expiration) {
+            mAddress = address;
+            mExpiration = expiration;
+        }
+    }
+}
@@ -0,0 +1,439 @@
+/*
+ * The MIT License (MIT)
+ * <p/>
+ * Copyright (c) 2016-2017 Bertrand Martel
+ * <p/>
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ * <p/>
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ * <p/>
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+package fr.bmartel.speedtest;
+
+import fr.bmartel.speedtest.inter.ISpeedTestListener;
+import fr.bmartel.speedtest.model.OverflowPolicy;
+import fr.bmartel.speedtest.model.SpeedTestError;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicIntegerFieldUpdater;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Listener forwarding speed test events to user listeners from a caller supplied executor so that slow listeners
+ * don't stall transfer threads.
+ * <p/>
+ * Events are put on a lock-free queue drained by a single executor task at a time, which keeps events in order.
+ * Number of queued progress events is bounded : once the bound is reached, overflow policy applies to new progress
+ * events. Completion and error events are always queued.
+ *
+ * @author Bertrand Martel
+ */
+final class ListenerDispatcher implements ISpeedTestListener {
+
+    /**
+     * time in nanoseconds a blocked transfer thread waits before checking queue again.
+     */
+    private static final long BLOCK_PARK_TIME = TimeUnit.MICROSECONDS.toNanos(100);
+
+    /**
+     * executor running drain task.
+     */
+    private final Executor mExecutor;
+
+    /**
+     * max number of progress events queued.
+     */
+    private final int mCapacity;
+
+    /**
+     * policy applied to progress events when queue is full.
+     */
+    private final OverflowPolicy mOverflowPolicy;
+
+    /**
+     * user listeners.
+     */
+    private final List<ISpeedTestListener> mListenerList = new CopyOnWriteArrayList<>();
+
+    /**
+     * events waiting to be delivered.
+     */
+    private final ConcurrentLinkedQueue<Event> mQueue = new ConcurrentLinkedQueue<>();
+
+    /**
+     * number of progress events queued and not yet delivered or dropped.
+     */
+    private final AtomicInteger mProgressCount = new AtomicInteger();
+
+    /**
+     * latest progress event coalesced while queue is full.
+     */
+    private final AtomicReference<Event> mCoalesced = new AtomicReference<>();
+
+    /**
+     * define if drain task is scheduled or running.
+     */
+    private final AtomicBoolean mScheduled = new AtomicBoolean();
+
+    /**
+     * thread currently delivering events (null if none).
+     */
+    private volatile Thread mDrainThread;
+
+    /**
+     * task delivering queued events to listeners.
+     */
+    private final Runnable mDrainTask = new Runnable() {
+        @Override
+        public void run() {
+            drain();
+        }
+    };
+
+    /**
+     * event types.
+     */
+    private enum Type {
+        PROGRESS,
+        COALESCED,
+        COMPLETION,
+        ERROR
+    }
+
+    /**
+     * Event queued for listeners.
+     */
+    private static final class Event {
+
+        /**
+         * updater of event state.
+         */
+        private static final AtomicIntegerFieldUpdater<Event> STATE =
+                AtomicIntegerFieldUpdater.newUpdater(Event.class, "mState");
+
+        /**
+         * event type.
+         */
+        private final Type mType;
+
+        /**
+         * progress percent.
+         */
+        private final float mPercent;
+
+        /**
+         * progress or completion report.
+         */
+        private final SpeedTestReport mReport;
+
+        /**
+         * error enum.
+         */
+        private final SpeedTestError mError;
+
+        /**
+         * error message.
+         */
+        private final String mMessage;
+
+        /**
+         * 0 while queued, 1 once taken for delivery or dropped.
+         */
+        private volatile int mState;
+
+        /**
+         * Build event.
+         *
+         * @param type    event type
+         * @param percent progress percent
+         * @param report  progress or completion report
+         * @param error   error enum
+         * @param message error message
+         */
+        private Event(final Type type,
+                      final float percent,
+                      final SpeedTestReport report,
+                      final SpeedTestError error,
+                      final String message) {
+            mType = type;
+            mPercent = percent;
+            mReport = report;
+            mError = error;
+            mMessage = message;
+        }
+
+        /**
+         * Take event for delivery or drop it. Only one of consumer and producers succeeds.
+         *
+         * @return true if event was still queued
+         */
+        private boolean claim() {
+            return STATE.compareAndSet(this, 0, 1);
+        }
+    }
+
+    /**
+     * Build listener dispatcher.
+     *
+     * @param executor       executor delivering events to listeners
+     * @param capacity       max number of progress events queued
+     * @param overflowPolicy policy applied to progress events when queue is full
+     */
+    ListenerDispatcher(final Executor executor, final int capacity, final OverflowPolicy overflowPolicy) {
+        mExecutor = executor;
+        mCapacity = capacity;
+        mOverflowPolicy = overflowPolicy;
+    }
+
+    /**
+     * Add a user listener.
+     *
+     * @param listener speed test listener
+     */
+    void addListener(final ISpeedTestListener listener) {
+        mListenerList.add(listener);
+    }
+
+    /**
+     * Remove a user listener.
+     *
+     * @param listener speed test listener
+     */
+    void removeListener(final ISpeedTestListener listener) {
+        mListenerList.remove(listener);
+    }
+
+    /**
+     * Remove all user listeners.
+     */
+    void clearListeners() {
+        mListenerList.clear();
+    }
+
+    /**
+     * Get user listeners.
+     *
+     * @return copy of user listener list
+     */
+    List<ISpeedTestListener> getListeners() {
+        return new ArrayList<>(mListenerList);
+    }
+
+    /**
+     * Get executor delivering events to listeners.
+     *
+     * @return executor
+     */
+    Executor getExecutor() {
+        return mExecutor;
+    }
+
+    /**
+     * Get max number of progress events queued.
+     *
+     * @return capacity
+     */
+    int getCapacity() {
+        return mCapacity;
+    }
+
+    /**
+     * Get policy applied to progress events when queue is full.
+     *
+     * @return overflow policy
+     */
+    OverflowPolicy getOverflowPolicy() {
+        return mOverflowPolicy;
+    }
+
+    @Override
+    public void onCompletion(final SpeedTestReport report) {
+        enqueue(new Event(Type.COMPLETION, 0, report, null, null));
+    }
+
+    @Override
+    public void onProgress(final float percent, final SpeedTestReport report) {
+
+        final Event event = new Event(Type.PROGRESS, percent, report, null, null);
+
+        switch (mOverflowPolicy) {
+            case COALESCE:
+                // keep coalescing until pending event is delivered so that progress is never delivered out of order
+                if (mCoalesced.get() != null || !reserve()) {
+                    if (mCoalesced.getAndSet(event) == null) {
+                        enqueue(new Event(Type.COALESCED, 0, null, null, null));
+                    }
+                    return;
+                }
+                break;
+            case BLOCK:
+                while (!reserve()) {
+                    if (Thread.currentThread() == mDrainThread) {
+                        // event notified from a listener : waiting for this thread to drain the queue would never end
+                        mProgressCount.incrementAndGet();
+                        break;
+                    }
+                    LockSupport.parkNanos(BLOCK_PARK_TIME);
+                }
+                break;
+            default:
+                while (!reserve()) {
+                    dropOldest();
+                }
+                break;
+        }
+        enqueue(event);
+    }
+
+    @Override
+    public void onError(final SpeedTestError speedTestError, final String errorMessage) {
+        enqueue(new Event(Type.ERROR, 0, null, speedTestError, errorMessage));
+    }
+
+    /**
+     * Reserve room for a progress event in queue.
+     *
+     * @return true if room has been reserved, false if queue is full
+     */
+    private boolean reserve() {
+        while (true) {
+            final int count = mProgressCount.get();
+            if (count >= mCapacity) {
+                return false;
+            }
+            if (mProgressCount.compareAndSet(count, count + 1)) {
+                return true;
+            }
+        }
+    }
+
+    /**
+     * Remove oldest progress event still queued.
+     */
+    private void dropOldest() {
+        final Iterator<Event> iterator = mQueue.iterator();
+
+        while (iterator.hasNext()) {
+            final Event event = iterator.next();
+            if (event.mType == Type.PROGRESS && event.claim()) {
+                iterator.remove();
+                mProgressCount.decrementAndGet();
+                return;
+            }
+        }
+    }
+
+    /**
+     * Queue an event and make sure drain task is scheduled.
+     *
+     * @param event event to deliver
+     */
+    private void enqueue(final Event event) {
+        mQueue.offer(event);
+        schedule();
+    }
+
+    /**
+     * Schedule drain task on executor if not already scheduled.
+     */
+    private void schedule() {
+        if (mScheduled.compareAndSet(false, true)) {
+            try {
+                mExecutor.execute(mDrainTask);
+            } catch (RejectedExecutionException e) {
+                // events must not be lost : deliver them from current thread
+                drain();
+            }
+        }
+    }
+
+    /**
+     * Deliver queued events to listeners.
+     */
+    private void drain() {
+        mDrainThread = Thread.currentThread();
+        try {
+            Event event;
+            while ((event = mQueue.poll()) != null) {
+                deliver(event);
+            }
+        } finally {
+            mDrainThread = null;
+            mScheduled.set(false);
+            // an event may have been queued after last poll, while drain task was still marked as scheduled
+            if (!mQueue.isEmpty()) {
+                schedule();
+            }
+        }
+    }
+
+    /**
+     * Deliver an event to all user listeners.
+     *
+     * @param event event to deliver
+     */
+    private void deliver(final Event event) {
+
+        switch (event.mType) {
+            case PROGRESS:
+                if (!event.claim()) {
+                    // dropped by a producer
+                    return;
+                }
+                mProgressCount.decrementAndGet();
+                notifyProgress(event);
+                break;
+            case COALESCED:
+                final Event latest = mCoalesced.getAndSet(null);
+                if (latest != null) {
+                    notifyProgress(latest);
+                }
+                break;
+            case COMPLETION:
+                for (final ISpeedTestListener listener : mListenerList) {
+                    listener.onCompletion(event.mReport);
+                }
+                break;
+            default:
+                for (final ISpeedTestListener listener : mListenerList) {
+                    listener.onError(event.mError, event.mMessage);
+                }
+                break;
+        }
+    }
+
+    /**
+     * Deliver a progress event to all user listeners.
+     *
+     * @param event progress event
+     */
+    private void notifyProgress(final Event event) {
+        for (final ISpeedTestListener listener : mListenerList) {
+            listener.onProgress(event.mPercent, event.mReport);
+        }
+    }
+}
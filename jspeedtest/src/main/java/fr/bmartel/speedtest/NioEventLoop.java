@@ -0,0 +1,229 @@
+/*
+ * The MIT License (MIT)
+ * <p/>
+ * Copyright (c) 2016-2017 Bertrand Martel
+ * <p/>
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ * <p/>
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ * <p/>
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+package fr.bmartel.speedtest;
+
+import fr.bmartel.speedtest.model.SpeedTestError;
+
+import java.io.IOException;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Selector thread multiplexing NIO transfers.
+ * <p/>
+ * A fixed set of event loops is shared by all speed tests of the process, transfers are assigned to them in a round
+ * robin fashion.
+ *
+ * @author Bertrand Martel
+ */
+class NioEventLoop implements Runnable {
+
+    /**
+     * event loops shared by all transfers.
+     */
+    private static final NioEventLoop[] EVENT_LOOPS = new NioEventLoop[SpeedTestConst.NIO_THREAD_COUNT];
+
+    /**
+     * index of next event loop to be assigned.
+     */
+    private static int sNextLoop;
+
+    /**
+     * selector used to multiplex transfers.
+     */
+    private final Selector mSelector;
+
+    /**
+     * event loop thread.
+     */
+    private final Thread mThread;
+
+    /**
+     * tasks to be run on event loop thread.
+     */
+    private final Queue<Runnable> mTaskQueue = new ConcurrentLinkedQueue<>();
+
+    /**
+     * last time transfer timeouts have been checked in nanoseconds.
+     */
+    private long mTimeoutCheck;
+
+    /**
+     * Build event loop and start its thread.
+     *
+     * @param index event loop index
+     * @throws IOException selector could not be opened
+     */
+    private NioEventLoop(final int index) throws IOException {
+        mSelector = Selector.open();
+        mThread = new Thread(this, "speedtest-nio-" + index);
+        mThread.setDaemon(true);
+        mThread.start();
+    }
+
+    /**
+     * Retrieve next event loop to be used for a new transfer.
+     *
+     * @return event loop
+     * @throws IOException selector could not be opened
+     */
+    public static synchronized NioEventLoop next() throws IOException {
+        final int index = sNextLoop;
+        sNextLoop = (sNextLoop + 1) % EVENT_LOOPS.length;
+        if (EVENT_LOOPS[index] == null) {
+            EVENT_LOOPS[index] = new NioEventLoop(index);
+        }
+        return EVENT_LOOPS[index];
+    }
+
+    /**
+     * Run a task on event loop thread.
+     *
+     * @param task task to run
+     */
+    public void execute(final Runnable task) {
+        mTaskQueue.add(task);
+        if (!inEventLoop()) {
+            mSelector.wakeup();
+        }
+    }
+
+    /**
+     * Check if current thread is the event loop thread.
+     *
+     * @return true if called from event loop thread
+     */
+    public boolean inEventLoop() {
+        return Thread.currentThread() == mThread;
+    }
+
+    /**
+     * Get selector used by this event loop.
+     *
+     * @return selector
+     */
+    public Selector getSelector() {
+        return mSelector;
+    }
+
+    @Override
+    public void run() {
+
+        while (true) {
+            try {
+                mSelector.select(SpeedTestConst.NIO_SELECT_TIMEOUT);
+            } catch (IOException e) {
+                //selector failure : retry on next iteration
+            }
+
+            final Iterator<SelectionKey> iterator = mSelector.selectedKeys().iterator();
+
+            while (iterator.hasNext()) {
+                final SelectionKey key = iterator.next();
+                iterator.remove();
+                process((NioTransfer) key.attachment(), key);
+            }
+
+            Runnable task;
+            while ((task = mTaskQueue.poll()) != null) {
+                runTask(task);
+            }
+
+            checkTimeout();
+        }
+    }
+
+    /**
+     * Process a ready transfer : exception thrown by listeners must not stop the event loop, transfer is failed
+     * instead.
+     *
+     * @param transfer transfer attached to key
+     * @param key      selection key
+     */
+    private void process(final NioTransfer transfer, final SelectionKey key) {
+        try {
+            transfer.onReady(key);
+        } catch (RuntimeException e) {
+            failTransfer(transfer, e);
+        }
+    }
+
+    /**
+     * Run a queued task : exception thrown by listeners must not stop the event loop. Tasks queued by a transfer fail
+     * the transfer themselves.
+     *
+     * @param task queued task
+     */
+    private void runTask(final Runnable task) {
+        try {
+            task.run();
+        } catch (RuntimeException e) {
+            //listener failure once transfer has been released : nothing left to notify
+        }
+    }
+
+    /**
+     * Fail a transfer whose processing has thrown an exception so that error is dispatched to listeners.
+     *
+     * @param transfer transfer that has failed
+     * @param e        exception thrown
+     */
+    private static void failTransfer(final NioTransfer transfer, final RuntimeException e) {
+        try {
+            transfer.fail(SpeedTestError.SOCKET_ERROR, e.toString());
+        } catch (RuntimeException error) {
+            //error listener has failed too : transfer is released anyway
+        }
+    }
+
+    /**
+     * Check timeout of all registered transfers.
+     */
+    private void checkTimeout() {
+
+        final long now = System.nanoTime();
+
+        if (now - mTimeoutCheck < TimeUnit.MILLISECONDS.toNanos(SpeedTestConst.NIO_SELECT_TIMEOUT)) {
+            return;
+        }
+        mTimeoutCheck = now;
+
+        for (final SelectionKey key : new ArrayList<>(mSelector.keys())) {
+            if (key.isValid()) {
+                final NioTransfer transfer = (NioTransfer) key.attachment();
+                try {
+                    transfer.checkTimeout(now);
+                } catch (RuntimeException e) {
+                    failTransfer(transfer, e);
+                }
+            }
+        }
+    }
+}
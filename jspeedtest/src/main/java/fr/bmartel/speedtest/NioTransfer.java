@@ -0,0 +1,762 @@
+/*
+ * The MIT License (MIT)
+ * <p/>
+ * Copyright (c) 2016-2017 Bertrand Martel
+ * <p/>
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ * <p/>
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ * <p/>
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+package fr.bmartel.speedtest;
+
+import fr.bmartel.protocol.http.HttpFrame;
+import fr.bmartel.protocol.http.states.HttpStates;
+import fr.bmartel.speedtest.model.SpeedTestError;
+import fr.bmartel.speedtest.utils.SpeedTestUtils;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.net.InetSocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.SocketChannel;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Non-blocking HTTP transfer driven by a NIO event loop.
+ * <p/>
+ * All callbacks to the speed test task are performed on event loop thread.
+ *
+ * @author Bertrand Martel
+ */
+class NioTransfer {
+
+    /**
+     * end of HTTP header marker.
+     */
+    private static final byte[] HEADER_END = "\r\n\r\n".getBytes();
+
+    /**
+     * transfer states.
+     */
+    private enum State {
+        CONNECTING,
+        WRITE_REQUEST,
+        WRITE_BODY,
+        READ_HEADER,
+        READ_BODY
+    }
+
+    /**
+     * speed test task notified of transfer events.
+     */
+    private final SpeedTestTask mTask;
+
+    /**
+     * event loop driving this transfer.
+     */
+    private final NioEventLoop mEventLoop;
+
+    /**
+     * remote address.
+     */
+    private final InetSocketAddress mAddress;
+
+    /**
+     * HTTP request (status line + headers) to be written.
+     */
+    private final ByteBuffer mRequest;
+
+    /**
+     * define if this is a download or upload transfer.
+     */
+    private final boolean mDownload;
+
+    /**
+     * protocol used for the request.
+     */
+    private final String mProtocol;
+
+    /**
+     * hostname reached.
+     */
+    private final String mHostname;
+
+    /**
+     * upload body for RAM storage case.
+     */
+    private final ByteBuffer mBody;
+
+    /**
+     * buffer wrapping random data ring for STREAM storage case.
+     */
+    private final ByteBuffer mRingBuffer;
+
+    /**
+     * upload file for FILE storage case.
+     */
+    private final RandomAccessFile mUploadFile;
+
+    /**
+     * upload payload released at the end of transfer.
+     */
+    private final UploadPayload mPayload;
+
+    /**
+     * upload size in octet.
+     */
+    private final long mUploadSize;
+
+    /**
+     * upload chunk size.
+     */
+    private final AdaptiveSize mChunkSize;
+
+    /**
+     * read buffer size.
+     */
+    private final AdaptiveSize mReadSize;
+
+    /**
+     * time in nanoseconds after which chunked upload body is ended (0 for upload of fixed size).
+     */
+    private final long mChunkedDeadline;
+
+    /**
+     * end of previous chunk data + chunk size line for chunked upload.
+     */
+    private byte[] mChunkHeader;
+
+    /**
+     * chunk size written in chunk size line.
+     */
+    private int mChunkHeaderSize;
+
+    /**
+     * inactivity timeout in nanoseconds (0 for none).
+     */
+    private final long mTimeout;
+
+    /**
+     * direct buffer borrowed from read buffer pool used to read response.
+     */
+    private ByteBuffer mReadBuffer;
+
+    /**
+     * socket channel.
+     */
+    private SocketChannel mChannel;
+
+    /**
+     * current transfer state.
+     */
+    private State mState = State.CONNECTING;
+
+    /**
+     * number of upload octet written.
+     */
+    private long mWritten;
+
+    /**
+     * chunked upload framing data to be written before next chunk data.
+     */
+    private ByteBuffer mFraming;
+
+    /**
+     * number of octet remaining in current upload chunk.
+     */
+    private int mChunkRemaining;
+
+    /**
+     * define if last chunk of chunked upload body has been queued.
+     */
+    private boolean mLastChunk;
+
+    /**
+     * time in nanoseconds after which transfer times out (0 for none).
+     */
+    private long mDeadline;
+
+    /**
+     * time in nanoseconds at which connection was initiated.
+     */
+    private long mConnectStart;
+
+    /**
+     * define if transfer has been released.
+     */
+    private boolean mDone;
+
+    /**
+     * Build a download transfer.
+     *
+     * @param task     speed test task
+     * @param address  remote address
+     * @param request  HTTP request
+     * @param protocol protocol used for the request
+     * @param hostname hostname reached
+     * @param timeout  inactivity timeout in milliseconds (0 for none)
+     * @throws IOException selector could not be opened
+     */
+    NioTransfer(final SpeedTestTask task,
+                final InetSocketAddress address,
+                final byte[] request,
+                final String protocol,
+                final String hostname,
+                final int timeout) throws IOException {
+        this(task, address, request, true, protocol, hostname, null, null, 0, null, 0, timeout);
+    }
+
+    /**
+     * Build an upload transfer.
+     *
+     * @param task       speed test task
+     * @param address    remote address
+     * @param request    HTTP request
+     * @param hostname   hostname reached
+     * @param payload    upload payload
+     * @param uploadFile upload file opened from payload for FILE storage case
+     * @param uploadSize      upload size in octet (ignored for chunked upload)
+     * @param chunkSize       upload chunk size
+     * @param chunkedDeadline time in nanoseconds after which chunked upload body is ended (0 for upload of fixed
+     *                        size)
+     * @param timeout         inactivity timeout in milliseconds (0 for none)
+     * @throws IOException selector could not be opened
+     */
+    NioTransfer(final SpeedTestTask task,
+                final InetSocketAddress address,
+                final byte[] request,
+                final String hostname,
+                final UploadPayload payload,
+                final RandomAccessFile uploadFile,
+                final long uploadSize,
+                final AdaptiveSize chunkSize,
+                final long chunkedDeadline,
+                final int timeout) throws IOException {
+        this(task, address, request, false, "http", hostname, payload, uploadFile, uploadSize,
+                chunkSize, chunkedDeadline, timeout);
+    }
+
+    /**
+     * Build a transfer.
+     *
+     * @param task       speed test task
+     * @param address    remote address
+     * @param request    HTTP request
+     * @param download   define if this is a download or upload transfer
+     * @param protocol   protocol used for the request
+     * @param hostname   hostname reached
+     * @param payload    upload payload
+     * @param uploadFile upload file opened from payload for FILE storage case
+     * @param uploadSize      upload size in octet
+     * @param chunkSize       upload chunk size (null for download)
+     * @param chunkedDeadline time in nanoseconds after which chunked upload body is ended (0 for upload of fixed
+     *                        size)
+     * @param timeout         inactivity timeout in milliseconds (0 for none)
+     * @throws IOException selector could not be opened
+     */
+    private NioTransfer(final SpeedTestTask task,
+                        final InetSocketAddress address,
+                        final byte[] request,
+                        final boolean download,
+                        final String protocol,
+                        final String hostname,
+                        final UploadPayload payload,
+                        final RandomAccessFile uploadFile,
+                        final long uploadSize,
+                        final AdaptiveSize chunkSize,
+                        final long chunkedDeadline,
+                        final int timeout) throws IOException {
+        mTask = task;
+        mEventLoop = NioEventLoop.next();
+        mAddress = address;
+        mRequest = ByteBuffer.wrap(request);
+        mDownload = download;
+        mProtocol = protocol;
+        mHostname = hostname;
+        mPayload = payload;
+        mBody = (payload != null && payload.getBody() != null) ? ByteBuffer.wrap(payload.getBody()) : null;
+        mRingBuffer = (payload != null && payload.getRing() != null) ? ByteBuffer.wrap(payload.getRing().getData()) :
+                null;
+        mUploadFile = uploadFile;
+        mUploadSize = uploadSize;
+        mChunkSize = chunkSize;
+        mChunkedDeadline = chunkedDeadline;
+        mTimeout = TimeUnit.MILLISECONDS.toNanos(timeout);
+        mReadSize = task.getReadSize();
+        mReadBuffer = ReadBufferPool.acquire(true, download ? mReadSize.getSize() : SpeedTestConst.READ_BUFFER_SIZE);
+    }
+
+    /**
+     * Connect to remote host from event loop thread.
+     */
+    void start() {
+        mEventLoop.execute(new Runnable() {
+            @Override
+            public void run() {
+                if (mDone) {
+                    return;
+                }
+                try {
+                    mChannel = SocketChannel.open();
+                    mChannel.configureBlocking(false);
+                    mChannel.socket().setReuseAddress(true);
+                    mChannel.socket().setKeepAlive(true);
+                    SocketTuner.beforeConnect(mChannel.socket(), mTask.getSocketInterface(), mAddress);
+                    refreshDeadline();
+
+                    mConnectStart = System.nanoTime();
+                    mTask.startPhaseDeadline(mTask.getSocketInterface().getConnectTimeout(),
+                            SpeedTestConst.CONNECT_TIMEOUT_ERROR);
+                    if (mChannel.connect(mAddress)) {
+                        onConnect();
+                        mState = State.WRITE_REQUEST;
+                        mChannel.register(mEventLoop.getSelector(), SelectionKey.OP_WRITE, NioTransfer.this);
+                    } else {
+                        mChannel.register(mEventLoop.getSelector(), SelectionKey.OP_CONNECT, NioTransfer.this);
+                    }
+                } catch (IOException e) {
+                    fail(e.getMessage());
+                } catch (RuntimeException e) {
+                    fail(SpeedTestError.SOCKET_ERROR, e.toString());
+                }
+            }
+        });
+    }
+
+    /**
+     * Process selected key.
+     *
+     * @param key selection key
+     */
+    void onReady(final SelectionKey key) {
+
+        try {
+            if (!mDone && key.isConnectable() && mChannel.finishConnect()) {
+                onConnect();
+                mState = State.WRITE_REQUEST;
+                refreshDeadline();
+                key.interestOps(SelectionKey.OP_WRITE);
+                return;
+            }
+            if (!mDone && key.isWritable()) {
+                write(key);
+            }
+            if (!mDone && key.isReadable()) {
+                read(key);
+            }
+        } catch (IOException e) {
+            fail(e.getMessage());
+        }
+    }
+
+    /**
+     * Apply socket options once connection is established and wait for download response before first byte timeout.
+     *
+     * @throws IOException options could not be set
+     */
+    private void onConnect() throws IOException {
+        SocketTuner.afterConnect(mChannel.socket(), mTask.getSocketInterface(), mAddress,
+                System.nanoTime() - mConnectStart);
+        if (mDownload) {
+            mTask.startPhaseDeadline(mTask.getSocketInterface().getFirstByteTimeout(),
+                    SpeedTestConst.FIRST_BYTE_TIMEOUT_ERROR);
+        } else {
+            mTask.clearPhaseDeadline();
+        }
+    }
+
+    /**
+     * Write pending request/body data.
+     *
+     * @param key selection key
+     * @throws IOException socket io exception
+     */
+    private void write(final SelectionKey key) throws IOException {
+
+        if (mState == State.WRITE_REQUEST) {
+
+            mChannel.write(mRequest);
+
+            if (mRequest.hasRemaining()) {
+                return;
+            }
+            refreshDeadline();
+
+            if (mDownload) {
+                mState = State.READ_HEADER;
+                key.interestOps(SelectionKey.OP_READ);
+                return;
+            }
+            mState = State.WRITE_BODY;
+            key.interestOps(SelectionKey.OP_READ | SelectionKey.OP_WRITE);
+
+            mTask.onUploadStart();
+        }
+
+        if (mState == State.WRITE_BODY && mChunkedDeadline != 0) {
+
+            if (writeChunkedBody()) {
+                onBodyWritten(key);
+            }
+            return;
+        }
+
+        if (mState == State.WRITE_BODY) {
+
+            if (mWritten < mUploadSize) {
+
+                final int length = (int) Math.min(mChunkSize.getSize(), mUploadSize - mWritten);
+                final int written;
+
+                if (mBody != null) {
+                    written = writeBuffer(mBody, length);
+                } else if (mRingBuffer != null) {
+                    written = writeBuffer(mRingBuffer, length);
+                } else {
+                    // upload larger than payload sends payload again from its start
+                    final int offset = mPayload.getOffset(mWritten);
+                    written = (int) mUploadFile.getChannel().transferTo(offset,
+                            Math.min(length, mPayload.getSize() - offset), mChannel);
+                }
+
+                mChunkSize.onTransfer(written, length);
+
+                if (written > 0) {
+                    mWritten += written;
+                    refreshDeadline();
+                    mTask.onUploadWrite(written);
+                }
+            }
+
+            if (!mDone && mWritten == mUploadSize) {
+                onBodyWritten(key);
+            }
+        }
+    }
+
+    /**
+     * Write pending chunked upload framing or chunk data. A new chunk is started until chunked upload deadline, then
+     * body is ended with last chunk.
+     *
+     * @return true if last chunk has been written
+     * @throws IOException socket io exception
+     */
+    private boolean writeChunkedBody() throws IOException {
+
+        if (mFraming == null || !mFraming.hasRemaining()) {
+
+            if (mChunkRemaining == 0) {
+
+                // end of previous chunk data is written with next chunk size line
+                final int offset = (mWritten == 0) ? SpeedTestConst.CRLF.length : 0;
+
+                if (System.nanoTime() - mChunkedDeadline < 0) {
+                    final int chunkSize = mChunkSize.getSize();
+                    if (chunkSize != mChunkHeaderSize) {
+                        mChunkHeader = SpeedTestUtils.getChunkHeader(chunkSize);
+                        mChunkHeaderSize = chunkSize;
+                    }
+                    mFraming = ByteBuffer.wrap(mChunkHeader, offset, mChunkHeader.length - offset);
+                    mChunkRemaining = chunkSize;
+                } else {
+                    mFraming = ByteBuffer.wrap(SpeedTestConst.LAST_CHUNK, offset,
+                            SpeedTestConst.LAST_CHUNK.length - offset);
+                    mLastChunk = true;
+                }
+            } else {
+                final int written = writeBuffer(mRingBuffer, mChunkRemaining);
+
+                mChunkSize.onTransfer(written, mChunkRemaining);
+
+                if (written > 0) {
+                    mWritten += written;
+                    mChunkRemaining -= written;
+                    refreshDeadline();
+                    mTask.onUploadWrite(written);
+                }
+                return false;
+            }
+        }
+
+        mChannel.write(mFraming);
+
+        if (mFraming.hasRemaining()) {
+            return false;
+        }
+        refreshDeadline();
+        return mLastChunk;
+    }
+
+    /**
+     * Write a region of upload body or random data ring from current upload position. Data is written again from
+     * buffer start once upload position is past its end.
+     *
+     * @param buffer buffer wrapping upload body or random data ring
+     * @param length max number of octet to write
+     * @return number of octet written
+     * @throws IOException socket io exception
+     */
+    private int writeBuffer(final ByteBuffer buffer, final int length) throws IOException {
+
+        final int offset = (int) (mWritten % buffer.capacity());
+        buffer.clear();
+        buffer.position(offset);
+        buffer.limit((int) Math.min(buffer.capacity(), (long) offset + length));
+        return mChannel.write(buffer);
+    }
+
+    /**
+     * Wait for server response once upload body has been written.
+     *
+     * @param key selection key
+     */
+    private void onBodyWritten(final SelectionKey key) {
+        mState = State.READ_HEADER;
+        mDeadline = 0;
+        key.interestOps(SelectionKey.OP_READ);
+        mTask.onUploadEnd();
+    }
+
+    /**
+     * Read response data.
+     *
+     * @param key selection key
+     * @throws IOException socket io exception
+     */
+    private void read(final SelectionKey key) throws IOException {
+
+        final int size = mReadSize.getSize();
+
+        if (mState == State.READ_BODY) {
+            // buffer is empty while reading body
+            mReadBuffer = ReadBufferPool.fit(mReadBuffer, size);
+            mReadBuffer.limit(size);
+        }
+        final int read = mChannel.read(mReadBuffer);
+
+        if (read == -1) {
+            if (mState == State.READ_BODY) {
+                complete();
+            } else {
+                fail("connection closed by peer");
+            }
+            return;
+        }
+
+        if (mState == State.READ_BODY) {
+            mReadSize.onTransfer(read, size);
+            mReadBuffer.clear();
+            refreshDeadline();
+            if (mTask.onDownloadData(mReadBuffer, 0, read)) {
+                complete();
+            }
+            return;
+        }
+
+        final int headerLength = getHeaderLength();
+
+        if (headerLength == -1) {
+            if (!mReadBuffer.hasRemaining()) {
+                fail("invalid HTTP header");
+            }
+            return;
+        }
+
+        mTask.clearPhaseDeadline();
+
+        final byte[] header = new byte[headerLength];
+        mReadBuffer.flip();
+        mReadBuffer.get(header);
+
+        final HttpFrame frame = new HttpFrame();
+        final ByteArrayInputStream headerStream = new ByteArrayInputStream(header);
+        final HttpStates frameState;
+        final HttpStates headerState;
+
+        try {
+            frameState = frame.decodeFrame(headerStream);
+            headerState = frame.parseHeader(headerStream);
+        } catch (InterruptedException e) {
+            fail(e.getMessage());
+            return;
+        }
+
+        final int remaining = mReadBuffer.remaining();
+        mReadBuffer.clear();
+
+        if (!mDownload) {
+            if (frameState == HttpStates.HTTP_FRAME_OK && headerState == HttpStates.HTTP_FRAME_OK) {
+                mTask.onUploadResponse(frame, mHostname, mUploadSize);
+            } else {
+                fail("invalid HTTP response");
+            }
+            close();
+            return;
+        }
+
+        mTask.checkHttpStates(frameState, headerState);
+
+        mState = State.READ_BODY;
+        refreshDeadline();
+
+        if (!mTask.onDownloadResponse(frame, mProtocol, mHostname)) {
+            close();
+        } else if (mTask.isResponseBodyEmpty() ||
+                (remaining > 0 && mTask.onDownloadData(mReadBuffer, headerLength, remaining))) {
+            complete();
+        }
+    }
+
+    /**
+     * Get length of HTTP header received in read buffer.
+     *
+     * @return header length including end marker or -1 if header is incomplete
+     */
+    private int getHeaderLength() {
+
+        final int end = mReadBuffer.position() - HEADER_END.length;
+
+        for (int i = 0; i <= end; i++) {
+            if (mReadBuffer.get(i) == HEADER_END[0] && mReadBuffer.get(i + 1) == HEADER_END[1] &&
+                    mReadBuffer.get(i + 2) == HEADER_END[2] && mReadBuffer.get(i + 3) == HEADER_END[3]) {
+                return i + HEADER_END.length;
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * Refresh inactivity deadline.
+     */
+    private void refreshDeadline() {
+        if (mTimeout != 0) {
+            mDeadline = System.nanoTime() + mTimeout;
+        }
+    }
+
+    /**
+     * Check if transfer has timed out.
+     *
+     * @param now current time in nanoseconds
+     */
+    void checkTimeout(final long now) {
+
+        if (mDeadline != 0 && now - mDeadline > 0) {
+
+            final String message = (mState == State.READ_HEADER || mState == State.READ_BODY) ?
+                    "Read timed out" : SpeedTestConst.SOCKET_WRITE_ERROR;
+
+            if (release()) {
+                mTask.onTransferTimeout(message);
+            }
+        }
+    }
+
+    /**
+     * Release transfer once all data has been downloaded.
+     */
+    private void complete() {
+        if (release()) {
+            mTask.finishDownload();
+        }
+    }
+
+    /**
+     * Release transfer on error.
+     *
+     * @param errorMessage error message
+     */
+    private void fail(final String errorMessage) {
+        fail(SpeedTestError.CONNECTION_ERROR, errorMessage);
+    }
+
+    /**
+     * Release transfer on error dispatching given error.
+     *
+     * @param error        error enum
+     * @param errorMessage error message
+     */
+    void fail(final SpeedTestError error, final String errorMessage) {
+        if (release()) {
+            mTask.onTransferError(error, errorMessage);
+        }
+    }
+
+    /**
+     * Close transfer without notifying task.
+     */
+    void close() {
+        if (mEventLoop.inEventLoop()) {
+            release();
+        } else {
+            mEventLoop.execute(new Runnable() {
+                @Override
+                public void run() {
+                    release();
+                }
+            });
+        }
+    }
+
+    /**
+     * Stop transfer and notify task as if socket was closed.
+     */
+    void abort() {
+        mEventLoop.execute(new Runnable() {
+            @Override
+            public void run() {
+                fail("Socket closed");
+            }
+        });
+    }
+
+    /**
+     * Close socket channel and upload file.
+     *
+     * @return false if transfer was already released
+     */
+    private boolean release() {
+
+        if (mDone) {
+            return false;
+        }
+        mDone = true;
+
+        if (mChannel != null) {
+            try {
+                mChannel.close();
+            } catch (IOException e) {
+                //e.printStackTrace();
+            }
+        }
+        if (mUploadFile != null) {
+            try {
+                mUploadFile.close();
+            } catch (IOException e) {
+                //e.printStackTrace();
+            }
+        }
+        if (mPayload != null) {
+            UploadPayloadCache.release(mPayload);
+        }
+        ReadBufferPool.release(mReadBuffer);
+        return true;
+    }
+}
@@ -0,0 +1,452 @@
+/*
+ * The MIT License (MIT)
+ * <p/>
+ * Copyright (c) 2016-2017 Bertrand Martel
+ * <p/>
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ * <p/>
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ * <p/>
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+package fr.bmartel.speedtest;
+
+import fr.bmartel.speedtest.inter.ISpeedTestListener;
+import fr.bmartel.speedtest.inter.ISpeedTestSocket;
+import fr.bmartel.speedtest.model.SpeedTestError;
+import fr.bmartel.speedtest.model.SpeedTestMode;
+import fr.bmartel.speedtest.utils.SpeedTestUtils;
+
+import java.math.RoundingMode;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+/**
+ * Parallel tasks speed test wrapper : this is used to run the same download/upload over several connections at once.
+ * <p/>
+ * Each connection is managed by its own task with its own counters. Reports are merged into a single report
+ * featuring the aggregated transfer rate and the report of each connection.
+ *
+ * @author Bertrand Martel
+ */
+public class ParallelWrapper {
+
+    /**
+     * speed test socket interface.
+     */
+    private final ISpeedTestSocket mSpeedTestSocket;
+
+    /**
+     * main task owning the report thread pool.
+     */
+    private final SpeedTestTask mMainTask;
+
+    /**
+     * listener list of speed test socket.
+     */
+    private final List<ISpeedTestListener> mListenerList;
+
+    /**
+     * task list : one task per connection.
+     */
+    private final List<SpeedTestTask> mTaskList = new CopyOnWriteArrayList<>();
+
+    /**
+     * current speed test mode.
+     */
+    private SpeedTestMode mSpeedTestMode = SpeedTestMode.NONE;
+
+    /**
+     * number of connections not yet completed.
+     */
+    private int mPendingTasks;
+
+    /**
+     * define if an error has been dispatched already for the current transfer.
+     */
+    private boolean mErrorDispatched;
+
+    /**
+     * define if report interval is set.
+     */
+    private boolean mReportInterval;
+
+    /**
+     * time at which the current transfer has been requested in nanoseconds.
+     */
+    private long mTimeRequest;
+
+    /**
+     * aggregated progress reports and transfer rate computation start.
+     */
+    private final ProgressAggregator mProgress;
+
+    /**
+     * Build Speed test parallel wrapper.
+     *
+     * @param socket       speed test socket
+     * @param mainTask     speed test socket main task
+     * @param listenerList speed test socket listener list
+     */
+    public ParallelWrapper(final ISpeedTestSocket socket,
+                           final SpeedTestTask mainTask,
+                           final List<ISpeedTestListener> listenerList) {
+        mSpeedTestSocket = socket;
+        mMainTask = mainTask;
+        mListenerList = listenerList;
+        mProgress = new ProgressAggregator(socket);
+    }
+
+    /**
+     * Start download over several connections.
+     *
+     * @param uri             uri to fetch to download file
+     * @param connectionCount number of connections
+     * @param reportInterval  define if report interval is set
+     */
+    public void startDownload(final String uri, final int connectionCount, final boolean reportInterval) {
+        initTasks(SpeedTestMode.DOWNLOAD, connectionCount, reportInterval);
+
+        for (final SpeedTestTask task : mTaskList) {
+            task.startDownloadRequest(uri);
+        }
+    }
+
+    /**
+     * Start upload over several connections.
+     * <p/>
+     * When split is set, each connection sends its share of fileSizeOctet, otherwise each connection sends
+     * fileSizeOctet octets (used for fixed duration upload where the transfer is stopped when duration is elapsed).
+     *
+     * @param uri             uri to fetch
+     * @param fileSizeOctet   size of file to upload
+     * @param connectionCount number of connections
+     * @param split           define if fileSizeOctet is shared between connections
+     * @param reportInterval  define if report interval is set
+     */
+    public void startUpload(final String uri,
+                            final long fileSizeOctet,
+                            final int connectionCount,
+                            final boolean split,
+                            final boolean reportInterval) {
+
+        initTasks(SpeedTestMode.UPLOAD, connectionCount, reportInterval);
+
+        final long share = split ? fileSizeOctet / connectionCount : fileSizeOctet;
+        final long remain = split ? fileSizeOctet % connectionCount : 0;
+
+        final boolean ftp = uri.startsWith("ftp");
+
+        for (int i = 0; i < mTaskList.size(); i++) {
+            final String connectionUri = (ftp && i > 0) ? uri + "-" + i : uri;
+            mTaskList.get(i).startUploadRequest(connectionUri, (i == 0) ? share + remain : share);
+        }
+    }
+
+    /**
+     * Start upload with chunked transfer encoding over several connections, each connection streams data until
+     * duration is elapsed.
+     *
+     * @param uri             uri to fetch
+     * @param maxDuration     upload duration in milliseconds
+     * @param connectionCount number of connections
+     * @param reportInterval  define if report interval is set
+     */
+    public void startChunkedUpload(final String uri,
+                                   final int maxDuration,
+                                   final int connectionCount,
+                                   final boolean reportInterval) {
+        initTasks(SpeedTestMode.UPLOAD, connectionCount, reportInterval);
+
+        for (final SpeedTestTask task : mTaskList) {
+            task.startChunkedUploadRequest(uri, maxDuration);
+        }
+    }
+
+    /**
+     * Initialize task list and transfer state.
+     *
+     * @param mode            speed test mode
+     * @param connectionCount number of connections
+     * @param reportInterval  define if report interval is set
+     */
+    private synchronized void initTasks(final SpeedTestMode mode,
+                                        final int connectionCount,
+                                        final boolean reportInterval) {
+
+        while (mTaskList.size() < connectionCount) {
+            final List<ISpeedTestListener> taskListeners = new ArrayList<>();
+            taskListeners.add(new ConnectionListener());
+            final SpeedTestTask task = new SpeedTestTask(mSpeedTestSocket, taskListeners);
+            task.setAggregated(true);
+            mTaskList.add(task);
+        }
+        while (mTaskList.size() > connectionCount) {
+            mTaskList.remove(mTaskList.size() - 1).closeExecutors();
+        }
+
+        for (final SpeedTestTask task : mTaskList) {
+            task.setReportInterval(reportInterval);
+            task.setProxyUrl(mMainTask.getProxyUrl());
+        }
+
+        mSpeedTestMode = mode;
+        mReportInterval = reportInterval;
+        mPendingTasks = connectionCount;
+        mErrorDispatched = false;
+        mTimeRequest = System.nanoTime();
+        mProgress.reset(mTimeRequest);
+    }
+
+    /**
+     * Called when a connection has completed its transfer.
+     */
+    private void onConnectionCompletion() {
+
+        synchronized (this) {
+            mPendingTasks--;
+            if (mPendingTasks != 0 || mErrorDispatched) {
+                return;
+            }
+        }
+
+        if (!mReportInterval) {
+            notifyProgress(true);
+        }
+
+        final SpeedTestReport report = getReport();
+
+        mReportInterval = false;
+        finishTask();
+
+        for (int i = 0; i < mListenerList.size(); i++) {
+            mListenerList.get(i).onCompletion(report);
+        }
+    }
+
+    /**
+     * Called when a connection has failed : all other connections are stopped and error is dispatched once.
+     *
+     * @param speedTestError error enum
+     * @param errorMessage   error message
+     */
+    private void onConnectionError(final SpeedTestError speedTestError, final String errorMessage) {
+
+        synchronized (this) {
+            if (mErrorDispatched) {
+                return;
+            }
+            mErrorDispatched = true;
+        }
+
+        mReportInterval = false;
+        forceStopTask();
+        finishTask();
+
+        for (int i = 0; i < mListenerList.size(); i++) {
+            mListenerList.get(i).onError(speedTestError, errorMessage);
+        }
+    }
+
+    /**
+     * Release report thread pool once all connections are terminated.
+     */
+    private void finishTask() {
+        mMainTask.setReportInterval(false);
+        if (!mSpeedTestSocket.getRepeatWrapper().isRepeat()) {
+            mMainTask.closeExecutors();
+        }
+    }
+
+    /**
+     * Notify aggregated progress. A single connection thread builds the aggregated report at a time, progress made
+     * meanwhile by other connections is coalesced into the next report.
+     *
+     * @param last true if all connections have completed (last progress is always notified)
+     */
+    private void notifyProgress(final boolean last) {
+
+        if (!mProgress.lock(last)) {
+            return;
+        }
+        try {
+            if (!mProgress.isDue(getTemporaryPacketSize(), last)) {
+                return;
+            }
+
+            final SpeedTestReport report = getReport();
+
+            for (int i = 0; i < mListenerList.size(); i++) {
+                mListenerList.get(i).onProgress(report.getProgressPercent(), report);
+            }
+        } finally {
+            mProgress.unlock();
+        }
+    }
+
+    /**
+     * Get number of octet transferred by all connections.
+     *
+     * @return number of octet
+     */
+    private long getTemporaryPacketSize() {
+        long temporaryPacketSize = 0;
+
+        for (final SpeedTestTask task : mTaskList) {
+            temporaryPacketSize += task.getTemporaryPacketSize(mSpeedTestMode);
+        }
+        return temporaryPacketSize;
+    }
+
+    /**
+     * Build a report aggregating all connections.
+     *
+     * @return speed test report
+     */
+    public SpeedTestReport getReport() {
+
+        final SpeedTestMode mode = mSpeedTestMode;
+        final List<SpeedTestReport> connectionReports = new ArrayList<>();
+
+        long temporaryPacketSize = 0;
+        long totalPacketSize = 0;
+        long timeStart = 0;
+        long timeEnd = 0;
+        boolean running = false;
+
+        for (final SpeedTestTask task : mTaskList) {
+
+            connectionReports.add(task.getReport(mode));
+
+            temporaryPacketSize += task.getTemporaryPacketSize(mode);
+            totalPacketSize += task.getTotalPacketSize(mode);
+
+            final long taskStart = task.getTimeStart();
+
+            if (taskStart >= mTimeRequest) {
+                if (timeStart == 0 || taskStart < timeStart) {
+                    timeStart = taskStart;
+                }
+                if (task.getTimeEnd() == 0) {
+                    running = true;
+                } else if (task.getTimeEnd() > timeEnd) {
+                    timeEnd = task.getTimeEnd();
+                }
+            } else {
+                running = true;
+            }
+        }
+
+        final long currentTime = running ? System.nanoTime() : timeEnd;
+
+        final int scale = mSpeedTestSocket.getDefaultScale();
+        final RoundingMode roundingMode = mSpeedTestSocket.getDefaultRoundingMode();
+
+        double transferRateOps = 0;
+
+        if (timeStart != 0 && shallCalculateTransferRate(mode, currentTime - timeStart)) {
+            transferRateOps = mProgress.getTransferRate(temporaryPacketSize, timeStart, currentTime);
+        }
+
+        if (mSpeedTestSocket.getRepeatWrapper().isRepeat()) {
+            return mSpeedTestSocket.getRepeatWrapper().getRepeatReport(scale, roundingMode, mode, currentTime,
+                    transferRateOps);
+        }
+
+        return new SpeedTestReport(mode, SpeedTestUtils.getProgressPercent(temporaryPacketSize, totalPacketSize),
+                timeStart, currentTime, temporaryPacketSize, totalPacketSize,
+                transferRateOps, scale, roundingMode, 1).withConnectionReports(connectionReports);
+    }
+
+    /**
+     * Check setup time depending on elapsed time.
+     *
+     * @param mode        speed test mode
+     * @param elapsedTime elapsed time since first connection has started transferring
+     * @return status if transfer rate should be computed at this time
+     */
+    private boolean shallCalculateTransferRate(final SpeedTestMode mode, final long elapsedTime) {
+        switch (mode) {
+            case DOWNLOAD:
+                return elapsedTime > mSpeedTestSocket.getDownloadSetupTime();
+            case UPLOAD:
+                return elapsedTime > mSpeedTestSocket.getUploadSetupTime();
+            default:
+                return true;
+        }
+    }
+
+    /**
+     * stop all connections.
+     */
+    public void forceStopTask() {
+        for (final SpeedTestTask task : mTaskList) {
+            task.forceStopTask();
+            task.closeSocket();
+        }
+    }
+
+    /**
+     * Close socket of all connections.
+     */
+    public void closeSocket() {
+        for (final SpeedTestTask task : mTaskList) {
+            task.closeSocket();
+        }
+    }
+
+    /**
+     * Shutdown threadpool of all connections and wait for task completion.
+     */
+    public void shutdownAndWait() {
+        for (final SpeedTestTask task : mTaskList) {
+            task.shutdownAndWait();
+        }
+    }
+
+    /**
+     * retrieve current speed test mode.
+     *
+     * @return speed test mode (UPLOAD/DOWNLOAD/NONE)
+     */
+    public SpeedTestMode getSpeedTestMode() {
+        return mSpeedTestMode;
+    }
+
+    /**
+     * Listener attached to each connection task, forwarding events to the wrapper.
+     */
+    private class ConnectionListener implements ISpeedTestListener {
+
+        @Override
+        public void onCompletion(final SpeedTestReport report) {
+            onConnectionCompletion();
+        }
+
+        @Override
+        public void onProgress(final float percent, final SpeedTestReport report) {
+            if (!mReportInterval) {
+                notifyProgress(false);
+            }
+        }
+
+        @Override
+        public void onError(final SpeedTestError speedTestError, final String errorMessage) {
+            onConnectionError(speedTestError, errorMessage);
+        }
+    }
+}
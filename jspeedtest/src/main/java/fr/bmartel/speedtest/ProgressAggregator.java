@@ -0,0 +1,150 @@
+/*
+ * The MIT License (MIT)
+ * <p/>
+ * Copyright (c) 2016-2017 Bertrand Martel
+ * <p/>
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ * <p/>
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ * <p/>
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+package fr.bmartel.speedtest;
+
+import fr.bmartel.speedtest.inter.ISpeedTestSocket;
+import fr.bmartel.speedtest.utils.SpeedTestUtils;
+
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * Progress state shared by wrappers aggregating several connections : a single connection thread builds the
+ * aggregated report at a time while progress made meanwhile by other connections is coalesced into the next report.
+ * Also holds start of transfer rate computation for median interval computation method.
+ *
+ * @author Bertrand Martel
+ */
+final class ProgressAggregator {
+
+    /**
+     * speed test socket interface giving computation method.
+     */
+    private final ISpeedTestSocket mSocketInterface;
+
+    /**
+     * define if a connection thread is building an aggregated progress report.
+     */
+    private final AtomicBoolean mBusy = new AtomicBoolean();
+
+    /**
+     * limiter of aggregated progress reports, only used by the thread holding mBusy.
+     */
+    private final ProgressLimiter mLimiter;
+
+    /**
+     * number of octet transferred and time in nanoseconds at last transfer rate computation.
+     */
+    private final AtomicReference<TransferCounter.Sample> mComputationStart =
+            new AtomicReference<>(new TransferCounter.Sample(0, 0));
+
+    /**
+     * Build progress aggregator.
+     *
+     * @param socketInterface speed test socket interface
+     */
+    ProgressAggregator(final ISpeedTestSocket socketInterface) {
+        mSocketInterface = socketInterface;
+        mLimiter = new ProgressLimiter(socketInterface);
+    }
+
+    /**
+     * Start a new transfer with current progress policy.
+     *
+     * @param time transfer request time in nanoseconds
+     */
+    void reset(final long time) {
+        mComputationStart.set(new TransferCounter.Sample(0, 0));
+        mLimiter.reset(time);
+    }
+
+    /**
+     * Acquire the right to build an aggregated report, to be released with unlock.
+     *
+     * @param last true if all connections have completed : last report must not be coalesced, wait for the report
+     *             being built
+     * @return false if progress is coalesced into the report being built by another thread
+     */
+    boolean lock(final boolean last) {
+
+        if (mBusy.compareAndSet(false, true)) {
+            return true;
+        }
+        if (!last) {
+            return false;
+        }
+        do {
+            Thread.yield();
+        } while (!mBusy.compareAndSet(false, true));
+        return true;
+    }
+
+    /**
+     * Release the right to build an aggregated report.
+     */
+    void unlock() {
+        mBusy.set(false);
+    }
+
+    /**
+     * Check if an aggregated report is to be notified, this must only be called while holding lock.
+     *
+     * @param octets number of octet transferred by all connections
+     * @param last   true if all connections have completed (last progress is notified unless already notified)
+     * @return true if a report is to be notified
+     */
+    boolean isDue(final long octets, final boolean last) {
+        return last ? mLimiter.isPending(octets) && mLimiter.isDue(octets, true) : mLimiter.isDue(octets, false);
+    }
+
+    /**
+     * Compute aggregated transfer rate with socket computation method. For median interval, next computation starts
+     * at this report.
+     *
+     * @param octets      number of octet transferred by all connections
+     * @param timeStart   time at which first connection has started transferring in nanoseconds
+     * @param currentTime report time in nanoseconds
+     * @return transfer rate in octet/s
+     */
+    double getTransferRate(final long octets, final long timeStart, final long currentTime) {
+
+        long packetSize;
+        long computeStart;
+
+        switch (mSocketInterface.getComputationMethod()) {
+            case MEDIAN_INTERVAL:
+                final TransferCounter.Sample start = mComputationStart.getAndSet(
+                        new TransferCounter.Sample(octets, currentTime));
+                packetSize = Math.max(octets - start.mOctets, 0);
+                computeStart = Math.max(start.mTime, timeStart);
+                break;
+            default:
+                packetSize = octets;
+                computeStart = timeStart;
+                break;
+        }
+        return SpeedTestUtils.getTransferRate(packetSize, currentTime - computeStart);
+    }
+}
@@ -0,0 +1,121 @@
+/*
+ * The MIT License (MIT)
+ * <p/>
+ * Copyright (c) 2016-2017 Bertrand Martel
+ * <p/>
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ * <p/>
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ * <p/>
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+package fr.bmartel.speedtest;
+
+import fr.bmartel.speedtest.inter.ISpeedTestSocket;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Progress policy of a task : limits progress reports notified from the transfer thread when no report interval is
+ * defined.
+ * <p/>
+ * A report is notified once both the minimum time and the minimum number of octet since the last notified report
+ * are reached, updates in between are coalesced into the next report. Last report of a transfer is always notified.
+ * Limiter is only used by the transfer thread.
+ *
+ * @author Bertrand Martel
+ */
+final class ProgressLimiter {
+
+    /**
+     * speed test socket interface giving progress policy.
+     */
+    private final ISpeedTestSocket mSocketInterface;
+
+    /**
+     * min time in nanoseconds between two reports.
+     */
+    private long mMinInterval;
+
+    /**
+     * min number of octet transferred between two reports.
+     */
+    private long mMinOctets;
+
+    /**
+     * time of last notified report.
+     */
+    private long mLastTime;
+
+    /**
+     * number of octet transferred at last notified report.
+     */
+    private long mLastOctets;
+
+    /**
+     * Build progress limiter.
+     *
+     * @param socketInterface speed test socket interface
+     */
+    ProgressLimiter(final ISpeedTestSocket socketInterface) {
+        mSocketInterface = socketInterface;
+    }
+
+    /**
+     * Start a new transfer with current progress policy.
+     *
+     * @param time transfer start time in nanoseconds
+     */
+    void reset(final long time) {
+        mMinInterval = TimeUnit.MILLISECONDS.toNanos(mSocketInterface.getProgressMinInterval());
+        mMinOctets = mSocketInterface.getProgressMinOctets();
+        mLastTime = time;
+        mLastOctets = 0;
+    }
+
+    /**
+     * Check if a progress report is to be notified, and mark it as notified if so.
+     *
+     * @param octets number of octet transferred
+     * @param last   true if transfer is complete
+     * @return true if a report is to be notified
+     */
+    boolean isDue(final long octets, final boolean last) {
+
+        if (!last && (mMinOctets != 0 && octets - mLastOctets < mMinOctets)) {
+            return false;
+        }
+        if (mMinInterval != 0) {
+            final long time = System.nanoTime();
+            if (!last && time - mLastTime < mMinInterval) {
+                return false;
+            }
+            mLastTime = time;
+        }
+        mLastOctets = octets;
+        return true;
+    }
+
+    /**
+     * Check if transferred octets have not been notified in a report yet.
+     *
+     * @param octets number of octet transferred
+     * @return true if some progress has been coalesced since last notified report
+     */
+    boolean isPending(final long octets) {
+        return octets != mLastOctets;
+    }
+}
@@ -0,0 +1,263 @@
+/*
+ * The MIT License (MIT)
+ * <p/>
+ * Copyright (c) 2016-2017 Bertrand Martel
+ * <p/>
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ * <p/>
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ * <p/>
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package fr.bmartel.speedtest;
+
+import java.nio.ByteBuffer;
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.Map;
+
+/**
+ * Process wide pool of read buffers shared by all speed test tasks : download reading loops borrow a buffer for the
+ * duration of a transfer and give it back at the end instead of allocating a new one for each transfer.
+ * <p/>
+ * Blocking transfers use heap buffers read from socket stream, NIO transfers use direct buffers read by socket
+ * channel without intermediate copy. Buffers are pooled by capacity. Buffers given back are dropped when total size
+ * of pooled buffers would exceed maximum size.
+ *
+ * @author Bertrand Martel
+ */
+public final class ReadBufferPool {
+
+    /**
+     * pooled heap buffers by capacity.
+     */
+    private static final Map<Integer, Deque<ByteBuffer>> HEAP_BUFFERS = new HashMap<>();
+
+    /**
+     * pooled direct buffers by capacity.
+     */
+    private static final Map<Integer, Deque<ByteBuffer>> DIRECT_BUFFERS = new HashMap<>();
+
+    /**
+     * maximum size of pooled buffers in octet.
+     */
+    private static long sMaxSize = SpeedTestConst.DEFAULT_READ_BUFFER_POOL_SIZE;
+
+    /**
+     * total size of pooled buffers in octet.
+     */
+    private static long sSize;
+
+    /**
+     * number of buffers allocated.
+     */
+    private static long sAllocationCount;
+
+    /**
+     * number of buffers borrowed from pool instead of being allocated.
+     */
+    private static long sReuseCount;
+
+    /**
+     * number of buffers borrowed and not given back yet.
+     */
+    private static int sInUseCount;
+
+    /**
+     * Utility class.
+     */
+    private ReadBufferPool() {
+    }
+
+    /**
+     * Borrow a read buffer of default size.
+     *
+     * @param direct define if a direct buffer is requested (heap buffer backed by an array otherwise)
+     * @return cleared buffer of READ_BUFFER_SIZE octet
+     */
+    static ByteBuffer acquire(final boolean direct) {
+        return acquire(direct, SpeedTestConst.READ_BUFFER_SIZE);
+    }
+
+    /**
+     * Borrow a read buffer, allocating it if pool has no buffer of this capacity. Buffer must be given back at the end
+     * of transfer.
+     *
+     * @param direct   define if a direct buffer is requested (heap buffer backed by an array otherwise)
+     * @param capacity buffer capacity in octet
+     * @return cleared buffer
+     */
+    static ByteBuffer acquire(final boolean direct, final int capacity) {
+
+        ByteBuffer buffer = null;
+
+        synchronized (ReadBufferPool.class) {
+            final Deque<ByteBuffer> buffers = (direct ? DIRECT_BUFFERS : HEAP_BUFFERS).get(capacity);
+            if (buffers != null) {
+                buffer = buffers.poll();
+            }
+            sInUseCount++;
+
+            if (buffer != null) {
+                sSize -= buffer.capacity();
+                sReuseCount++;
+                return buffer;
+            }
+            sAllocationCount++;
+        }
+        if (direct) {
+            buffer = ByteBuffer.allocateDirect(capacity);
+        } else {
+            buffer = ByteBuffer.allocate(capacity);
+        }
+        return buffer;
+    }
+
+    /**
+     * Exchange a borrowed buffer for a larger one if its capacity is lower than requested size.
+     *
+     * @param buffer borrowed buffer
+     * @param size   requested size in octet
+     * @return buffer of at least requested size, of the same kind (heap/direct) as given buffer
+     */
+    static ByteBuffer fit(final ByteBuffer buffer, final int size) {
+
+        if (buffer.capacity() >= size) {
+            return buffer;
+        }
+        final ByteBuffer larger = acquire(buffer.isDirect(), size);
+        release(buffer);
+        return larger;
+    }
+
+    /**
+     * Give back a buffer borrowed from pool.
+     *
+     * @param buffer read buffer
+     */
+    static synchronized void release(final ByteBuffer buffer) {
+
+        sInUseCount--;
+
+        if (sSize + buffer.capacity() <= sMaxSize) {
+            final Map<Integer, Deque<ByteBuffer>> pool = buffer.isDirect() ? DIRECT_BUFFERS : HEAP_BUFFERS;
+            Deque<ByteBuffer> buffers = pool.get(buffer.capacity());
+            if (buffers == null) {
+                buffers = new ArrayDeque<>();
+                pool.put(buffer.capacity(), buffers);
+            }
+            buffer.clear();
+            buffers.push(buffer);
+            sSize += buffer.capacity();
+        }
+    }
+
+    /**
+     * Drop pooled buffers until total size is under a limit.
+     *
+     * @param maxSize size limit in octet
+     */
+    private static void evict(final long maxSize) {
+        evict(HEAP_BUFFERS, maxSize);
+        evict(DIRECT_BUFFERS, maxSize);
+    }
+
+    /**
+     * Drop buffers of a pool until total size is under a limit.
+     *
+     * @param pool    pooled buffers by capacity
+     * @param maxSize size limit in octet
+     */
+    private static void evict(final Map<Integer, Deque<ByteBuffer>> pool, final long maxSize) {
+
+        final Iterator<Deque<ByteBuffer>> iterator = pool.values().iterator();
+
+        while (sSize > maxSize && iterator.hasNext()) {
+            final Deque<ByteBuffer> buffers = iterator.next();
+            while (sSize > maxSize && !buffers.isEmpty()) {
+                sSize -= buffers.poll().capacity();
+            }
+            if (buffers.isEmpty()) {
+                iterator.remove();
+            }
+        }
+    }
+
+    /**
+     * Set maximum size of pooled buffers (0 to disable pooling).
+     *
+     * @param maxSize maximum size in octet
+     */
+    public static synchronized void setMaxSize(final long maxSize) {
+        if (maxSize >= 0) {
+            sMaxSize = maxSize;
+            evict(sMaxSize);
+        }
+    }
+
+    /**
+     * Get maximum size of pooled buffers.
+     *
+     * @return maximum size in octet
+     */
+    public static synchronized long getMaxSize() {
+        return sMaxSize;
+    }
+
+    /**
+     * Get total size of buffers waiting in pool.
+     *
+     * @return size in octet
+     */
+    public static synchronized long getPooledSize() {
+        return sSize;
+    }
+
+    /**
+     * Get number of buffers allocated since start.
+     *
+     * @return allocation count
+     */
+    public static synchronized long getAllocationCount() {
+        return sAllocationCount;
+    }
+
+    /**
+     * Get number of buffers borrowed from pool instead of being allocated since start.
+     *
+     * @return reuse count
+     */
+    public static synchronized long getReuseCount() {
+        return sReuseCount;
+    }
+
+    /**
+     * Get number of buffers currently used by transfers.
+     *
+     * @return in use count
+     */
+    public static synchronized int getInUseCount() {
+        return sInUseCount;
+    }
+
+    /**
+     * Drop all pooled buffers.
+     */
+    public static synchronized void clear() {
+        evict(0);
+    }
+}
@@ -29,10 +29,11 @@ import fr.bmartel.speedtest.inter.ISpeedTestListener;
 import fr.bmartel.speedtest.inter.ISpeedTestSocket;
 import fr.bmartel.speedtest.model.SpeedTestError;
 import fr.bmartel.speedtest.model.SpeedTestMode;
+import fr.bmartel.speedtest.utils.SpeedTestUtils;
 
-import java.math.BigDecimal;
 import java.math.RoundingMode;
 import java.util.*;
+import java.util.concurrent.atomic.AtomicLong;
 
 /**
  * Repeat tasks speed test wrapper : this is used to repeat download/upload requests during a fix duration.
@@ -44,7 +45,7 @@ public class RepeatWrapper {
     /**
      * transfer rate list.
      */
-    private List<BigDecimal> mRepeatTransferRateList = Collections.synchronizedList(new ArrayList<BigDecimal>());
+    private List<Double> mRepeatTransferRateList = Collections.synchronizedList(new ArrayList<Double>());
 
     /**
      * define if download repeat task is finished.
@@ -52,9 +53,9 @@ public class RepeatWrapper {
     private boolean mRepeatFinished;
 
     /**
-     * number of packet downloaded for download/upload repeat task.
+     * number of packet downloaded for download/upload repeat task, updated by every connection.
      */
-    private long mRepeatTempPckSize;
+    private final AtomicLong mRepeatTempPckSize = new AtomicLong();
 
     /**
      * define if upload should be repeated.
@@ -82,9 +83,9 @@ public class RepeatWrapper {
     private boolean mRepeatDownload;
 
     /**
-     * number of packet pending for download repeat task.
+     * number of packet pending for download repeat task, updated by every connection.
      */
-    private BigDecimal mRepeatPacketSize = BigDecimal.ZERO;
+    private final AtomicLong mRepeatPacketSize = new AtomicLong();
 
     /**
      * define if the first download repeat has been sent and waiting for connection
@@ -131,57 +132,54 @@ public class RepeatWrapper {
                                            final RoundingMode roundingMode,
                                            final SpeedTestMode speedTestMode,
                                            final long reportTime,
-                                           final BigDecimal transferRateOctet) {
+                                           final double transferRateOctet) {
 
-        BigDecimal progressPercent = BigDecimal.ZERO;
-        long temporaryPacketSize = 0;
-        BigDecimal downloadRepeatRateOctet = transferRateOctet;
+        // read counters once so that the whole report is built from the same values
+        final long tempPacketSize = mRepeatTempPckSize.get();
+        final long packetSize = mRepeatPacketSize.get();
+
+        float progressPercent;
+        double downloadRepeatRateOctet = transferRateOctet;
         long downloadRepeatReportTime = reportTime;
+        final long repeatWindow = mRepeatWindows * 1000000L;
 
         if (mStartDateRepeat != 0) {
             if (!mRepeatFinished) {
-                long test = System.nanoTime() - mStartDateRepeat;
-                progressPercent = new BigDecimal(test).multiply
-                        (SpeedTestConst.PERCENT_MAX)
-                        .divide(new BigDecimal(mRepeatWindows).multiply(new BigDecimal(1000000)), scale, roundingMode);
+                progressPercent = SpeedTestUtils.getProgressPercent(System.nanoTime() - mStartDateRepeat,
+                        repeatWindow);
             } else {
-                progressPercent = SpeedTestConst.PERCENT_MAX;
+                progressPercent = (float) SpeedTestConst.PERCENT_MAX_VALUE;
             }
         } else {
             //download has not started yet
-            progressPercent = BigDecimal.ZERO;
-        }
-
-        BigDecimal rates = BigDecimal.ZERO;
-        for (final BigDecimal rate :
-                mRepeatTransferRateList) {
-            rates = rates.add(rate);
+            progressPercent = 0;
         }
 
-        if (!mRepeatTransferRateList.isEmpty()) {
-            downloadRepeatRateOctet = rates.add(downloadRepeatRateOctet).divide(new BigDecimal(mRepeatTransferRateList
-                    .size()).add
-                    (new BigDecimal(mRepeatTempPckSize).divide(mRepeatPacketSize, scale, roundingMode)
-                    ), scale, roundingMode);
+        synchronized (mRepeatTransferRateList) {
+            if (!mRepeatTransferRateList.isEmpty()) {
+                double rates = 0;
+                for (final double rate : mRepeatTransferRateList) {
+                    rates += rate;
+                }
+                final double current = (packetSize != 0) ? (double) tempPacketSize / packetSize : 0;
+                downloadRepeatRateOctet = (rates + downloadRepeatRateOctet) /
+                        (mRepeatTransferRateList.size() + current);
+            }
         }
 
-        final BigDecimal transferRateBit = downloadRepeatRateOctet.multiply(SpeedTestConst.BIT_MULTIPLIER);
-
-        if (!mRepeatFinished) {
-            temporaryPacketSize = mRepeatTempPckSize;
-        } else {
-            temporaryPacketSize = mRepeatTempPckSize;
-            downloadRepeatReportTime = new BigDecimal(mStartDateRepeat).add(new BigDecimal(mRepeatWindows).multiply(new BigDecimal(1000000))).longValue();
+        if (mRepeatFinished) {
+            downloadRepeatReportTime = mStartDateRepeat + repeatWindow;
         }
 
         return new SpeedTestReport(speedTestMode,
-                progressPercent.floatValue(),
+                progressPercent,
                 mStartDateRepeat,
                 downloadRepeatReportTime,
-                temporaryPacketSize,
-                mRepeatPacketSize.longValueExact(),
+                tempPacketSize,
+                packetSize,
                 downloadRepeatRateOctet,
-                transferRateBit,
+                scale,
+                roundingMode,
                 mRepeatRequestNum);
     }
 
@@ -201,7 +199,7 @@ public class RepeatWrapper {
      * @param uri uri to fetch to upload file
      * @fileSizeOctet file size in octet
      */
-    private void startUploadRepeat(final String uri, final int fileSizeOctet) {
+    private void startUploadRepeat(final String uri, final long fileSizeOctet) {
         mSpeedTestSocket.startUpload(uri, fileSizeOctet);
     }
 
@@ -226,7 +224,7 @@ public class RepeatWrapper {
         final ISpeedTestListener speedTestListener = new ISpeedTestListener() {
             @Override
             public void onCompletion(final SpeedTestReport report) {
-                mRepeatTransferRateList.add(report.getTransferRateOctet());
+                mRepeatTransferRateList.add(report.getTransferRateOctetValue());
                 startDownloadRepeat(uri);
                 mRepeatRequestNum++;
             }
@@ -242,14 +240,14 @@ public class RepeatWrapper {
             }
         };
 
-        mSpeedTestSocket.addSpeedTestListener(speedTestListener);
+        mSpeedTestSocket.addInternalListener(speedTestListener);
 
         mRepeatWindows = repeatWindow;
 
         mTimer.schedule(new TimerTask() {
             @Override
             public void run() {
-                mSpeedTestSocket.removeSpeedTestListener(speedTestListener);
+                mSpeedTestSocket.removeInternalListener(speedTestListener);
                 mSpeedTestSocket.forceStopTask();
                 cleanTimer();
                 mRepeatFinished = true;
@@ -283,7 +281,7 @@ public class RepeatWrapper {
             final String uri,
             final int repeatWindow,
             final int reportPeriodMillis,
-            final int fileSizeOctet,
+            final long fileSizeOctet,
             final IRepeatListener repeatListener) {
 
         initRepeat(false);
@@ -304,20 +302,20 @@ public class RepeatWrapper {
 
             @Override
             public void onCompletion(final SpeedTestReport report) {
-                mRepeatTransferRateList.add(report.getTransferRateOctet());
+                mRepeatTransferRateList.add(report.getTransferRateOctetValue());
                 startUploadRepeat(uri, fileSizeOctet);
                 mRepeatRequestNum++;
             }
         };
 
-        mSpeedTestSocket.addSpeedTestListener(speedTestListener);
+        mSpeedTestSocket.addInternalListener(speedTestListener);
 
         mRepeatWindows = repeatWindow;
 
         mTimer.schedule(new TimerTask() {
             @Override
             public void run() {
-                mSpeedTestSocket.removeSpeedTestListener(speedTestListener);
+                mSpeedTestSocket.removeInternalListener(speedTestListener);
                 mSpeedTestSocket.forceStopTask();
                 cleanTimer();
                 mRepeatFinished = true;
@@ -364,8 +362,8 @@ public class RepeatWrapper {
      */
     private void initRepeatVars() {
         mRepeatRequestNum = 0;
-        mRepeatPacketSize = BigDecimal.ZERO;
-        mRepeatTempPckSize = 0;
+        mRepeatPacketSize.set(0);
+        mRepeatTempPckSize.set(0);
         mRepeatFinished = false;
         mStartDateRepeat = 0;
         mRepeatTransferRateList = new ArrayList<>();
@@ -378,7 +376,7 @@ public class RepeatWrapper {
      */
     private void clearRepeatTask(final ISpeedTestListener listener) {
 
-        mSpeedTestSocket.removeSpeedTestListener(listener);
+        mSpeedTestSocket.removeInternalListener(listener);
         cleanTimer();
         mRepeatFinished = true;
         mSpeedTestSocket.closeSocket();
@@ -435,8 +433,8 @@ public class RepeatWrapper {
      *
      * @param packetSize packet size in octet
      */
-    public void updatePacketSize(final BigDecimal packetSize) {
-        mRepeatPacketSize = mRepeatPacketSize.add(packetSize);
+    public void updatePacketSize(final long packetSize) {
+        mRepeatPacketSize.addAndGet(packetSize);
     }
 
     /**
@@ -444,8 +442,8 @@ public class RepeatWrapper {
      *
      * @param read packet size in octet
      */
-    public void updateTempPacketSize(final int read) {
-        mRepeatTempPckSize += read;
+    public void updateTempPacketSize(final long read) {
+        mRepeatTempPckSize.addAndGet(read);
     }
 
     /**
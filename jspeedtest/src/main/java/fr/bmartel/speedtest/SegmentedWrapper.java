@@ -0,0 +1,658 @@
+/*
+ * The MIT License (MIT)
+ * <p/>
+ * Copyright (c) 2016-2017 Bertrand Martel
+ * <p/>
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ * <p/>
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ * <p/>
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+package fr.bmartel.speedtest;
+
+import fr.bmartel.speedtest.inter.ISpeedTestListener;
+import fr.bmartel.speedtest.inter.ISpeedTestSocket;
+import fr.bmartel.speedtest.model.SpeedTestError;
+import fr.bmartel.speedtest.model.SpeedTestMode;
+import fr.bmartel.speedtest.utils.SpeedTestUtils;
+
+import java.math.RoundingMode;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+/**
+ * Segmented download wrapper : this is used to download a single resource over several connections using HTTP
+ * Range requests, optionally from several mirrors serving the same resource.
+ * <p/>
+ * A first range is requested to learn the resource size from Content-Range header. Each connection then requests
+ * the next segment of the remaining content as soon as its current segment is completed so that fast connections
+ * download more segments than slow ones. Segment size decreases with remaining content so that slow connections
+ * don't hold large segments at the end of the transfer.
+ *
+ * @author Bertrand Martel
+ */
+public class SegmentedWrapper {
+
+    /**
+     * speed test socket interface.
+     */
+    private final ISpeedTestSocket mSpeedTestSocket;
+
+    /**
+     * main task owning the report thread pool.
+     */
+    private final SpeedTestTask mMainTask;
+
+    /**
+     * listener list of speed test socket.
+     */
+    private final List<ISpeedTestListener> mListenerList;
+
+    /**
+     * connection list.
+     */
+    private final List<Connection> mConnectionList = new CopyOnWriteArrayList<>();
+
+    /**
+     * first octet not yet requested.
+     */
+    private long mNextOffset;
+
+    /**
+     * number of mirrors serving the resource.
+     */
+    private int mMirrorCount;
+
+    /**
+     * report of each segment downloaded.
+     */
+    private final List<SpeedTestReport> mSegmentReports = new CopyOnWriteArrayList<>();
+
+    /**
+     * current speed test mode.
+     */
+    private SpeedTestMode mSpeedTestMode = SpeedTestMode.NONE;
+
+    /**
+     * define if resource size has been retrieved from first segment.
+     */
+    private boolean mProbed;
+
+    /**
+     * size of the resource to download.
+     */
+    private long mResourceSize;
+
+    /**
+     * number of octet of completed segments.
+     */
+    private long mCompletedSize;
+
+    /**
+     * define if an error has been dispatched already for the current transfer.
+     */
+    private boolean mErrorDispatched;
+
+    /**
+     * define if transfer has been stopped : no more segment is requested.
+     */
+    private boolean mStopped;
+
+    /**
+     * define if report interval is set.
+     */
+    private boolean mReportInterval;
+
+    /**
+     * time at which the current transfer has been requested in nanoseconds.
+     */
+    private long mTimeRequest;
+
+    /**
+     * time at which first segment has started in nanoseconds.
+     */
+    private long mTimeStart;
+
+    /**
+     * time at which last segment has been completed in nanoseconds.
+     */
+    private long mTimeEnd;
+
+    /**
+     * aggregated progress reports and transfer rate computation start.
+     */
+    private final ProgressAggregator mProgress;
+
+    /**
+     * Build Speed test segmented wrapper.
+     *
+     * @param socket       speed test socket
+     * @param mainTask     speed test socket main task
+     * @param listenerList speed test socket listener list
+     */
+    public SegmentedWrapper(final ISpeedTestSocket socket,
+                            final SpeedTestTask mainTask,
+                            final List<ISpeedTestListener> listenerList) {
+        mSpeedTestSocket = socket;
+        mMainTask = mainTask;
+        mListenerList = listenerList;
+        mProgress = new ProgressAggregator(socket);
+    }
+
+    /**
+     * Start segmented download over several connections.
+     *
+     * @param uri             uri to fetch to download file
+     * @param connectionCount number of connections
+     * @param reportInterval  define if report interval is set
+     */
+    public void startDownload(final String uri, final int connectionCount, final boolean reportInterval) {
+        startDownload(Collections.singletonList(uri), connectionCount, reportInterval);
+    }
+
+    /**
+     * Start segmented download over several connections to each mirror.
+     *
+     * @param uris            uri of the same file on each mirror
+     * @param connectionCount number of connections per mirror
+     * @param reportInterval  define if report interval is set
+     */
+    public void startDownload(final List<String> uris, final int connectionCount, final boolean reportInterval) {
+
+        final Connection connection;
+
+        synchronized (this) {
+            initConnections(uris, connectionCount, reportInterval);
+            connection = mConnectionList.get(0);
+            connection.mSegment = new long[]{0, SpeedTestConst.SEGMENT_PROBE_SIZE - 1};
+            connection.mTask.setRange(0, SpeedTestConst.SEGMENT_PROBE_SIZE - 1);
+        }
+        connection.mTask.startDownloadRequest(connection.mUri);
+    }
+
+    /**
+     * Initialize connection list and transfer state.
+     *
+     * @param uris            uri of the same file on each mirror
+     * @param connectionCount number of connections per mirror
+     * @param reportInterval  define if report interval is set
+     */
+    private void initConnections(final List<String> uris, final int connectionCount, final boolean reportInterval) {
+
+        final int totalCount = uris.size() * connectionCount;
+
+        while (mConnectionList.size() < totalCount) {
+            final Connection connection = new Connection();
+            final List<ISpeedTestListener> taskListeners = new ArrayList<>();
+            taskListeners.add(new SegmentListener(connection));
+            connection.mTask = new SpeedTestTask(mSpeedTestSocket, taskListeners);
+            connection.mTask.setKeepAlive(true);
+            connection.mTask.setAggregated(true);
+            mConnectionList.add(connection);
+        }
+        while (mConnectionList.size() > totalCount) {
+            mConnectionList.remove(mConnectionList.size() - 1).mTask.closeExecutors();
+        }
+
+        for (int i = 0; i < totalCount; i++) {
+            // mirrors are interleaved so that first connections reach different mirrors
+            final Connection connection = mConnectionList.get(i);
+            connection.mMirror = i % uris.size();
+            connection.mUri = uris.get(connection.mMirror);
+            connection.mSegment = null;
+            connection.mTransferred = 0;
+            connection.mTimeStart = 0;
+            connection.mTimeEnd = 0;
+            connection.mTask.setReportInterval(reportInterval);
+            connection.mTask.setProxyUrl(mMainTask.getProxyUrl());
+        }
+
+        mNextOffset = 0;
+        mMirrorCount = uris.size();
+        mSegmentReports.clear();
+        mSpeedTestMode = SpeedTestMode.DOWNLOAD;
+        mReportInterval = reportInterval;
+        mProbed = false;
+        mResourceSize = 0;
+        mCompletedSize = 0;
+        mErrorDispatched = false;
+        mStopped = false;
+        mTimeRequest = System.nanoTime();
+        mTimeStart = 0;
+        mTimeEnd = 0;
+        mProgress.reset(mTimeRequest);
+    }
+
+    /**
+     * Assign next segment to an idle connection. Segment size is a share of remaining content so that segments get
+     * smaller as the transfer comes to an end.
+     *
+     * @param connection idle connection
+     * @return true if a segment has been assigned
+     */
+    private boolean assignSegment(final Connection connection) {
+
+        final long remaining = mResourceSize - mNextOffset;
+
+        if (mStopped || remaining <= 0) {
+            return false;
+        }
+        final long count = (long) mConnectionList.size() * SpeedTestConst.SEGMENTS_PER_CONNECTION;
+        final long size = Math.min(remaining, Math.max(SpeedTestConst.SEGMENT_PROBE_SIZE, remaining / count));
+
+        final long[] segment = new long[]{mNextOffset, mNextOffset + size - 1};
+        mNextOffset += size;
+
+        connection.mSegment = segment;
+        connection.mTask.setRange(segment[0], segment[1]);
+        return true;
+    }
+
+    /**
+     * Called when a connection has completed its segment : next segment is requested on this connection.
+     *
+     * @param connection connection which has completed its segment
+     */
+    private void onSegmentCompletion(final Connection connection) {
+
+        final SpeedTestTask task = connection.mTask;
+        // segment may have been interrupted by a stop request
+        final long size = task.getTemporaryPacketSize(SpeedTestMode.DOWNLOAD);
+        final List<Connection> startList = new ArrayList<>();
+        final boolean completed;
+        boolean truncated = false;
+
+        synchronized (this) {
+
+            if (mErrorDispatched || connection.mSegment == null) {
+                return;
+            }
+            final long[] segment = connection.mSegment;
+            connection.mSegment = null;
+
+            if (size != 0) {
+                mSegmentReports.add(task.getResponseReport(task.getTimeStart(), task.getTimeEnd(), size));
+
+                if (connection.mTimeStart == 0) {
+                    connection.mTimeStart = task.getTimeStart();
+                }
+                connection.mTimeEnd = task.getTimeEnd();
+                connection.mTransferred += size;
+                mCompletedSize += size;
+            }
+
+            if (!mProbed) {
+                mProbed = true;
+                mTimeStart = connection.mTimeStart;
+                // whole content is sent by servers not supporting Range
+                mResourceSize = Math.max(task.getResourceSize(), size);
+                mNextOffset = size;
+
+                for (final Connection idleConnection : mConnectionList) {
+                    if (assignSegment(idleConnection)) {
+                        startList.add(idleConnection);
+                    }
+                }
+            } else if (!mStopped && segment[0] + size < Math.min(segment[1] + 1, mResourceSize)) {
+                // server has closed connection before end of segment : rest of segment is requested again
+                if (size == 0) {
+                    truncated = true;
+                } else {
+                    connection.mSegment = new long[]{segment[0] + size, segment[1]};
+                    connection.mTask.setRange(connection.mSegment[0], connection.mSegment[1]);
+                    startList.add(connection);
+                }
+            } else if (assignSegment(connection)) {
+                startList.add(connection);
+            }
+
+            completed = !truncated && isIdle();
+
+            if (completed) {
+                mTimeEnd = (size != 0) ? connection.mTimeEnd : System.nanoTime();
+            }
+        }
+
+        if (truncated) {
+            onConnectionError(SpeedTestError.SOCKET_ERROR, "connection closed before end of segment");
+            return;
+        }
+
+        for (final Connection nextConnection : startList) {
+            nextConnection.mTask.startDownloadRequest(nextConnection.mUri);
+        }
+
+        if (completed) {
+            if (!mReportInterval) {
+                notifyProgress(true);
+            }
+
+            final SpeedTestReport report = getReport();
+
+            mReportInterval = false;
+            finishTask();
+
+            for (int i = 0; i < mListenerList.size(); i++) {
+                mListenerList.get(i).onCompletion(report);
+            }
+        }
+    }
+
+    /**
+     * Check if all segments have been downloaded.
+     *
+     * @return true if no segment is pending or running
+     */
+    private boolean isIdle() {
+
+        if (!mStopped && mNextOffset < mResourceSize) {
+            return false;
+        }
+        for (final Connection connection : mConnectionList) {
+            if (connection.mSegment != null) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Called when a connection has failed : all other connections are stopped and error is dispatched once.
+     *
+     * @param speedTestError error enum
+     * @param errorMessage   error message
+     */
+    private void onConnectionError(final SpeedTestError speedTestError, final String errorMessage) {
+
+        synchronized (this) {
+            if (mErrorDispatched) {
+                return;
+            }
+            mErrorDispatched = true;
+        }
+
+        mReportInterval = false;
+        forceStopTask();
+        finishTask();
+
+        for (int i = 0; i < mListenerList.size(); i++) {
+            mListenerList.get(i).onError(speedTestError, errorMessage);
+        }
+    }
+
+    /**
+     * Release connections kept open between segments and report thread pool.
+     */
+    private void finishTask() {
+        for (final Connection connection : mConnectionList) {
+            connection.mTask.closeSocket();
+            connection.mTask.closeExecutors();
+        }
+        mMainTask.setReportInterval(false);
+        if (!mSpeedTestSocket.getRepeatWrapper().isRepeat()) {
+            mMainTask.closeExecutors();
+        }
+    }
+
+    /**
+     * Notify aggregated progress. A single connection thread builds the aggregated report at a time, progress made
+     * meanwhile by other connections is coalesced into the next report.
+     *
+     * @param last true if all segments have completed (last progress is always notified)
+     */
+    private void notifyProgress(final boolean last) {
+
+        if (!mProgress.lock(last)) {
+            return;
+        }
+        try {
+            if (!mProgress.isDue(getTemporaryPacketSize(), last)) {
+                return;
+            }
+
+            final SpeedTestReport report = getReport();
+
+            for (int i = 0; i < mListenerList.size(); i++) {
+                mListenerList.get(i).onProgress(report.getProgressPercent(), report);
+            }
+        } finally {
+            mProgress.unlock();
+        }
+    }
+
+    /**
+     * Get number of octet of completed and running segments.
+     *
+     * @return number of octet
+     */
+    private synchronized long getTemporaryPacketSize() {
+        long temporaryPacketSize = mCompletedSize;
+
+        for (final Connection connection : mConnectionList) {
+            if (connection.mSegment != null) {
+                temporaryPacketSize += connection.mTask.getTemporaryPacketSize(SpeedTestMode.DOWNLOAD);
+            }
+        }
+        return temporaryPacketSize;
+    }
+
+    /**
+     * Build a report aggregating all segments.
+     *
+     * @return speed test report
+     */
+    public SpeedTestReport getReport() {
+
+        final List<SpeedTestReport> connectionReports = new ArrayList<>();
+        final List<SpeedTestReport> mirrorReports = new ArrayList<>();
+        final long currentTime;
+        long timeStart;
+        long temporaryPacketSize;
+        long totalPacketSize;
+
+        synchronized (this) {
+
+            currentTime = (mTimeEnd != 0) ? mTimeEnd : System.nanoTime();
+            temporaryPacketSize = mCompletedSize;
+            totalPacketSize = mResourceSize;
+            timeStart = mTimeStart;
+
+            final long[] mirrorTransferred = new long[mMirrorCount];
+            final long[] mirrorStart = new long[mMirrorCount];
+            final long[] mirrorEnd = new long[mMirrorCount];
+
+            for (final Connection connection : mConnectionList) {
+
+                long transferred = connection.mTransferred;
+                long connectionStart = connection.mTimeStart;
+
+                if (connection.mSegment != null) {
+                    final long segmentSize = connection.mTask.getTemporaryPacketSize(SpeedTestMode.DOWNLOAD);
+                    transferred += segmentSize;
+                    temporaryPacketSize += segmentSize;
+
+                    if (!mProbed) {
+                        totalPacketSize += connection.mTask.getTotalPacketSize(SpeedTestMode.DOWNLOAD);
+                    }
+                    if (connectionStart == 0 && connection.mTask.getTimeStart() >= mTimeRequest) {
+                        connectionStart = connection.mTask.getTimeStart();
+                        if (timeStart == 0) {
+                            // first segment is running
+                            timeStart = connectionStart;
+                        }
+                    }
+                }
+                if (connectionStart != 0) {
+                    final long connectionEnd = (connection.mSegment != null) ? currentTime : connection.mTimeEnd;
+                    connectionReports.add(connection.mTask.getResponseReport(connectionStart, connectionEnd,
+                            transferred));
+
+                    final int mirror = connection.mMirror;
+                    mirrorTransferred[mirror] += transferred;
+                    if (mirrorStart[mirror] == 0 || connectionStart < mirrorStart[mirror]) {
+                        mirrorStart[mirror] = connectionStart;
+                    }
+                    mirrorEnd[mirror] = Math.max(mirrorEnd[mirror], connectionEnd);
+                }
+            }
+
+            if (mMirrorCount > 1) {
+                for (int i = 0; i < mMirrorCount; i++) {
+                    mirrorReports.add(mMainTask.getResponseReport(mirrorStart[i], mirrorEnd[i],
+                            mirrorTransferred[i]));
+                }
+            }
+        }
+
+        final int scale = mSpeedTestSocket.getDefaultScale();
+        final RoundingMode roundingMode = mSpeedTestSocket.getDefaultRoundingMode();
+
+        double transferRateOps = 0;
+
+        if (timeStart != 0 && (currentTime - timeStart) > mSpeedTestSocket.getDownloadSetupTime()) {
+            transferRateOps = mProgress.getTransferRate(temporaryPacketSize, timeStart, currentTime);
+        }
+
+        return new SpeedTestReport(SpeedTestMode.DOWNLOAD,
+                SpeedTestUtils.getProgressPercent(temporaryPacketSize, totalPacketSize),
+                timeStart, currentTime, temporaryPacketSize, totalPacketSize,
+                transferRateOps, scale, roundingMode, 1)
+                .withConnectionReports(connectionReports)
+                .withResponseReports(new ArrayList<>(mSegmentReports))
+                .withMirrorReports(mirrorReports);
+    }
+
+    /**
+     * stop all connections.
+     */
+    public void forceStopTask() {
+        synchronized (this) {
+            mStopped = true;
+        }
+        for (final Connection connection : mConnectionList) {
+            connection.mTask.forceStopTask();
+            connection.mTask.closeSocket();
+        }
+    }
+
+    /**
+     * Close socket of all connections.
+     */
+    public void closeSocket() {
+        for (final Connection connection : mConnectionList) {
+            connection.mTask.closeSocket();
+        }
+    }
+
+    /**
+     * Shutdown threadpool of all connections and wait for task completion.
+     */
+    public void shutdownAndWait() {
+        for (final Connection connection : mConnectionList) {
+            connection.mTask.shutdownAndWait();
+        }
+    }
+
+    /**
+     * retrieve current speed test mode.
+     *
+     * @return speed test mode (UPLOAD/DOWNLOAD/NONE)
+     */
+    public SpeedTestMode getSpeedTestMode() {
+        return mSpeedTestMode;
+    }
+
+    /**
+     * Connection downloading segments one after the other.
+     */
+    private static class Connection {
+
+        /**
+         * task managing this connection.
+         */
+        private SpeedTestTask mTask;
+
+        /**
+         * uri requested on this connection.
+         */
+        private String mUri;
+
+        /**
+         * index of the mirror reached by this connection.
+         */
+        private int mMirror;
+
+        /**
+         * segment being downloaded ({first octet, last octet}, null if connection is idle).
+         */
+        private long[] mSegment;
+
+        /**
+         * number of octet of segments completed on this connection.
+         */
+        private long mTransferred;
+
+        /**
+         * time at which first segment has started in nanoseconds.
+         */
+        private long mTimeStart;
+
+        /**
+         * time at which last segment has been completed in nanoseconds.
+         */
+        private long mTimeEnd;
+    }
+
+    /**
+     * Listener attached to each connection task, forwarding events to the wrapper.
+     */
+    private class SegmentListener implements ISpeedTestListener {
+
+        /**
+         * connection this listener is attached to.
+         */
+        private final Connection mConnection;
+
+        /**
+         * Build segment listener.
+         *
+         * @param connection connection this listener is attached to
+         */
+        SegmentListener(final Connection connection) {
+            mConnection = connection;
+        }
+
+        @Override
+        public void onCompletion(final SpeedTestReport report) {
+            onSegmentCompletion(mConnection);
+        }
+
+        @Override
+        public void onProgress(final float percent, final SpeedTestReport report) {
+            if (!mReportInterval) {
+                notifyProgress(false);
+            }
+        }
+
+        @Override
+        public void onError(final SpeedTestError speedTestError, final String errorMessage) {
+            onConnectionError(speedTestError, errorMessage);
+        }
+    }
+}
@@ -0,0 +1,211 @@
+/*
+ * The MIT License (MIT)
+ * <p/>
+ * Copyright (c) 2016-2017 Bertrand Martel
+ * <p/>
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ * <p/>
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ * <p/>
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+
+package fr.bmartel.speedtest;
+
+import fr.bmartel.speedtest.inter.ISpeedTestSocket;
+
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.net.Socket;
+import java.net.SocketOption;
+import java.nio.channels.SocketChannel;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Apply socket options defined in speed test socket to a connection.
+ * <p/>
+ * In auto socket buffer mode, send and receive buffers are sized to the bandwidth-delay product of target rate and
+ * round trip time measured on TCP connection establishment. Receive buffer size is taken into account for TCP window
+ * scale only if set before connect : it is set before connect when round trip time to the host is known from a
+ * previous connection, and right after connect otherwise.
+ *
+ * @author Bertrand Martel
+ */
+final class SocketTuner {
+
+    /**
+     * last connection establishment time in nanoseconds per host and port, least recently used hosts are removed
+     * once SpeedTestConst.MAX_ROUND_TRIP_TIME_COUNT hosts are recorded.
+     */
+    private static final Map<String, Long> sRoundTripTime = Collections.synchronizedMap(
+            new LinkedHashMap<String, Long>(16, 0.75f, true) {
+                @Override
+                protected boolean removeEldestEntry(final Map.Entry<String, Long> eldest) {
+                    return size() > SpeedTestConst.MAX_ROUND_TRIP_TIME_COUNT;
+                }
+            });
+
+    /**
+     * name of the class holding Linux extended socket options.
+     */
+    private static final String EXTENDED_OPTIONS_CLASS = "jdk.net.ExtendedSocketOptions";
+
+    /**
+     * name of TCP quick ack option.
+     */
+    private static final String QUICK_ACK_OPTION = "TCP_QUICKACK";
+
+    /**
+     * number of nanoseconds in a second.
+     */
+    private static final double NANO_SECOND = 1000000000d;
+
+    /**
+     * number of bits in an octet.
+     */
+    private static final int BIT_PER_OCTET = 8;
+
+    private SocketTuner() {
+    }
+
+    /**
+     * Apply options to a socket not yet connected.
+     *
+     * @param socket          socket to be connected
+     * @param socketInterface speed test socket holding options
+     * @param address         remote address
+     * @throws IOException options could not be set
+     */
+    static void beforeConnect(final Socket socket,
+                              final ISpeedTestSocket socketInterface,
+                              final InetSocketAddress address) throws IOException {
+
+        final Long roundTripTime = sRoundTripTime.get(getKey(address));
+
+        setBufferSizes(socket, socketInterface, (roundTripTime != null) ? roundTripTime : 0);
+
+        if (socketInterface.isTcpNoDelay()) {
+            socket.setTcpNoDelay(true);
+        }
+        if (socketInterface.getTrafficClass() != SpeedTestConst.DEFAULT_TRAFFIC_CLASS) {
+            socket.setTrafficClass(socketInterface.getTrafficClass());
+        }
+    }
+
+    /**
+     * Apply options to a connected socket and record round trip time to remote host.
+     *
+     * @param socket          connected socket
+     * @param socketInterface speed test socket holding options
+     * @param address         remote address
+     * @param connectTime     connection establishment time in nanoseconds
+     * @throws IOException options could not be set
+     */
+    static void afterConnect(final Socket socket,
+                             final ISpeedTestSocket socketInterface,
+                             final InetSocketAddress address,
+                             final long connectTime) throws IOException {
+
+        if (connectTime > 0 && sRoundTripTime.put(getKey(address), connectTime) == null) {
+            setBufferSizes(socket, socketInterface, connectTime);
+        }
+        if (socketInterface.isQuickAck()) {
+            setQuickAck(socket);
+        }
+    }
+
+    /**
+     * Set send and receive buffer sizes. Sizes set explicitly take precedence over auto socket buffer mode.
+     *
+     * @param socket          socket
+     * @param socketInterface speed test socket holding options
+     * @param roundTripTime   round trip time in nanoseconds (0 if unknown)
+     * @throws IOException buffer sizes could not be set
+     */
+    private static void setBufferSizes(final Socket socket,
+                                       final ISpeedTestSocket socketInterface,
+                                       final long roundTripTime) throws IOException {
+
+        final int autoSize = getAutoBufferSize(socketInterface.getAutoBufferTargetRate(), roundTripTime);
+
+        final int receiveBufferSize = (socketInterface.getReceiveBufferSize() > 0) ?
+                socketInterface.getReceiveBufferSize() : autoSize;
+        final int sendBufferSize = (socketInterface.getSendBufferSize() > 0) ?
+                socketInterface.getSendBufferSize() : autoSize;
+
+        if (receiveBufferSize > 0) {
+            socket.setReceiveBufferSize(receiveBufferSize);
+        }
+        if (sendBufferSize > 0) {
+            socket.setSendBufferSize(sendBufferSize);
+        }
+    }
+
+    /**
+     * Get bandwidth-delay product of target rate and round trip time.
+     *
+     * @param targetRate    target rate in bit/s (0 if auto socket buffer mode is disabled)
+     * @param roundTripTime round trip time in nanoseconds (0 if unknown)
+     * @return buffer size in octet (0 if not defined)
+     */
+    static int getAutoBufferSize(final long targetRate, final long roundTripTime) {
+
+        if (targetRate <= 0 || roundTripTime <= 0) {
+            return 0;
+        }
+        final double size = (double) targetRate * roundTripTime / NANO_SECOND / BIT_PER_OCTET;
+
+        return (int) Math.max(1, Math.min(size, SpeedTestConst.MAX_AUTO_SOCKET_BUFFER_SIZE));
+    }
+
+    /**
+     * Enable TCP quick ack through JDK extended socket options. Option is ignored when it is not supported by the
+     * platform or the JVM.
+     * <p/>
+     * Option is only set once connection is established : Linux may clear it later on (it is not permanent), it is
+     * not set again after each read.
+     *
+     * @param socket connected socket
+     */
+    @SuppressWarnings("unchecked")
+    private static void setQuickAck(final Socket socket) {
+        try {
+            final SocketOption<Boolean> option = (SocketOption<Boolean>) Class.forName(EXTENDED_OPTIONS_CLASS)
+                    .getField(QUICK_ACK_OPTION).get(null);
+            final SocketChannel channel = socket.getChannel();
+
+            if (channel != null) {
+                channel.setOption(option, true);
+            } else {
+                Socket.class.getMethod("setOption", SocketOption.class, Object.class).invoke(socket, option, true);
+            }
+        } catch (ReflectiveOperationException | IOException | RuntimeException e) {
+            // option not available on this platform
+        }
+    }
+
+    /**
+     * Get key identifying remote host and port.
+     *
+     * @param address remote address
+     * @return host and port
+     */
+    private static String getKey(final InetSocketAddress address) {
+        return address.getHostString() + ":" + address.getPort();
+    }
+}
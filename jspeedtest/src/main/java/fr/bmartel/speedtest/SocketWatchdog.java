@@ -0,0 +1,123 @@
+/*
+ * The MIT License (MIT)
+ * <p/>
+ * Copyright (c) 2016-2017 Bertrand Martel
+ * <p/>
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ * <p/>
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ * <p/>
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+package fr.bmartel.speedtest;
+
+import java.util.Collections;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Single timer thread shared by all speed test tasks to enforce write timeout and test deadlines.
+ * <p/>
+ * A task whose write deadline has expired gets its socket closed, which makes the pending write fail. Connect, TLS
+ * handshake, first byte and total test deadlines are scheduled as one-shot tasks on the same timer.
+ *
+ * @author Bertrand Martel
+ */
+final class SocketWatchdog {
+
+    /**
+     * tasks currently writing to socket.
+     */
+    private static final Set<SpeedTestTask> TASKS = Collections.newSetFromMap(
+            new ConcurrentHashMap<SpeedTestTask, Boolean>());
+
+    /**
+     * timer checking write deadlines and running test deadlines (created on first use).
+     */
+    private static ScheduledThreadPoolExecutor sTimer;
+
+    /**
+     * Utility class.
+     */
+    private SocketWatchdog() {
+    }
+
+    /**
+     * Start monitoring write deadline of a task.
+     *
+     * @param task speed test task
+     */
+    static void watch(final SpeedTestTask task) {
+        startTimer();
+        TASKS.add(task);
+    }
+
+    /**
+     * Stop monitoring write deadline of a task.
+     *
+     * @param task speed test task
+     */
+    static void unwatch(final SpeedTestTask task) {
+        TASKS.remove(task);
+    }
+
+    /**
+     * Schedule a deadline.
+     *
+     * @param task    task to run once deadline has expired
+     * @param timeout timeout in milliseconds
+     * @return scheduled deadline to be cancelled if it has not expired
+     */
+    static ScheduledFuture<?> schedule(final Runnable task, final int timeout) {
+        startTimer();
+        return sTimer.schedule(task, timeout, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Create timer thread if not already running.
+     */
+    private static synchronized void startTimer() {
+
+        if (sTimer != null) {
+            return;
+        }
+
+        sTimer = new ScheduledThreadPoolExecutor(1, new ThreadFactory() {
+            @Override
+            public Thread newThread(final Runnable runnable) {
+                final Thread thread = new Thread(runnable, "speedtest-watchdog");
+                thread.setDaemon(true);
+                return thread;
+            }
+        });
+        // cancelled deadlines are removed so that they don't accumulate until their delay has elapsed
+        sTimer.setRemoveOnCancelPolicy(true);
+
+        sTimer.scheduleAtFixedRate(new Runnable() {
+            @Override
+            public void run() {
+                final long now = System.nanoTime();
+                for (final SpeedTestTask task : TASKS) {
+                    task.checkWriteTimeout(now);
+                }
+            }
+        }, SpeedTestConst.WRITE_WATCHDOG_PERIOD, SpeedTestConst.WRITE_WATCHDOG_PERIOD, TimeUnit.MILLISECONDS);
+    }
+}
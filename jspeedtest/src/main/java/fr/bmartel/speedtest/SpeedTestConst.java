@@ -54,6 +54,83 @@ public class SpeedTestConst {
      */
     public static final int DEFAULT_SOCKET_TIMEOUT = 10000;
 
+    /**
+     * default number of connections used for download/upload.
+     */
+    public static final int DEFAULT_CONNECTION_COUNT = 1;
+
+    /**
+     * default max number of progress events queued by listener dispatcher.
+     */
+    public static final int DEFAULT_DISPATCH_CAPACITY = 256;
+
+    /**
+     * size of the first range requested in segmented download mode, used to learn resource size. This is also the
+     * minimum size of next ranges.
+     */
+    public static final int SEGMENT_PROBE_SIZE = 65536;
+
+    /**
+     * in segmented download mode, next range requested is the remaining content divided by number of connections
+     * multiplied by this value.
+     */
+    public static final int SEGMENTS_PER_CONNECTION = 4;
+
+    /**
+     * default minimum size of read buffer and upload chunk in adaptive buffer size mode.
+     */
+    public static final int DEFAULT_MIN_BUFFER_SIZE = 4096;
+
+    /**
+     * default maximum size of read buffer and upload chunk in adaptive buffer size mode.
+     */
+    public static final int DEFAULT_MAX_BUFFER_SIZE = 1048576;
+
+    /**
+     * period in nanoseconds after which read buffer and upload chunk sizes are adapted.
+     */
+    public static final long ADAPTIVE_SIZE_PERIOD = 100000000;
+
+    /**
+     * number of read/write calls per second under which adaptive size is decreased for finer progress.
+     */
+    public static final long ADAPTIVE_MIN_CALL_RATE = 10;
+
+    /**
+     * number of read/write calls per second above which adaptive size is increased for fewer calls.
+     */
+    public static final long ADAPTIVE_MAX_CALL_RATE = 1000;
+
+    /**
+     * traffic class value meaning that socket traffic class is not set.
+     */
+    public static final int DEFAULT_TRAFFIC_CLASS = -1;
+
+    /**
+     * max socket buffer size computed from bandwidth-delay product in auto socket buffer mode.
+     */
+    public static final int MAX_AUTO_SOCKET_BUFFER_SIZE = 67108864;
+
+    /**
+     * max number of hosts whose round trip time is kept for auto socket buffer mode (least recently used are removed).
+     */
+    public static final int MAX_ROUND_TRIP_TIME_COUNT = 256;
+
+    /**
+     * number of selector threads shared by all NIO transfers.
+     */
+    public static final int NIO_THREAD_COUNT = Runtime.getRuntime().availableProcessors();
+
+    /**
+     * maximum time in milliseconds a selector thread waits before checking transfer timeouts.
+     */
+    public static final int NIO_SELECT_TIMEOUT = 100;
+
+    /**
+     * period in milliseconds at which socket write deadlines are checked.
+     */
+    public static final int WRITE_WATCHDOG_PERIOD = 100;
+
     /**
      * time to wait for task to complete when threadpool is shutdown.
      */
@@ -64,11 +141,31 @@ public class SpeedTestConst {
      */
     public static final int HTTP_OK = 200;
 
+    /**
+     * http partial content status code.
+     */
+    public static final int HTTP_PARTIAL_CONTENT = 206;
+
+    /**
+     * HTTP line end, also written at the end of each chunk data in chunked transfer encoding.
+     */
+    public static final byte[] CRLF = "\r\n".getBytes();
+
+    /**
+     * end of previous chunk data followed by last chunk ending a chunked body with no trailer.
+     */
+    public static final byte[] LAST_CHUNK = "\r\n0\r\n\r\n".getBytes();
+
     /**
      * max value for percent.
      */
     public static final BigDecimal PERCENT_MAX = new BigDecimal("100");
 
+    /**
+     * max value for percent as a primitive value.
+     */
+    public static final double PERCENT_MAX_VALUE = 100d;
+
     /**
      * nanosecond divider.
      */
@@ -79,6 +176,11 @@ public class SpeedTestConst {
      */
     public static final BigDecimal BIT_MULTIPLIER = new BigDecimal("8");
 
+    /**
+     * number of nanoseconds in a second.
+     */
+    public static final double NANOS_PER_SECOND = 1000000000d;
+
     /**
      * parsing error message.
      */
@@ -89,6 +191,31 @@ public class SpeedTestConst {
      */
     public static final String SOCKET_WRITE_ERROR = "Error occurred while writing to socket";
 
+    /**
+     * connection closed before all pipelined responses have been read.
+     */
+    public static final String PIPELINE_CLOSED_ERROR = "connection closed before end of pipelined responses";
+
+    /**
+     * connect timeout error message.
+     */
+    public static final String CONNECT_TIMEOUT_ERROR = "connect timed out";
+
+    /**
+     * TLS handshake timeout error message.
+     */
+    public static final String HANDSHAKE_TIMEOUT_ERROR = "TLS handshake timed out";
+
+    /**
+     * first byte timeout error message.
+     */
+    public static final String FIRST_BYTE_TIMEOUT_ERROR = "no response received before first byte timeout";
+
+    /**
+     * test timeout error message.
+     */
+    public static final String TEST_TIMEOUT_ERROR = "test deadline exceeded";
+
     /**
      * default scale for BigDecimal.
      */
@@ -124,6 +251,31 @@ public class SpeedTestConst {
      */
     public static final int UPLOAD_FILE_WRITE_CHUNK = 64000;
 
+    /**
+     * size of random data ring used for stream storage upload.
+     */
+    public static final int UPLOAD_RING_SIZE = 1048576;
+
+    /**
+     * max size of RAM or FILE storage upload payload, larger uploads send payload again from its start.
+     */
+    public static final int MAX_UPLOAD_PAYLOAD_SIZE = 1073741824;
+
+    /**
+     * default maximum size of cached upload payloads.
+     */
+    public static final long DEFAULT_UPLOAD_CACHE_SIZE = 67108864;
+
+    /**
+     * default maximum size of pooled read buffers.
+     */
+    public static final long DEFAULT_READ_BUFFER_POOL_SIZE = 4194304;
+
+    /**
+     * default time to live of cached host addresses in milliseconds.
+     */
+    public static final long DEFAULT_DNS_CACHE_TTL = 60000;
+
     /**
      * Temporary file name for upload file.
      */
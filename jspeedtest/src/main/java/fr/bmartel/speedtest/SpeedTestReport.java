@@ -27,6 +27,9 @@ package fr.bmartel.speedtest;
 import fr.bmartel.speedtest.model.SpeedTestMode;
 
 import java.math.BigDecimal;
+import java.math.RoundingMode;
+import java.util.Collections;
+import java.util.List;
 
 /**
  * Speed examples report.
@@ -48,14 +51,34 @@ public class SpeedTestReport {
     private final long mTotalPacketSize;
 
     /**
-     * transfer rate in octet/s.
+     * transfer rate in octet/s, built from mRateOctet on first access when report has been computed by the library.
      */
-    private final BigDecimal mTransferRateOctet;
+    private volatile BigDecimal mTransferRateOctet;
 
     /**
-     * transfer rate in bit/s.
+     * transfer rate in bit/s, built from mRateOctet on first access when report has been computed by the library.
      */
-    private final BigDecimal mTransferRateBit;
+    private volatile BigDecimal mTransferRateBit;
+
+    /**
+     * transfer rate in octet/s as a primitive value.
+     */
+    private final double mRateOctet;
+
+    /**
+     * transfer rate in bit/s as a primitive value.
+     */
+    private final double mRateBit;
+
+    /**
+     * scale of transfer rates built on first access.
+     */
+    private final int mScale;
+
+    /**
+     * rounding mode of transfer rates built on first access.
+     */
+    private final RoundingMode mRoundingMode;
 
     /**
      * upload start time in nanoseconds.
@@ -82,6 +105,31 @@ public class SpeedTestReport {
      */
     private final int mRequestNum;
 
+    /**
+     * reports of each connection used for this measurement (empty for single connection).
+     */
+    private List<SpeedTestReport> mConnectionReports = Collections.emptyList();
+
+    /**
+     * reports of each pipelined response or downloaded range (empty if requests are neither pipelined nor segmented).
+     */
+    private List<SpeedTestReport> mResponseReports = Collections.emptyList();
+
+    /**
+     * reports of each mirror (empty if download is not spread over several mirrors).
+     */
+    private List<SpeedTestReport> mMirrorReports = Collections.emptyList();
+
+    /**
+     * size of read buffer (download) or upload chunk (upload) in octet at report time (0 if not relevant).
+     */
+    private int mBufferSize;
+
+    /**
+     * time spent resolving hostname before transfer in nanoseconds (0 if not relevant).
+     */
+    private long mResolutionTime;
+
     /**
      * Build Upload report.
      *
@@ -104,6 +152,75 @@ public class SpeedTestReport {
                            final BigDecimal transferRateOctet,
                            final BigDecimal transferRateBit,
                            final int requestNum) {
+        this(speedTestMode, progressPercent, startTime, reportTime, tempPacketSize, totalPacketSize,
+                (transferRateOctet != null) ? transferRateOctet.doubleValue() : 0,
+                (transferRateBit != null) ? transferRateBit.doubleValue() : 0,
+                transferRateOctet, transferRateBit, SpeedTestConst.DEFAULT_SCALE, SpeedTestConst.DEFAULT_ROUNDING_MODE,
+                requestNum);
+    }
+
+    /**
+     * Build report from a transfer rate computed with primitive arithmetic : BigDecimal transfer rates are only built
+     * when they are requested. Breakdown reports, buffer size and resolution time are set with the with-style
+     * setters before report is notified.
+     *
+     * @param speedTestMode     speed examples mode (DOWNLOAD/UPLOAD)
+     * @param progressPercent   speed examples progress in percent (%)
+     * @param startTime         upload start time in nanoseconds
+     * @param reportTime        upload report time in nanoseconds
+     * @param tempPacketSize    current size of file to upload
+     * @param totalPacketSize   total file size
+     * @param transferRateOctet transfer rate in octet/s
+     * @param scale             scale of BigDecimal transfer rates
+     * @param roundingMode      rounding mode of BigDecimal transfer rates
+     * @param requestNum        number of request for this report
+     */
+    SpeedTestReport(final SpeedTestMode speedTestMode,
+                    final float progressPercent,
+                    final long startTime,
+                    final long reportTime,
+                    final long tempPacketSize,
+                    final long totalPacketSize,
+                    final double transferRateOctet,
+                    final int scale,
+                    final RoundingMode roundingMode,
+                    final int requestNum) {
+        this(speedTestMode, progressPercent, startTime, reportTime, tempPacketSize, totalPacketSize,
+                transferRateOctet, transferRateOctet * SpeedTestConst.BIT_MULTIPLIER.intValue(), null, null, scale,
+                roundingMode, requestNum);
+    }
+
+    /**
+     * Build report with transfer rate given both as primitive and BigDecimal (null BigDecimal values are built on
+     * first access).
+     *
+     * @param speedTestMode     speed examples mode (DOWNLOAD/UPLOAD)
+     * @param progressPercent   speed examples progress in percent (%)
+     * @param startTime         upload start time in nanoseconds
+     * @param reportTime        upload report time in nanoseconds
+     * @param tempPacketSize    current size of file to upload
+     * @param totalPacketSize   total file size
+     * @param rateOctet         transfer rate in octet/s
+     * @param rateBit           transfer rate in bit/s
+     * @param transferRateOctet transfer rate in octet/s or null
+     * @param transferRateBit   transfer rate in bit/s or null
+     * @param scale             scale of BigDecimal transfer rates
+     * @param roundingMode      rounding mode of BigDecimal transfer rates
+     * @param requestNum        number of request for this report
+     */
+    private SpeedTestReport(final SpeedTestMode speedTestMode,
+                            final float progressPercent,
+                            final long startTime,
+                            final long reportTime,
+                            final long tempPacketSize,
+                            final long totalPacketSize,
+                            final double rateOctet,
+                            final double rateBit,
+                            final BigDecimal transferRateOctet,
+                            final BigDecimal transferRateBit,
+                            final int scale,
+                            final RoundingMode roundingMode,
+                            final int requestNum) {
 
         this.mSpeedTestMode = speedTestMode;
         this.mProgressPercent = progressPercent;
@@ -111,11 +228,70 @@ public class SpeedTestReport {
         this.mReportTime = reportTime;
         this.mTempPacketSize = tempPacketSize;
         this.mTotalPacketSize = totalPacketSize;
+        this.mRateOctet = rateOctet;
+        this.mRateBit = rateBit;
         this.mTransferRateOctet = transferRateOctet;
         this.mTransferRateBit = transferRateBit;
+        this.mScale = scale;
+        this.mRoundingMode = roundingMode;
         this.mRequestNum = requestNum;
     }
 
+    /**
+     * Set reports of each connection.
+     *
+     * @param connectionReports report of each connection
+     * @return this report
+     */
+    SpeedTestReport withConnectionReports(final List<SpeedTestReport> connectionReports) {
+        mConnectionReports = Collections.unmodifiableList(connectionReports);
+        return this;
+    }
+
+    /**
+     * Set reports of each pipelined response or downloaded range.
+     *
+     * @param responseReports report of each pipelined response or downloaded range
+     * @return this report
+     */
+    SpeedTestReport withResponseReports(final List<SpeedTestReport> responseReports) {
+        mResponseReports = Collections.unmodifiableList(responseReports);
+        return this;
+    }
+
+    /**
+     * Set reports of each mirror.
+     *
+     * @param mirrorReports report of each mirror
+     * @return this report
+     */
+    SpeedTestReport withMirrorReports(final List<SpeedTestReport> mirrorReports) {
+        mMirrorReports = Collections.unmodifiableList(mirrorReports);
+        return this;
+    }
+
+    /**
+     * Set size of read buffer or upload chunk.
+     *
+     * @param bufferSize size of read buffer or upload chunk in octet
+     * @return this report
+     */
+    SpeedTestReport withBufferSize(final int bufferSize) {
+        mBufferSize = bufferSize;
+        return this;
+    }
+
+    /**
+     * Set hostname resolution time.
+     *
+     * @param resolutionTime hostname resolution time in nanoseconds
+     * @return this report
+     */
+    SpeedTestReport withResolutionTime(final long resolutionTime) {
+        mResolutionTime = resolutionTime;
+        return this;
+    }
+
     /**
      * get current file size.
      *
@@ -140,7 +316,12 @@ public class SpeedTestReport {
      * @return transfer rate in octet/s
      */
     public BigDecimal getTransferRateOctet() {
-        return mTransferRateOctet;
+        BigDecimal rate = mTransferRateOctet;
+        if (rate == null) {
+            rate = BigDecimal.valueOf(mRateOctet).setScale(mScale, mRoundingMode);
+            mTransferRateOctet = rate;
+        }
+        return rate;
     }
 
     /**
@@ -149,7 +330,30 @@ public class SpeedTestReport {
      * @return transfer rate in bit/s
      */
     public BigDecimal getTransferRateBit() {
-        return mTransferRateBit;
+        BigDecimal rate = mTransferRateBit;
+        if (rate == null) {
+            rate = getTransferRateOctet().multiply(SpeedTestConst.BIT_MULTIPLIER);
+            mTransferRateBit = rate;
+        }
+        return rate;
+    }
+
+    /**
+     * get transfer rate in octet/s without building a BigDecimal.
+     *
+     * @return transfer rate in octet/s
+     */
+    public double getTransferRateOctetValue() {
+        return mRateOctet;
+    }
+
+    /**
+     * get transfer rate in bit/s without building a BigDecimal.
+     *
+     * @return transfer rate in bit/s
+     */
+    public double getTransferRateBitValue() {
+        return mRateBit;
     }
 
     /**
@@ -196,4 +400,51 @@ public class SpeedTestReport {
     public int getRequestNum() {
         return mRequestNum;
     }
+
+    /**
+     * get report of each connection used for this measurement.
+     *
+     * @return connection reports (empty list for single connection)
+     */
+    public List<SpeedTestReport> getConnectionReports() {
+        return mConnectionReports;
+    }
+
+    /**
+     * get report of each pipelined response or downloaded range, in completion order.
+     *
+     * @return response reports (empty list if requests are neither pipelined nor segmented)
+     */
+    public List<SpeedTestReport> getResponseReports() {
+        return mResponseReports;
+    }
+
+    /**
+     * get report of each mirror, in the order mirrors have been given.
+     *
+     * @return mirror reports (empty list if download is not spread over several mirrors)
+     */
+    public List<SpeedTestReport> getMirrorReports() {
+        return mMirrorReports;
+    }
+
+    /**
+     * get size of read buffer (download) or upload chunk (upload) used by the connection at report time.
+     *
+     * @return size in octet (0 for report aggregated from several connections, see connection reports)
+     */
+    public int getBufferSize() {
+        return mBufferSize;
+    }
+
+    /**
+     * get time spent resolving hostname before connection. This time is not part of transfer time used to compute
+     * transfer rate.
+     *
+     * @return resolution time in nanoseconds (0 for report aggregated from several connections, see connection
+     * reports)
+     */
+    public long getResolutionTime() {
+        return mResolutionTime;
+    }
 }
@@ -29,12 +29,16 @@ import fr.bmartel.speedtest.inter.ISpeedTestListener;
 import fr.bmartel.speedtest.inter.ISpeedTestSocket;
 import fr.bmartel.speedtest.model.ComputationMethod;
 import fr.bmartel.speedtest.model.FtpMode;
+import fr.bmartel.speedtest.model.OverflowPolicy;
+import fr.bmartel.speedtest.model.SpeedTestError;
 import fr.bmartel.speedtest.model.SpeedTestMode;
+import fr.bmartel.speedtest.model.TransferEngine;
 import fr.bmartel.speedtest.model.UploadStorageType;
 
 import java.math.RoundingMode;
 import java.util.ArrayList;
 import java.util.List;
+import java.util.concurrent.Executor;
 import java.util.concurrent.TimeUnit;
 
 /**
@@ -74,11 +78,87 @@ public class SpeedTestSocket implements ISpeedTestSocket {
      */
     private UploadStorageType mUploadStorageType = UploadStorageType.RAM_STORAGE;
 
+    /**
+     * Engine used to perform socket transfers.
+     */
+    private TransferEngine mTransferEngine = TransferEngine.BLOCKING;
+
+    /**
+     * define if HTTP connection is kept open to send next request on the same socket.
+     */
+    private boolean mPersistentConnection;
+
+    /**
+     * number of HTTP download requests pipelined on the same connection.
+     */
+    private int mPipelineDepth = 1;
+
+    /**
+     * define if HTTP download is split into ranges fetched over several connections.
+     */
+    private boolean mSegmentedDownload;
+
+    /**
+     * define if read buffer and upload chunk sizes are adapted to throughput.
+     */
+    private boolean mAdaptiveBufferSize;
+
+    /**
+     * minimum size of read buffer and upload chunk in adaptive buffer size mode.
+     */
+    private int mMinBufferSize = SpeedTestConst.DEFAULT_MIN_BUFFER_SIZE;
+
+    /**
+     * maximum size of read buffer and upload chunk in adaptive buffer size mode.
+     */
+    private int mMaxBufferSize = SpeedTestConst.DEFAULT_MAX_BUFFER_SIZE;
+
+    /**
+     * socket receive buffer size (0 for system default).
+     */
+    private int mReceiveBufferSize;
+
+    /**
+     * socket send buffer size (0 for system default).
+     */
+    private int mSendBufferSize;
+
+    /**
+     * define if Nagle's algorithm is disabled.
+     */
+    private boolean mTcpNoDelay;
+
+    /**
+     * socket traffic class.
+     */
+    private int mTrafficClass = SpeedTestConst.DEFAULT_TRAFFIC_CLASS;
+
+    /**
+     * define if TCP quick ack is enabled.
+     */
+    private boolean mQuickAck;
+
+    /**
+     * target rate in bit/s used to size socket buffers (0 to disable auto socket buffer mode).
+     */
+    private long mAutoBufferTargetRate;
+
     /**
      * speed test listener list.
      */
     private final List<ISpeedTestListener> mListenerList = new ArrayList<>();
 
+    /**
+     * listeners used by the library itself, they are also in listener list but never behind listener dispatcher.
+     */
+    private final List<ISpeedTestListener> mInternalListenerList = new ArrayList<>();
+
+    /**
+     * dispatcher delivering listener events from a user executor (null if events are delivered from transfer
+     * threads).
+     */
+    private ListenerDispatcher mListenerDispatcher;
+
     /**
      * this is the size of each data sent to upload server.
      */
@@ -89,6 +169,36 @@ public class SpeedTestSocket implements ISpeedTestSocket {
      */
     private int mSocketTimeout = SpeedTestConst.DEFAULT_SOCKET_TIMEOUT;
 
+    /**
+     * connect timeout in milliseconds.
+     */
+    private int mConnectTimeout;
+
+    /**
+     * TLS handshake timeout in milliseconds.
+     */
+    private int mHandshakeTimeout;
+
+    /**
+     * first byte timeout in milliseconds.
+     */
+    private int mFirstByteTimeout;
+
+    /**
+     * total test timeout in milliseconds.
+     */
+    private int mTestTimeout;
+
+    /**
+     * min time in milliseconds between two progress reports.
+     */
+    private int mProgressMinInterval;
+
+    /**
+     * min number of octet transferred between two progress reports.
+     */
+    private long mProgressMinOctets;
+
     /**
      * Speed test repeat wrapper.
      */
@@ -99,6 +209,31 @@ public class SpeedTestSocket implements ISpeedTestSocket {
      */
     private final SpeedTestTask mTask = new SpeedTestTask(this, mListenerList);
 
+    /**
+     * Speed test parallel wrapper used to manage download/upload operations over several connections.
+     */
+    private final ParallelWrapper mParallelWrapper = new ParallelWrapper(this, mTask, mListenerList);
+
+    /**
+     * number of connections used for each download/upload.
+     */
+    private int mConnectionCount = SpeedTestConst.DEFAULT_CONNECTION_COUNT;
+
+    /**
+     * define if current download/upload is running over several connections.
+     */
+    private boolean mParallelMode;
+
+    /**
+     * Speed test segmented wrapper used to download ranges of a resource over several connections.
+     */
+    private final SegmentedWrapper mSegmentedWrapper = new SegmentedWrapper(this, mTask, mListenerList);
+
+    /**
+     * define if current download is running in segmented mode.
+     */
+    private boolean mSegmentedMode;
+
     /**
      * setup time for calculating the threshold before updating the calculation of download.
      */
@@ -165,7 +300,11 @@ public class SpeedTestSocket implements ISpeedTestSocket {
      */
     @Override
     public void addSpeedTestListener(final ISpeedTestListener listener) {
-        mListenerList.add(listener);
+        if (mListenerDispatcher != null) {
+            mListenerDispatcher.addListener(listener);
+        } else {
+            mListenerList.add(listener);
+        }
     }
 
     /**
@@ -175,6 +314,32 @@ public class SpeedTestSocket implements ISpeedTestSocket {
      */
     @Override
     public void removeSpeedTestListener(final ISpeedTestListener listener) {
+        if (mListenerDispatcher != null) {
+            mListenerDispatcher.removeListener(listener);
+        } else {
+            mListenerList.remove(listener);
+        }
+    }
+
+    /**
+     * Add a listener used by the library itself, always notified from transfer threads.
+     *
+     * @param listener internal listener to be added
+     */
+    @Override
+    public void addInternalListener(final ISpeedTestListener listener) {
+        mInternalListenerList.add(listener);
+        mListenerList.add(listener);
+    }
+
+    /**
+     * Remove a listener used by the library itself.
+     *
+     * @param listener internal listener to be removed
+     */
+    @Override
+    public void removeInternalListener(final ISpeedTestListener listener) {
+        mInternalListenerList.remove(listener);
         mListenerList.remove(listener);
     }
 
@@ -184,6 +349,8 @@ public class SpeedTestSocket implements ISpeedTestSocket {
     @Override
     public void shutdownAndWait() {
         mTask.shutdownAndWait();
+        mParallelWrapper.shutdownAndWait();
+        mSegmentedWrapper.shutdownAndWait();
     }
 
     /**
@@ -250,7 +417,70 @@ public class SpeedTestSocket implements ISpeedTestSocket {
             initReportTask(mReportInterval);
             mTask.setReportInterval(true);
         }
-        mTask.startDownloadRequest(uri);
+        // range requests are only available for HTTP/HTTPS
+        mSegmentedMode = mSegmentedDownload && uri.startsWith("http");
+        mParallelMode = !mSegmentedMode && mConnectionCount > 1;
+
+        if (mSegmentedMode) {
+            mSegmentedWrapper.startDownload(uri, mConnectionCount, mTask.isReportInterval());
+        } else if (mParallelMode) {
+            mParallelWrapper.startDownload(uri, mConnectionCount, mTask.isReportInterval());
+        } else {
+            mTask.startDownloadRequest(uri);
+        }
+    }
+
+    /**
+     * Start download of the same file from several mirrors.
+     *
+     * @param uris           uri of the file on each mirror
+     * @param reportInterval report interval in milliseconds
+     */
+    public void startMirrorDownload(final List<String> uris,
+                                    final int reportInterval) {
+        initReportTask(reportInterval);
+        mTask.setReportInterval(true);
+        startMirrorDownload(uris);
+    }
+
+    /**
+     * Start download of the same file from several mirrors (only for HTTP/HTTPS) : disjoint ranges of the file are
+     * fetched from all mirrors at once over the number of connections per mirror set with setConnectionCount.
+     *
+     * @param uris uri of the file on each mirror
+     */
+    public void startMirrorDownload(final List<String> uris) {
+
+        if (uris.isEmpty()) {
+            dispatchError(SpeedTestError.MALFORMED_URI, "no mirror uri");
+            return;
+        }
+        for (final String uri : uris) {
+            if (!uri.startsWith("http")) {
+                dispatchError(SpeedTestError.UNSUPPORTED_PROTOCOL, "unsupported protocol");
+                return;
+            }
+        }
+        if (mReportInterval != -1 && !mTask.isReportInterval()) {
+            initReportTask(mReportInterval);
+            mTask.setReportInterval(true);
+        }
+        mSegmentedMode = true;
+        mParallelMode = false;
+
+        mSegmentedWrapper.startDownload(uris, mConnectionCount, mTask.isReportInterval());
+    }
+
+    /**
+     * Dispatch an error to all listeners.
+     *
+     * @param speedTestError error enum
+     * @param errorMessage   error message
+     */
+    private void dispatchError(final SpeedTestError speedTestError, final String errorMessage) {
+        for (int i = 0; i < mListenerList.size(); i++) {
+            mListenerList.get(i).onError(speedTestError, errorMessage);
+        }
     }
 
     /**
@@ -272,7 +502,7 @@ public class SpeedTestSocket implements ISpeedTestSocket {
      * @param maxDuration   maximum duration of speed test in milliseconds
      */
     public void startFixedUpload(final String uri,
-                                 final int fileSizeOctet,
+                                 final long fileSizeOctet,
                                  final int maxDuration) {
 
         if (mReportInterval != -1 && !mTask.isReportInterval()) {
@@ -288,7 +518,7 @@ public class SpeedTestSocket implements ISpeedTestSocket {
             }
         }, maxDuration, TimeUnit.MILLISECONDS);
 
-        startUpload(uri, fileSizeOctet);
+        startUploadRequest(uri, fileSizeOctet, false);
     }
 
     /**
@@ -301,7 +531,7 @@ public class SpeedTestSocket implements ISpeedTestSocket {
      */
     public void startFixedUpload(
             final String uri,
-            final int fileSizeOctet,
+            final long fileSizeOctet,
             final int maxDuration,
             final int reportInterval) {
 
@@ -310,6 +540,49 @@ public class SpeedTestSocket implements ISpeedTestSocket {
         startFixedUpload(uri, fileSizeOctet, maxDuration);
     }
 
+    /**
+     * Start upload process with a fixed duration using chunked transfer encoding.
+     *
+     * @param uri            uri to fetch
+     * @param maxDuration    duration of speed test in milliseconds
+     * @param reportInterval report interval in milliseconds
+     */
+    public void startChunkedUpload(final String uri,
+                                   final int maxDuration,
+                                   final int reportInterval) {
+        initReportTask(reportInterval);
+        mTask.setReportInterval(true);
+        startChunkedUpload(uri, maxDuration);
+    }
+
+    /**
+     * Start upload process with a fixed duration using chunked transfer encoding (only for HTTP/HTTPS) : no file size
+     * is declared, generated data is streamed until duration is elapsed, then body is ended and server response is
+     * read.
+     *
+     * @param uri         uri to fetch
+     * @param maxDuration duration of speed test in milliseconds
+     */
+    public void startChunkedUpload(final String uri, final int maxDuration) {
+
+        if (!uri.startsWith("http")) {
+            dispatchError(SpeedTestError.UNSUPPORTED_PROTOCOL, "unsupported protocol");
+            return;
+        }
+        if (mReportInterval != -1 && !mTask.isReportInterval()) {
+            initReportTask(mReportInterval);
+            mTask.setReportInterval(true);
+        }
+        mSegmentedMode = false;
+        mParallelMode = mConnectionCount > 1;
+
+        if (mParallelMode) {
+            mParallelWrapper.startChunkedUpload(uri, maxDuration, mConnectionCount, mTask.isReportInterval());
+        } else {
+            mTask.startChunkedUploadRequest(uri, maxDuration);
+        }
+    }
+
     /**
      * Start upload process.
      *
@@ -319,7 +592,7 @@ public class SpeedTestSocket implements ISpeedTestSocket {
      */
     public void startUpload(
             final String uri,
-            final int fileSizeOctet,
+            final long fileSizeOctet,
             final int reportInterval) {
 
         initReportTask(reportInterval);
@@ -334,12 +607,30 @@ public class SpeedTestSocket implements ISpeedTestSocket {
      * @param fileSizeOctet size of file to upload
      */
     @Override
-    public void startUpload(final String uri, final int fileSizeOctet) {
+    public void startUpload(final String uri, final long fileSizeOctet) {
+        startUploadRequest(uri, fileSizeOctet, true);
+    }
+
+    /**
+     * Start upload process on one or several connections.
+     *
+     * @param uri           uri to fetch
+     * @param fileSizeOctet size of file to upload
+     * @param split         define if file size is shared between connections (false for fixed duration)
+     */
+    private void startUploadRequest(final String uri, final long fileSizeOctet, final boolean split) {
         if (mReportInterval != -1 && !mTask.isReportInterval()) {
             initReportTask(mReportInterval);
             mTask.setReportInterval(true);
         }
-        mTask.startUploadRequest(uri, fileSizeOctet);
+        mSegmentedMode = false;
+        mParallelMode = mConnectionCount > 1;
+
+        if (mParallelMode) {
+            mParallelWrapper.startUpload(uri, fileSizeOctet, mConnectionCount, split, mTask.isReportInterval());
+        } else {
+            mTask.startUploadRequest(uri, fileSizeOctet);
+        }
     }
 
     /**
@@ -386,7 +677,7 @@ public class SpeedTestSocket implements ISpeedTestSocket {
     public void startUploadRepeat(
             final String uri,
             final int repeatWindow,
-            final int fileSizeOctet,
+            final long fileSizeOctet,
             final IRepeatListener repeatListener) {
 
         final int reportPeriodMillis = (mReportInterval != -1) ? mReportInterval : DEFAULT_REPEAT_INTERVAL;
@@ -412,7 +703,7 @@ public class SpeedTestSocket implements ISpeedTestSocket {
             final String uri,
             final int repeatWindow,
             final int reportPeriodMillis,
-            final int fileSizeOctet,
+            final long fileSizeOctet,
             final IRepeatListener repeatListener) {
 
         mRepeatWrapper.startUploadRepeat(
@@ -431,6 +722,8 @@ public class SpeedTestSocket implements ISpeedTestSocket {
         mRepeatWrapper.cleanTimer();
         mTask.forceStopTask();
         mTask.closeSocket();
+        mParallelWrapper.forceStopTask();
+        mSegmentedWrapper.forceStopTask();
         shutdownAndWait();
     }
 
@@ -441,7 +734,11 @@ public class SpeedTestSocket implements ISpeedTestSocket {
      */
     @Override
     public SpeedTestReport getLiveReport() {
-        if (getSpeedTestMode() == SpeedTestMode.DOWNLOAD) {
+        if (mSegmentedMode) {
+            return mSegmentedWrapper.getReport();
+        } else if (mParallelMode) {
+            return mParallelWrapper.getReport();
+        } else if (getSpeedTestMode() == SpeedTestMode.DOWNLOAD) {
             return mTask.getReport(SpeedTestMode.DOWNLOAD);
         } else {
             return mTask.getReport(SpeedTestMode.UPLOAD);
@@ -451,6 +748,8 @@ public class SpeedTestSocket implements ISpeedTestSocket {
     @Override
     public void closeSocket() {
         mTask.closeSocket();
+        mParallelWrapper.closeSocket();
+        mSegmentedWrapper.closeSocket();
     }
 
     /**
@@ -459,6 +758,11 @@ public class SpeedTestSocket implements ISpeedTestSocket {
      * @return speed test mode (UPLOAD/DOWNLOAD/NONE)
      */
     public SpeedTestMode getSpeedTestMode() {
+        if (mSegmentedMode) {
+            return mSegmentedWrapper.getSpeedTestMode();
+        } else if (mParallelMode) {
+            return mParallelWrapper.getSpeedTestMode();
+        }
         return mTask.getSpeedTestMode();
     }
 
@@ -483,6 +787,157 @@ public class SpeedTestSocket implements ISpeedTestSocket {
         return mSocketTimeout;
     }
 
+    /**
+     * Set max time to establish TCP connection (HTTP/HTTPS/FTP).
+     *
+     * @param connectTimeoutMillis connect timeout in milliseconds (0 for no timeout)
+     */
+    public void setConnectTimeout(final int connectTimeoutMillis) {
+        if (connectTimeoutMillis >= 0) {
+            mConnectTimeout = connectTimeoutMillis;
+        }
+    }
+
+    /**
+     * Get connect timeout.
+     *
+     * @return max time in milliseconds to establish TCP connection (0 if not defined)
+     */
+    @Override
+    public int getConnectTimeout() {
+        return mConnectTimeout;
+    }
+
+    /**
+     * Set max time to complete TLS handshake once connected (HTTPS).
+     *
+     * @param handshakeTimeoutMillis TLS handshake timeout in milliseconds (0 for no timeout)
+     */
+    public void setHandshakeTimeout(final int handshakeTimeoutMillis) {
+        if (handshakeTimeoutMillis >= 0) {
+            mHandshakeTimeout = handshakeTimeoutMillis;
+        }
+    }
+
+    /**
+     * Get TLS handshake timeout.
+     *
+     * @return max time in milliseconds to complete TLS handshake (0 if not defined)
+     */
+    @Override
+    public int getHandshakeTimeout() {
+        return mHandshakeTimeout;
+    }
+
+    /**
+     * Set max time between connection and download response : HTTP response header or start of FTP data transfer,
+     * FTP login included.
+     *
+     * @param firstByteTimeoutMillis first byte timeout in milliseconds (0 for no timeout)
+     */
+    public void setFirstByteTimeout(final int firstByteTimeoutMillis) {
+        if (firstByteTimeoutMillis >= 0) {
+            mFirstByteTimeout = firstByteTimeoutMillis;
+        }
+    }
+
+    /**
+     * Get first byte timeout.
+     *
+     * @return max time in milliseconds between connection and download response (0 if not defined)
+     */
+    @Override
+    public int getFirstByteTimeout() {
+        return mFirstByteTimeout;
+    }
+
+    /**
+     * Set max duration of each download/upload, connection included. Test is stopped with a SOCKET_TIMEOUT error
+     * once elapsed.
+     *
+     * @param testTimeoutMillis test timeout in milliseconds (0 for no timeout)
+     */
+    public void setTestTimeout(final int testTimeoutMillis) {
+        if (testTimeoutMillis >= 0) {
+            mTestTimeout = testTimeoutMillis;
+        }
+    }
+
+    /**
+     * Get test timeout.
+     *
+     * @return max duration in milliseconds of each download/upload (0 if not defined)
+     */
+    @Override
+    public int getTestTimeout() {
+        return mTestTimeout;
+    }
+
+    /**
+     * Set min time between two progress reports notified when no report interval is defined. Intermediate progress
+     * is coalesced into the next report, last report of each download/upload is always notified.
+     *
+     * @param progressMinIntervalMillis min time in milliseconds (0 to notify progress on each read/write)
+     */
+    public void setProgressMinInterval(final int progressMinIntervalMillis) {
+        if (progressMinIntervalMillis >= 0) {
+            mProgressMinInterval = progressMinIntervalMillis;
+        }
+    }
+
+    /**
+     * Get min time between two progress reports notified from the transfer thread.
+     *
+     * @return min time in milliseconds (0 if not defined)
+     */
+    @Override
+    public int getProgressMinInterval() {
+        return mProgressMinInterval;
+    }
+
+    /**
+     * Set min number of octet transferred between two progress reports notified when no report interval is defined.
+     * Intermediate progress is coalesced into the next report, last report of each download/upload is always
+     * notified.
+     *
+     * @param progressMinOctets min number of octet (0 to notify progress on each read/write)
+     */
+    public void setProgressMinOctets(final long progressMinOctets) {
+        if (progressMinOctets >= 0) {
+            mProgressMinOctets = progressMinOctets;
+        }
+    }
+
+    /**
+     * Get min number of octet transferred between two progress reports notified from the transfer thread.
+     *
+     * @return min number of octet (0 if not defined)
+     */
+    @Override
+    public long getProgressMinOctets() {
+        return mProgressMinOctets;
+    }
+
+    /**
+     * set number of connections used for each download/upload.
+     *
+     * @param connectionCount number of concurrent connections to the same URI
+     */
+    public void setConnectionCount(final int connectionCount) {
+        if (connectionCount > 0) {
+            mConnectionCount = connectionCount;
+        }
+    }
+
+    /**
+     * get number of connections used for each download/upload.
+     *
+     * @return number of concurrent connections
+     */
+    public int getConnectionCount() {
+        return mConnectionCount;
+    }
+
     /**
      * retrieve size of each packet sent to upload server.
      *
@@ -636,7 +1091,86 @@ public class SpeedTestSocket implements ISpeedTestSocket {
      * Clear all listeners.
      */
     public void clearListeners() {
+        if (mListenerDispatcher != null) {
+            mListenerDispatcher.clearListeners();
+        } else {
+            mListenerList.clear();
+            mInternalListenerList.clear();
+        }
+    }
+
+    /**
+     * Deliver listener events from given executor instead of transfer threads, so that slow listeners don't stall
+     * transfers. Events are queued and delivered in order by one executor task at a time. At most
+     * SpeedTestConst.DEFAULT_DISPATCH_CAPACITY progress events are queued, oldest ones being dropped when full.
+     *
+     * @param executor executor delivering events to listeners (null to deliver events from transfer threads)
+     */
+    public void setListenerExecutor(final Executor executor) {
+        setListenerExecutor(executor, SpeedTestConst.DEFAULT_DISPATCH_CAPACITY, OverflowPolicy.DROP_OLDEST);
+    }
+
+    /**
+     * Deliver listener events from given executor instead of transfer threads, so that slow listeners don't stall
+     * transfers. Events are queued and delivered in order by one executor task at a time. Overflow policy applies to
+     * progress events once capacity is reached, completion and error events are never dropped.
+     * <p/>
+     * Listeners already added are kept. This is to be set before starting a download/upload.
+     *
+     * @param executor       executor delivering events to listeners (null to deliver events from transfer threads)
+     * @param capacity       max number of progress events queued
+     * @param overflowPolicy policy applied to progress events when queue is full
+     */
+    public void setListenerExecutor(final Executor executor, final int capacity, final OverflowPolicy overflowPolicy) {
+
+        if (capacity <= 0 || overflowPolicy == null) {
+            return;
+        }
+        final List<ISpeedTestListener> listeners = (mListenerDispatcher != null) ?
+                mListenerDispatcher.getListeners() : new ArrayList<>(mListenerList);
+
+        // internal listeners are kept out of the dispatcher
+        listeners.removeAll(mInternalListenerList);
         mListenerList.clear();
+
+        if (executor == null) {
+            mListenerDispatcher = null;
+            mListenerList.addAll(listeners);
+        } else {
+            mListenerDispatcher = new ListenerDispatcher(executor, capacity, overflowPolicy);
+            for (final ISpeedTestListener listener : listeners) {
+                mListenerDispatcher.addListener(listener);
+            }
+            mListenerList.add(mListenerDispatcher);
+        }
+        mListenerList.addAll(mInternalListenerList);
+    }
+
+    /**
+     * Get executor delivering listener events.
+     *
+     * @return executor (null if events are delivered from transfer threads)
+     */
+    public Executor getListenerExecutor() {
+        return (mListenerDispatcher != null) ? mListenerDispatcher.getExecutor() : null;
+    }
+
+    /**
+     * Get max number of progress events queued when listener events are delivered from an executor.
+     *
+     * @return capacity (0 if events are delivered from transfer threads)
+     */
+    public int getListenerQueueCapacity() {
+        return (mListenerDispatcher != null) ? mListenerDispatcher.getCapacity() : 0;
+    }
+
+    /**
+     * Get policy applied to progress events when listener event queue is full.
+     *
+     * @return overflow policy (null if events are delivered from transfer threads)
+     */
+    public OverflowPolicy getListenerOverflowPolicy() {
+        return (mListenerDispatcher != null) ? mListenerDispatcher.getOverflowPolicy() : null;
     }
 
     /**
@@ -646,4 +1180,266 @@ public class SpeedTestSocket implements ISpeedTestSocket {
     public FtpMode getFtpMode() {
         return mFtpMode;
     }
+
+    /**
+     * Set engine used to perform socket transfers.
+     *
+     * @param transferEngine transfer engine
+     */
+    public void setTransferEngine(final TransferEngine transferEngine) {
+        mTransferEngine = transferEngine;
+    }
+
+    /**
+     * Get engine used to perform socket transfers.
+     *
+     * @return transfer engine
+     */
+    @Override
+    public TransferEngine getTransferEngine() {
+        return mTransferEngine;
+    }
+
+    /**
+     * Set persistent connection mode : next HTTP request is sent on the same socket once previous response has been
+     * fully read (only for blocking transfer engine). A new connection is opened if server has closed it.
+     *
+     * @param persistentConnection persistent connection mode
+     */
+    public void setPersistentConnection(final boolean persistentConnection) {
+        mPersistentConnection = persistentConnection;
+    }
+
+    /**
+     * Get persistent connection mode.
+     *
+     * @return true if HTTP connection is reused between requests
+     */
+    @Override
+    public boolean isPersistentConnection() {
+        return mPersistentConnection;
+    }
+
+    /**
+     * Set number of HTTP download requests written back to back on the same connection before reading responses
+     * (only for HTTP/HTTPS download). Responses are read in order, download completes when all responses have been
+     * read.
+     *
+     * @param pipelineDepth number of pipelined requests (1 to disable pipelining)
+     */
+    public void setPipelineDepth(final int pipelineDepth) {
+        if (pipelineDepth > 0) {
+            mPipelineDepth = pipelineDepth;
+        }
+    }
+
+    /**
+     * Get number of HTTP download requests pipelined on the same connection.
+     *
+     * @return number of pipelined requests
+     */
+    @Override
+    public int getPipelineDepth() {
+        return mPipelineDepth;
+    }
+
+    /**
+     * Set adaptive buffer size mode (only for HTTP/HTTPS) : read buffer size and upload chunk size of each connection
+     * start from their default value and are increased when throughput requires too many read/write calls, decreased
+     * when calls are sparse or don't fill the buffer, within bounds set with setBufferSizeBounds.
+     *
+     * @param adaptiveBufferSize adaptive buffer size mode
+     */
+    public void setAdaptiveBufferSize(final boolean adaptiveBufferSize) {
+        mAdaptiveBufferSize = adaptiveBufferSize;
+    }
+
+    /**
+     * Get adaptive buffer size mode.
+     *
+     * @return true if read buffer and upload chunk sizes are adapted to throughput
+     */
+    @Override
+    public boolean isAdaptiveBufferSize() {
+        return mAdaptiveBufferSize;
+    }
+
+    /**
+     * Set bounds of read buffer size and upload chunk size in adaptive buffer size mode.
+     *
+     * @param minBufferSize minimum size in octet
+     * @param maxBufferSize maximum size in octet
+     */
+    public void setBufferSizeBounds(final int minBufferSize, final int maxBufferSize) {
+        if (minBufferSize > 0 && maxBufferSize >= minBufferSize) {
+            mMinBufferSize = minBufferSize;
+            mMaxBufferSize = maxBufferSize;
+        }
+    }
+
+    /**
+     * Get minimum size of read buffer and upload chunk in adaptive buffer size mode.
+     *
+     * @return minimum size in octet
+     */
+    @Override
+    public int getMinBufferSize() {
+        return mMinBufferSize;
+    }
+
+    /**
+     * Get maximum size of read buffer and upload chunk in adaptive buffer size mode.
+     *
+     * @return maximum size in octet
+     */
+    @Override
+    public int getMaxBufferSize() {
+        return mMaxBufferSize;
+    }
+
+    /**
+     * Set socket receive buffer size (SO_RCVBUF) applied before connection.
+     *
+     * @param receiveBufferSize receive buffer size in octet (0 for system default)
+     */
+    public void setReceiveBufferSize(final int receiveBufferSize) {
+        if (receiveBufferSize >= 0) {
+            mReceiveBufferSize = receiveBufferSize;
+        }
+    }
+
+    /**
+     * Get socket receive buffer size.
+     *
+     * @return SO_RCVBUF value in octet (0 if system default is used)
+     */
+    @Override
+    public int getReceiveBufferSize() {
+        return mReceiveBufferSize;
+    }
+
+    /**
+     * Set socket send buffer size (SO_SNDBUF) applied before connection.
+     *
+     * @param sendBufferSize send buffer size in octet (0 for system default)
+     */
+    public void setSendBufferSize(final int sendBufferSize) {
+        if (sendBufferSize >= 0) {
+            mSendBufferSize = sendBufferSize;
+        }
+    }
+
+    /**
+     * Get socket send buffer size.
+     *
+     * @return SO_SNDBUF value in octet (0 if system default is used)
+     */
+    @Override
+    public int getSendBufferSize() {
+        return mSendBufferSize;
+    }
+
+    /**
+     * Disable Nagle's algorithm (TCP_NODELAY). It is always disabled in persistent connection mode.
+     *
+     * @param tcpNoDelay TCP_NODELAY option
+     */
+    public void setTcpNoDelay(final boolean tcpNoDelay) {
+        mTcpNoDelay = tcpNoDelay;
+    }
+
+    /**
+     * Get TCP_NODELAY option.
+     *
+     * @return true if Nagle's algorithm is disabled
+     */
+    @Override
+    public boolean isTcpNoDelay() {
+        return mTcpNoDelay;
+    }
+
+    /**
+     * Set IP traffic class of sent packets (type of service or DSCP).
+     *
+     * @param trafficClass traffic class value between 0 and 255 (-1 to leave it unset)
+     */
+    public void setTrafficClass(final int trafficClass) {
+        if (trafficClass >= SpeedTestConst.DEFAULT_TRAFFIC_CLASS && trafficClass <= 255) {
+            mTrafficClass = trafficClass;
+        }
+    }
+
+    /**
+     * Get socket traffic class.
+     *
+     * @return IP traffic class value (-1 if not set)
+     */
+    @Override
+    public int getTrafficClass() {
+        return mTrafficClass;
+    }
+
+    /**
+     * Enable TCP quick ack (TCP_QUICKACK) on connection. This is a Linux option set through JDK extended socket
+     * options : it is ignored when not supported by the platform or the JVM. It is set once after connect and the
+     * kernel may switch back to delayed acks during the transfer.
+     *
+     * @param quickAck TCP_QUICKACK option
+     */
+    public void setQuickAck(final boolean quickAck) {
+        mQuickAck = quickAck;
+    }
+
+    /**
+     * Get TCP quick ack option.
+     *
+     * @return true if TCP_QUICKACK is set on Linux
+     */
+    @Override
+    public boolean isQuickAck() {
+        return mQuickAck;
+    }
+
+    /**
+     * Set auto socket buffer mode : send and receive buffers are sized to the bandwidth-delay product of target rate
+     * and round trip time measured on connection establishment. Buffer sizes set with setReceiveBufferSize and
+     * setSendBufferSize take precedence.
+     *
+     * @param targetRate target rate in bit/s (0 to disable auto socket buffer mode)
+     */
+    public void setAutoBufferTargetRate(final long targetRate) {
+        if (targetRate >= 0) {
+            mAutoBufferTargetRate = targetRate;
+        }
+    }
+
+    /**
+     * Get target rate used to size socket buffers in auto socket buffer mode.
+     *
+     * @return target rate in bit/s (0 if auto socket buffer mode is disabled)
+     */
+    @Override
+    public long getAutoBufferTargetRate() {
+        return mAutoBufferTargetRate;
+    }
+
+    /**
+     * Set segmented download mode (only for HTTP/HTTPS download) : resource size is retrieved with a first range
+     * request, remaining content is then split into ranges downloaded over the number of connections set with
+     * setConnectionCount. Each connection requests a new range as soon as its current range is completed.
+     *
+     * @param segmentedDownload segmented download mode
+     */
+    public void setSegmentedDownload(final boolean segmentedDownload) {
+        mSegmentedDownload = segmentedDownload;
+    }
+
+    /**
+     * Get segmented download mode.
+     *
+     * @return true if download is split into ranges fetched over several connections
+     */
+    public boolean isSegmentedDownload() {
+        return mSegmentedDownload;
+    }
 }
@@ -31,23 +31,30 @@ import fr.bmartel.speedtest.inter.ISpeedTestSocket;
 import fr.bmartel.speedtest.model.FtpMode;
 import fr.bmartel.speedtest.model.SpeedTestError;
 import fr.bmartel.speedtest.model.SpeedTestMode;
+import fr.bmartel.speedtest.model.TransferEngine;
 import fr.bmartel.speedtest.model.UploadStorageType;
-import fr.bmartel.speedtest.utils.RandomGen;
+import fr.bmartel.speedtest.utils.RandomRing;
 import fr.bmartel.speedtest.utils.SpeedTestUtils;
 import org.apache.commons.net.ftp.FTP;
 import org.apache.commons.net.ftp.FTPClient;
 import org.apache.commons.net.ftp.FTPFile;
 
+import javax.net.ssl.SSLSocket;
 import javax.net.ssl.SSLSocketFactory;
+import java.io.EOFException;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.OutputStream;
 import java.io.RandomAccessFile;
-import java.math.BigDecimal;
 import java.math.RoundingMode;
 import java.net.*;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.SocketChannel;
+import java.util.ArrayList;
 import java.util.List;
 import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
 
 /**
  * This class manage all download/upload operations.
@@ -66,6 +73,16 @@ public class SpeedTestTask {
      */
     private int mPort;
 
+    /**
+     * socket server address resolved at the start of current request.
+     */
+    private InetSocketAddress mAddress;
+
+    /**
+     * time spent resolving hostname of current request in nanoseconds.
+     */
+    private long mResolutionTime;
+
     /**
      * Protocol used (http/https/ftp...).
      */
@@ -81,45 +98,61 @@ public class SpeedTestTask {
      */
     private Socket mSocket;
 
+    /**
+     * time in nanoseconds after which the pending socket write times out (0 if no write is pending).
+     */
+    private volatile long mWriteDeadline;
+
+    /**
+     * current transfer when NIO engine is used.
+     */
+    private NioTransfer mNioTransfer;
+
     /**
      * start time triggered in millis.
      */
     private long mTimeStart;
 
     /**
-     * start time for the current transfer rate computation.
+     * end time triggered in millis (also set by watchdog thread when a deadline expires).
      */
-    private long mTimeComputeStart;
+    private volatile long mTimeEnd;
 
     /**
-     * end time triggered in millis.
+     * number of octet uploaded and start of current transfer rate computation interval.
      */
-    private long mTimeEnd;
+    private final TransferCounter mUploadCounter = new TransferCounter();
 
     /**
-     * this is the number of bit uploaded at this time.
+     * number of octet downloaded and start of current transfer rate computation interval.
      */
-    private int mUploadTempFileSize;
+    private final TransferCounter mDownloadCounter = new TransferCounter();
 
     /**
-     * number of bit uploaded since last transfer rate computation.
+     * limiter of upload progress reports notified from transfer thread.
      */
-    private int mUlComputationTempFileSize;
+    private final ProgressLimiter mUploadProgress;
 
     /**
-     * this is the number of packet downloaded at this time.
+     * limiter of download progress reports notified from transfer thread.
      */
-    private int mDownloadTemporaryPacketSize;
+    private final ProgressLimiter mDownloadProgress;
 
     /**
-     * number of packet download since the last computation.
+     * define if task is a connection of a wrapper building its own aggregated report : progress is then notified
+     * without a report of this connection (null report).
      */
-    private int mDlComputationTempPacketSize;
+    private boolean mAggregated;
 
     /**
      * this is the number of packet to download.
      */
-    private BigDecimal mDownloadPckSize = BigDecimal.ZERO;
+    private long mDownloadPckSize;
+
+    /**
+     * length of current response body in octet (-1 if body is chunked or delimited by connection close).
+     */
+    private long mBodyLength;
 
     /**
      * FTP inputstream.
@@ -131,11 +164,42 @@ public class SpeedTestTask {
      */
     private OutputStream mFtpOutputstream;
 
+    /**
+     * FTP client of current transfer.
+     */
+    private volatile FTPClient mFtpClient;
+
+    /**
+     * pending total test deadline.
+     */
+    private volatile ScheduledFuture<?> mTestDeadline;
+
+    /**
+     * pending deadline of current connection phase (connect, TLS handshake or first byte).
+     */
+    private volatile ScheduledFuture<?> mPhaseDeadline;
+
+    /**
+     * end of current test claimed atomically : equal to mTestDeadlineId while test is running, incremented by 1 when
+     * a deadline expires first, by 2 when test completes or is stopped first.
+     */
+    private final AtomicInteger mDeadlineId = new AtomicInteger();
+
+    /**
+     * identifier of deadlines scheduled for current test.
+     */
+    private volatile int mTestDeadlineId;
+
+    /**
+     * define if current test has been stopped by a deadline : errors caused by socket closure are not dispatched.
+     */
+    private volatile boolean mDeadlineExpired;
+
     /**
      * define if an error has been dispatched already or not. This is reset to false on start download/ upload + in
-     * reading thread
+     * reading thread, and set by watchdog thread when it closes the socket.
      */
-    private boolean mErrorDispatched;
+    private volatile boolean mErrorDispatched;
 
     /**
      * define if mSocket close error is to be expected.
@@ -145,7 +209,17 @@ public class SpeedTestTask {
     /**
      * size of file to upload.
      */
-    private BigDecimal mUploadFileSize = BigDecimal.ZERO;
+    private long mUploadFileSize;
+
+    /**
+     * duration of chunked upload in milliseconds (0 for upload of a fixed size sent with Content-Length).
+     */
+    private int mChunkedUploadDuration;
+
+    /**
+     * time in nanoseconds after which chunked upload body is ended.
+     */
+    private long mChunkedUploadDeadline;
 
     /**
      * SpeedTestSocket interface.
@@ -163,9 +237,9 @@ public class SpeedTestTask {
     private final List<ISpeedTestListener> mListenerList;
 
     /**
-     * define if report interval is set.
+     * define if report interval is set (cleared by watchdog thread when a deadline expires).
      */
-    private boolean mReportInterval;
+    private volatile boolean mReportInterval;
 
     /**
      * executor service for reading operation.
@@ -187,6 +261,66 @@ public class SpeedTestTask {
      */
     private SpeedTestMode mSpeedTestMode = SpeedTestMode.NONE;
 
+    /**
+     * define if mSocket can be reused for next request (persistent connection mode).
+     */
+    private volatile boolean mConnectionReusable;
+
+    /**
+     * protocol, host and port mSocket is connected to.
+     */
+    private String mConnectionKey;
+
+    /**
+     * number of requests pipelined for current download.
+     */
+    private int mPipelineDepth = 1;
+
+    /**
+     * HTTP request of current download.
+     */
+    private String mDownloadRequest;
+
+    /**
+     * report of each pipelined response read for current download.
+     */
+    private final List<SpeedTestReport> mResponseReports = new CopyOnWriteArrayList<>();
+
+    /**
+     * first octet of the range requested for current download (-1 if whole content is requested).
+     */
+    private long mRangeStart = -1;
+
+    /**
+     * last octet of the range requested for current download.
+     */
+    private long mRangeEnd;
+
+    /**
+     * size of the whole resource as given by last download response.
+     */
+    private long mResourceSize;
+
+    /**
+     * define if connection and threads are kept open for next request issued by a wrapper.
+     */
+    private boolean mKeepAlive;
+
+    /**
+     * decoder of current download response body (null if body is not chunked).
+     */
+    private ChunkedDecoder mChunkedDecoder;
+
+    /**
+     * size of read buffer for current download.
+     */
+    private AdaptiveSize mReadSize = new AdaptiveSize(SpeedTestConst.READ_BUFFER_SIZE);
+
+    /**
+     * size of upload chunk for current upload.
+     */
+    private AdaptiveSize mUploadSize = new AdaptiveSize(SpeedTestConst.DEFAULT_UPLOAD_SIZE);
+
     /**
      * Build socket.
      *
@@ -196,6 +330,8 @@ public class SpeedTestTask {
         mSocketInterface = socketInterface;
         mRepeatWrapper = mSocketInterface.getRepeatWrapper();
         mListenerList = listenerList;
+        mUploadProgress = new ProgressLimiter(socketInterface);
+        mDownloadProgress = new ProgressLimiter(socketInterface);
         initThreadPool();
     }
 
@@ -232,6 +368,55 @@ public class SpeedTestTask {
         return true;
     }
 
+    /**
+     * Define if task is a connection of a wrapper building its own aggregated report.
+     *
+     * @param aggregated true if progress is to be notified without report
+     */
+    void setAggregated(final boolean aggregated) {
+        mAggregated = aggregated;
+    }
+
+    /**
+     * Get proxy URL.
+     *
+     * @return proxy URL (null if no proxy is set)
+     */
+    URL getProxyUrl() {
+        return mProxyUrl;
+    }
+
+    /**
+     * Set proxy URL used by wrappers to share proxy of main task.
+     *
+     * @param proxyUrl proxy URL (null for no proxy)
+     */
+    void setProxyUrl(final URL proxyUrl) {
+        mProxyUrl = proxyUrl;
+    }
+
+    /**
+     * Set keep alive state used by wrappers issuing several requests with the same task.
+     *
+     * @param keepAlive define if connection and threads are kept open once a request is completed
+     */
+    void setKeepAlive(final boolean keepAlive) {
+        mKeepAlive = keepAlive;
+    }
+
+    /**
+     * Set range of the resource requested by next downloads and reset download counters.
+     *
+     * @param start first octet of the range
+     * @param end   last octet of the range (inclusive)
+     */
+    void setRange(final long start, final long end) {
+        mRangeStart = start;
+        mRangeEnd = end;
+        mDownloadCounter.reset();
+        mDownloadPckSize = 0;
+    }
+
     /**
      * start download task.
      *
@@ -243,6 +428,9 @@ public class SpeedTestTask {
 
         mForceCloseSocket = false;
         mErrorDispatched = false;
+        mResponseReports.clear();
+        mReadSize = newBufferSize(SpeedTestConst.READ_BUFFER_SIZE);
+        startTestDeadline();
 
         try {
             final URL url = new URL(uri);
@@ -254,11 +442,13 @@ public class SpeedTestTask {
                 case "https":
                     String downloadRequest;
 
+                    final String range = (mRangeStart >= 0) ? "\r\nRange: bytes=" + mRangeStart + "-" + mRangeEnd : "";
+
                     if (mProxyUrl != null) {
                         this.mHostname = mProxyUrl.getHost();
                         this.mPort = mProxyUrl.getPort() != -1 ? mProxyUrl.getPort() : 8080;
                         downloadRequest = "GET " + uri + " HTTP/1.1\r\n" + "Host: " + url.getHost() +
-                                "\r\nProxy-Connection: Keep-Alive" + "\r\n\r\n";
+                                "\r\nProxy-Connection: Keep-Alive" + range + "\r\n\r\n";
                     } else {
                         this.mHostname = url.getHost();
                         if (url.getProtocol().equals("http")) {
@@ -266,9 +456,17 @@ public class SpeedTestTask {
                         } else {
                             this.mPort = url.getPort() != -1 ? url.getPort() : 443;
                         }
-                        downloadRequest = "GET " + uri + " HTTP/1.1\r\n" + "Host: " + url.getHost() + "\r\n\r\n";
+                        downloadRequest = "GET " + uri + " HTTP/1.1\r\n" + "Host: " + url.getHost() + range +
+                                "\r\n\r\n";
+                    }
+                    // a range is requested only once
+                    mPipelineDepth = (mRangeStart >= 0) ? 1 : mSocketInterface.getPipelineDepth();
+                    mDownloadRequest = downloadRequest;
+
+                    if (!resolveHost()) {
+                        return;
                     }
-                    writeDownload(downloadRequest.getBytes());
+                    writeDownload(getPipelinedRequests(mPipelineDepth));
                     break;
                 case "ftp":
                     final String userInfo = url.getUserInfo();
@@ -300,12 +498,38 @@ public class SpeedTestTask {
      * @param uri           URI
      * @param fileSizeOctet file size to upload in octet
      */
-    public void startUploadRequest(final String uri, final int fileSizeOctet) {
+    public void startUploadRequest(final String uri, final long fileSizeOctet) {
+        startUploadRequest(uri, fileSizeOctet, 0);
+    }
+
+    /**
+     * Start HTTP upload request with chunked transfer encoding : generated data is streamed until duration is
+     * elapsed, then body is ended and server response is read.
+     *
+     * @param uri         URI
+     * @param maxDuration upload duration in milliseconds
+     */
+    public void startChunkedUploadRequest(final String uri, final int maxDuration) {
+        startUploadRequest(uri, 0, maxDuration);
+    }
+
+    /**
+     * Start upload request, distinguish protocol.
+     *
+     * @param uri             URI
+     * @param fileSizeOctet   file size to upload in octet
+     * @param chunkedDuration duration of chunked upload in milliseconds (0 for upload of fixed size)
+     */
+    private void startUploadRequest(final String uri, final long fileSizeOctet, final int chunkedDuration) {
+
+        mChunkedUploadDuration = chunkedDuration;
+        mUploadSize = newBufferSize(mSocketInterface.getUploadChunkSize());
 
         mSpeedTestMode = SpeedTestMode.UPLOAD;
 
         mForceCloseSocket = false;
         mErrorDispatched = false;
+        startTestDeadline();
 
         try {
             final URL url = new URL(uri);
@@ -334,7 +558,8 @@ public class SpeedTestTask {
     /**
      * shutdown executors to release threads.
      */
-    private void closeExecutors() {
+    void closeExecutors() {
+        clearDeadlines();
         mReadExecutorService.shutdownNow();
         mReportExecutorService.shutdownNow();
         mWriteExecutorService.shutdownNow();
@@ -346,7 +571,7 @@ public class SpeedTestTask {
      * @param uri           URI
      * @param fileSizeOctet file size to upload in octet
      */
-    public void writeUpload(final String uri, final int fileSizeOctet) {
+    public void writeUpload(final String uri, final long fileSizeOctet) {
 
         try {
             final URL url = new URL(uri);
@@ -364,51 +589,54 @@ public class SpeedTestTask {
                     this.mPort = url.getPort() != -1 ? url.getPort() : 443;
                 }
             }
-            mUploadFileSize = new BigDecimal(fileSizeOctet);
+            if (!resolveHost()) {
+                return;
+            }
+            final boolean chunked = mChunkedUploadDuration != 0;
+
+            // size of chunked upload is only known once body is ended
+            mUploadFileSize = chunked ? 0 : fileSizeOctet;
 
-            mUploadTempFileSize = 0;
-            mUlComputationTempFileSize = 0;
+            mUploadCounter.reset();
 
             mTimeStart = System.nanoTime();
-            mTimeComputeStart = System.nanoTime();
+            mUploadCounter.startInterval(mTimeStart);
+            mUploadProgress.reset(mTimeStart);
+
+            mChunkedUploadDeadline = chunked ?
+                    mTimeStart + TimeUnit.MILLISECONDS.toNanos(mChunkedUploadDuration) : 0;
+
+            final String bodyHeader = chunked ? "Transfer-Encoding: chunked" : "Content-Length: " + fileSizeOctet;
+            final String head;
+
+            if (mProxyUrl != null) {
+                head = "POST " + uri + " HTTP/1.1\r\n" + "Host: " + url.getHost() +
+                        "\r\nAccept: " + "*/*\r\n" + bodyHeader +
+                        "\r\nProxy-Connection: Keep-Alive" + "\r\n\r\n";
+            } else {
+                head = "POST " + uri + " HTTP/1.1\r\n" + "Host: " + url.getHost() +
+                        "\r\nAccept: " + "*/*\r\n" + bodyHeader + "\r\n\r\n";
+            }
+
+            if (isNioTransfer()) {
+                startNioUpload(head.getBytes(), fileSizeOctet);
+                return;
+            }
 
             connectAndExecuteTask(new Runnable() {
                 @Override
                 public void run() {
                     if (mSocket != null && !mSocket.isClosed()) {
 
+                        UploadPayload payload = null;
                         RandomAccessFile uploadFile = null;
-                        final RandomGen randomGen = new RandomGen();
 
                         try {
 
-                            byte[] body = new byte[]{};
-
-                            if (mSocketInterface.getUploadStorageType() == UploadStorageType.RAM_STORAGE) {
-                                /* generate a file with size of fileSizeOctet octet */
-                                body = randomGen.generateRandomArray(fileSizeOctet);
-                            } else {
-                                uploadFile = randomGen.generateRandomFile(fileSizeOctet);
-                                uploadFile.seek(0);
-                            }
-
-                            String head;
-
-                            if (mProxyUrl != null) {
-                                head = "POST " + uri + " HTTP/1.1\r\n" + "Host: " + url.getHost() +
-                                        "\r\nAccept: " + "*/*\r\nContent-Length: " + fileSizeOctet +
-                                        "\r\nProxy-Connection: Keep-Alive" + "\r\n\r\n";
-                            } else {
-                                head = "POST " + uri + " HTTP/1.1\r\n" + "Host: " + url.getHost() +
-                                        "\r\nAccept: " + "*/*\r\nContent-Length: " + fileSizeOctet + "\r\n\r\n";
-                            }
-                            mUploadTempFileSize = 0;
-                            mUlComputationTempFileSize = 0;
+                            payload = UploadPayloadCache.acquire(getUploadPayloadType(), fileSizeOctet);
+                            uploadFile = payload.openFile();
 
-                            final int uploadChunkSize = mSocketInterface.getUploadChunkSize();
-
-                            final int step = fileSizeOctet / uploadChunkSize;
-                            final int remain = fileSizeOctet % uploadChunkSize;
+                            mUploadCounter.reset();
 
                             if (mSocket.getOutputStream() != null) {
 
@@ -416,78 +644,43 @@ public class SpeedTestTask {
                                     throw new SocketTimeoutException();
                                 }
 
-                                mTimeStart = System.nanoTime();
-                                mTimeComputeStart = System.nanoTime();
-                                mTimeEnd = 0;
-
-                                if (mRepeatWrapper.isFirstUpload()) {
-                                    mRepeatWrapper.setFirstUploadRepeat(false);
-                                    mRepeatWrapper.setStartDate(mTimeStart);
-                                }
-
-                                if (mRepeatWrapper.isRepeatUpload()) {
-                                    mRepeatWrapper.updatePacketSize(mUploadFileSize);
-                                }
-
-                                for (int i = 0; i < step; i++) {
+                                onUploadStart();
 
-                                    final byte[] chunk = SpeedTestUtils.readUploadData(mSocketInterface
-                                                    .getUploadStorageType(),
-                                            body,
-                                            uploadFile,
-                                            mUploadTempFileSize,
-                                            uploadChunkSize);
-
-                                    if (writeFlushSocket(chunk) != 0) {
+                                if (chunked) {
+                                    if (writeChunkedUploadBody(payload) != 0) {
                                         throw new SocketTimeoutException();
                                     }
-
-                                    mUploadTempFileSize += uploadChunkSize;
-                                    mUlComputationTempFileSize += uploadChunkSize;
-
-                                    if (mRepeatWrapper.isRepeatUpload()) {
-                                        mRepeatWrapper.updateTempPacketSize(uploadChunkSize);
-                                    }
-
-                                    if (!mReportInterval) {
-                                        final SpeedTestReport report = getReport(SpeedTestMode.UPLOAD);
-
-                                        for (int j = 0; j < mListenerList.size(); j++) {
-                                            mListenerList.get(j).onProgress(report.getProgressPercent(), report);
-                                        }
-                                    }
+                                    onUploadEnd();
+                                    return;
                                 }
 
-                                final byte[] chunk = SpeedTestUtils.readUploadData(mSocketInterface
-                                                .getUploadStorageType(),
-                                        body,
-                                        uploadFile,
-                                        mUploadTempFileSize,
-                                        remain);
+                                long written = 0;
 
-                                if (remain != 0 && writeFlushSocket(chunk) != 0) {
-                                    throw new SocketTimeoutException();
-                                } else {
+                                while (written < fileSizeOctet) {
 
-                                    mUploadTempFileSize += remain;
-                                    mUlComputationTempFileSize += remain;
+                                    final int uploadChunkSize = mUploadSize.getSize();
+                                    final int length = (int) Math.min(uploadChunkSize, fileSizeOctet - written);
 
-                                    if (mRepeatWrapper.isRepeatUpload()) {
-                                        mRepeatWrapper.updateTempPacketSize(remain);
+                                    if (writeUploadChunk(payload, uploadFile, length) != 0) {
+                                        throw new SocketTimeoutException();
                                     }
-                                }
-
-                                if (!mReportInterval) {
-                                    final SpeedTestReport report = getReport(SpeedTestMode.UPLOAD);
-
-                                    for (int j = 0; j < mListenerList.size(); j++) {
-                                        mListenerList.get(j).onProgress(SpeedTestConst.PERCENT_MAX.floatValue(),
-                                                report);
-
+                                    written += length;
+                                    mUploadSize.onTransfer(length, length);
+
+                                    // no progress notified for last partial chunk, notified by onUploadEnd
+                                    if (length == uploadChunkSize) {
+                                        onUploadWrite(length);
+                                    } else {
+                                        updateUploadSize(length);
                                     }
                                 }
+
+                                onUploadEnd();
                             }
                         } catch (SocketTimeoutException e) {
+                            if (mDeadlineExpired) {
+                                return;
+                            }
                             mReportInterval = false;
                             mErrorDispatched = true;
                             closeSocket();
@@ -500,20 +693,16 @@ public class SpeedTestTask {
                                         e.getMessage());
                             }
                         } catch (IOException e) {
+                            if (mDeadlineExpired) {
+                                return;
+                            }
                             mReportInterval = false;
                             mErrorDispatched = true;
                             closeExecutors();
                             SpeedTestUtils.dispatchError(mSocketInterface, mForceCloseSocket,
                                     mListenerList, e.getMessage());
                         } finally {
-                            if (uploadFile != null) {
-                                try {
-                                    uploadFile.close();
-                                    randomGen.deleteFile();
-                                } catch (IOException e) {
-                                    //e.printStackTrace();
-                                }
-                            }
+                            releasePayload(payload, uploadFile);
                         }
                     }
                 }
@@ -532,31 +721,165 @@ public class SpeedTestTask {
      * @param download   define if it is a download or upload test
      * @param uploadSize upload package size (if !download)
      */
-    private void connectAndExecuteTask(final Runnable task, final boolean download, final int uploadSize) {
+    private void connectAndExecuteTask(final Runnable task, final boolean download, final long uploadSize) {
+
+        if (reuseSocket(mProtocol + "://" + mHostname + ":" + mPort, download)) {
+            startFirstByteDeadline(download);
+            executeTask(task, download, uploadSize);
+            return;
+        }
 
         // close mSocket before recreating it
         if (mSocket != null) {
             closeSocket();
         }
         try {
-            if ("https".equals(mProtocol)) {
-                final SSLSocketFactory ssf = (SSLSocketFactory) SSLSocketFactory.getDefault();
-                mSocket = ssf.createSocket();
-            } else {
-                mSocket = new Socket();
-            }
+            openSocket(download);
 
-            if (mSocketInterface.getSocketTimeout() != 0 && download) {
-                mSocket.setSoTimeout(mSocketInterface.getSocketTimeout());
+            startFirstByteDeadline(download);
+            executeTask(task, download, uploadSize);
+
+        } catch (SocketTimeoutException e) {
+            if (!mErrorDispatched && !mDeadlineExpired) {
+                clearDeadlines();
+                SpeedTestUtils.dispatchSocketTimeout(mForceCloseSocket, mListenerList, e.getMessage());
+            }
+        } catch (IOException e) {
+            if (!mErrorDispatched && !mDeadlineExpired) {
+                clearDeadlines();
+                SpeedTestUtils.dispatchError(mSocketInterface, mForceCloseSocket, mListenerList, e.getMessage());
             }
+        }
+    }
+
+    /**
+     * Resolve hostname of current request through DNS cache before transfer is timed, dispatching an error if it
+     * can't be resolved.
+     *
+     * @return false if hostname could not be resolved
+     */
+    private boolean resolveHost() {
+        try {
+            mAddress = new InetSocketAddress(resolve(mHostname), mPort);
+        } catch (UnknownHostException e) {
+            clearDeadlines();
+            SpeedTestUtils.dispatchError(mSocketInterface, mForceCloseSocket, mListenerList, e.getMessage());
+            return false;
+        }
+        return true;
+    }
+
+    /**
+     * Resolve a hostname through DNS cache and record resolution time.
+     *
+     * @param hostname hostname to resolve
+     * @return host address
+     * @throws UnknownHostException hostname could not be resolved
+     */
+    private InetAddress resolve(final String hostname) throws UnknownHostException {
+        final long start = System.nanoTime();
+        mResolutionTime = 0;
+        final InetAddress address = DnsCache.resolve(hostname);
+        mResolutionTime = System.nanoTime() - start;
+        return address;
+    }
+
+    /**
+     * Create mSocket and connect it to remote host.
+     *
+     * @param download define if it is a download or upload test
+     * @throws IOException mSocket could not be connected
+     */
+    private void openSocket(final boolean download) throws IOException {
+
+        if ("https".equals(mProtocol)) {
+            final SSLSocketFactory ssf = (SSLSocketFactory) SSLSocketFactory.getDefault();
+            mSocket = ssf.createSocket();
+        } else if (!download && mSocketInterface.getUploadStorageType() == UploadStorageType.FILE_STORAGE) {
+            /* socket backed by a channel so that upload file is sent with zero-copy transfer */
+            mSocket = SocketChannel.open().socket();
+        } else {
+            mSocket = new Socket();
+        }
+
+        if (mSocketInterface.getSocketTimeout() != 0 && download) {
+            mSocket.setSoTimeout(mSocketInterface.getSocketTimeout());
+        }
+
+        /* establish mSocket parameters */
+        mSocket.setReuseAddress(true);
+
+        mSocket.setKeepAlive(true);
 
-            /* establish mSocket parameters */
-            mSocket.setReuseAddress(true);
+        if (isPersistentConnection()) {
+            /* requests sent on an established connection must not wait for previous segments to be acknowledged */
+            mSocket.setTcpNoDelay(true);
+        }
+
+        final InetSocketAddress address = mAddress;
+
+        SocketTuner.beforeConnect(mSocket, mSocketInterface, address);
+
+        final long connectStart = System.nanoTime();
+        try {
+            mSocket.connect(address, mSocketInterface.getConnectTimeout());
+        } catch (SocketTimeoutException e) {
+            throw new SocketTimeoutException(SpeedTestConst.CONNECT_TIMEOUT_ERROR);
+        }
+        SocketTuner.afterConnect(mSocket, mSocketInterface, address, System.nanoTime() - connectStart);
+
+        if (mSocket instanceof SSLSocket) {
+            startPhaseDeadline(mSocketInterface.getHandshakeTimeout(), SpeedTestConst.HANDSHAKE_TIMEOUT_ERROR);
+            ((SSLSocket) mSocket).startHandshake();
+            clearPhaseDeadline();
+        }
+
+        mConnectionKey = mProtocol + "://" + mHostname + ":" + mPort;
+    }
+
+    /**
+     * Check if mSocket is still connected to the same host and can be used for next request. This consumes the
+     * reusable state : it is set again only if next response is fully read.
+     *
+     * @param connectionKey protocol, host and port of next request
+     * @param download      define if it is a download or upload test
+     * @return true if mSocket is reused
+     */
+    private boolean reuseSocket(final String connectionKey, final boolean download) {
+
+        if (!isPersistentConnection() || !mConnectionReusable || mSocket == null ||
+                mSocket.isClosed() || !connectionKey.equals(mConnectionKey)) {
+            return false;
+        }
+        mConnectionReusable = false;
 
-            mSocket.setKeepAlive(true);
+        try {
+            /* stale connection check : server may have closed the connection since last response */
+            mSocket.setSoTimeout(1);
+            try {
+                mSocket.getInputStream().read();
+                // connection closed by server or unexpected data received
+                return false;
+            } catch (SocketTimeoutException e) {
+                // nothing to read, connection is still open
+            }
+            mSocket.setSoTimeout(download ? mSocketInterface.getSocketTimeout() : 0);
+            return true;
+        } catch (IOException e) {
+            return false;
+        }
+    }
 
-            mSocket.connect(new InetSocketAddress(mHostname, mPort));
+    /**
+     * Execute reading task and writing task on mSocket.
+     *
+     * @param task       task to be executed on connected mSocket
+     * @param download   define if it is a download or upload test
+     * @param uploadSize upload package size (if !download)
+     */
+    private void executeTask(final Runnable task, final boolean download, final long uploadSize) {
 
+        try {
             if (mReadExecutorService == null || mReadExecutorService.isShutdown()) {
                 mReadExecutorService = Executors.newSingleThreadExecutor();
             }
@@ -582,14 +905,19 @@ public class SpeedTestTask {
                 @Override
                 public void run() {
                     if (task != null) {
-                        task.run();
+                        SocketWatchdog.watch(SpeedTestTask.this);
+                        try {
+                            task.run();
+                        } finally {
+                            SocketWatchdog.unwatch(SpeedTestTask.this);
+                        }
                     }
                 }
             });
-
-        } catch (IOException e) {
-            if (!mErrorDispatched) {
-                SpeedTestUtils.dispatchError(mSocketInterface, mForceCloseSocket, mListenerList, e.getMessage());
+        } catch (RejectedExecutionException e) {
+            // executors have been shut down by a deadline expiring meanwhile, which has dispatched its error
+            if (!mDeadlineExpired) {
+                throw e;
             }
         }
     }
@@ -601,316 +929,1276 @@ public class SpeedTestTask {
      */
     private void startSocketDownloadTask(final String protocol, final String hostname) {
 
-        mDownloadTemporaryPacketSize = 0;
-        mDlComputationTempPacketSize = 0;
+        mDownloadCounter.reset();
 
         try {
-            final HttpFrame httpFrame = new HttpFrame();
+            if (readDownloadResponses(protocol, hostname)) {
+                finishDownload();
+            }
 
-            final HttpStates httFrameState = httpFrame.decodeFrame(mSocket.getInputStream());
+        } catch (
+                SocketTimeoutException e
+                )
 
-            SpeedTestUtils.checkHttpFrameError(mForceCloseSocket, mListenerList, httFrameState);
+        {
+            mReportInterval = false;
+            SpeedTestUtils.dispatchSocketTimeout(mForceCloseSocket, mListenerList, e.getMessage());
+            mTimeEnd = System.nanoTime();
+            closeSocket();
+            closeExecutors();
+        } catch (IOException |
+                InterruptedException e
+                )
 
-            final HttpStates httpHeaderState = httpFrame.parseHeader(mSocket.getInputStream());
-            SpeedTestUtils.checkHttpHeaderError(mForceCloseSocket, mListenerList, httpHeaderState);
+        {
+            mReportInterval = false;
+            catchError(e.getMessage());
+        }
 
-            if (httpFrame.getStatusCode() == SpeedTestConst.HTTP_OK &&
-                    httpFrame.getReasonPhrase().equalsIgnoreCase("ok")) {
+        mErrorDispatched = false;
+    }
 
-                SpeedTestUtils.checkHttpContentLengthError(mForceCloseSocket,
-                        mListenerList, httpFrame);
+    /**
+     * Read responses of all pipelined download requests in order.
+     * <p/>
+     * If connection is closed or reset after the first response has started, server is considered not to support
+     * pipelining : octets of the interrupted response are discarded and each request that has not been answered is
+     * sent again on its own connection.
+     *
+     * @param protocol protocol used for the request
+     * @param hostname hostname reached
+     * @return true if download is to be completed
+     * @throws IOException          mSocket io exception
+     * @throws InterruptedException HTTP frame decoding interrupted
+     */
+    private boolean readDownloadResponses(final String protocol, final String hostname) throws IOException,
+            InterruptedException {
 
-                mDownloadPckSize = new BigDecimal(httpFrame.getContentLength());
+        boolean reusable = true;
+        boolean answered = false;
+        boolean fallback = false;
+        long firstLength = 0;
+        int i = 0;
 
-                if (mRepeatWrapper.isRepeatDownload()) {
-                    mRepeatWrapper.updatePacketSize(mDownloadPckSize);
-                }
+        while (i < mPipelineDepth) {
 
-                mTimeStart = System.nanoTime();
-                mTimeComputeStart = System.nanoTime();
-                mTimeEnd = 0;
+            if (fallback) {
+                resendPipelinedRequests(1);
+            }
 
-                if (mRepeatWrapper.isFirstDownload()) {
-                    mRepeatWrapper.setFirstDownloadRepeat(false);
-                    mRepeatWrapper.setStartDate(mTimeStart);
-                }
-
-                downloadReadingLoop();
-                mTimeEnd = System.nanoTime();
-
-                closeSocket();
+            final long responseOffset = mDownloadCounter.get();
+            final HttpFrame httpFrame = new HttpFrame();
 
-                mReportInterval = false;
+            try {
+                final HttpStates httFrameState = httpFrame.decodeFrame(mSocket.getInputStream());
 
-                if (!mRepeatWrapper.isRepeatDownload()) {
-                    closeExecutors();
+                if (!answered) {
+                    clearPhaseDeadline();
+                } else if (httFrameState != HttpStates.HTTP_FRAME_OK && !fallback) {
+                    throw new EOFException(SpeedTestConst.PIPELINE_CLOSED_ERROR);
                 }
 
-                final SpeedTestReport report = getReport(SpeedTestMode.DOWNLOAD);
+                final HttpStates httpHeaderState = httpFrame.parseHeader(mSocket.getInputStream());
 
-                for (int i = 0; i < mListenerList.size(); i++) {
-                    mListenerList.get(i).onCompletion(report);
-                }
+                checkHttpStates(httFrameState, httpHeaderState);
 
-            } else if ((httpFrame.getStatusCode() == 301 ||
-                    httpFrame.getStatusCode() == 302 ||
-                    httpFrame.getStatusCode() == 307) &&
-                    httpFrame.getHeaders().containsKey("location")) {
-                // redirect to Location
-                final String location = httpFrame.getHeaders().get("location");
+                final long length;
 
-                if (location.charAt(0) == '/') {
-                    mReportInterval = false;
-                    finishTask();
-                    startDownloadRequest(protocol + "://" + hostname + location);
+                if (!answered) {
+                    if (!onDownloadResponse(httpFrame, protocol, hostname)) {
+                        return false;
+                    }
+                    answered = true;
+                    length = mBodyLength;
+                    firstLength = mDownloadPckSize;
+                    // all pipelined requests are expected to fetch the same content
+                    updateDownloadSize(firstLength * (mPipelineDepth - 1));
+                } else if (httpFrame.getStatusCode() == SpeedTestConst.HTTP_OK) {
+                    length = initResponseBody(httpFrame);
+                    updateDownloadSize(Math.max(length, 0) - firstLength);
                 } else {
                     mReportInterval = false;
+                    for (int j = 0; j < mListenerList.size(); j++) {
+                        mListenerList.get(j).onError(SpeedTestError.INVALID_HTTP_RESPONSE, "Error status code " +
+                                httpFrame.getStatusCode());
+                    }
                     finishTask();
-                    startDownloadRequest(location);
+                    return false;
                 }
-            } else {
 
-                mReportInterval = false;
+                final long responseStart = System.nanoTime();
 
-                for (int i = 0; i < mListenerList.size(); i++) {
-                    mListenerList.get(i).onError(SpeedTestError.INVALID_HTTP_RESPONSE, "Error status code " +
-                            httpFrame.getStatusCode());
+                if (!downloadReadingLoop(length)) {
+                    if (length > 0 && mPipelineDepth > 1 && !fallback) {
+                        throw new EOFException(SpeedTestConst.PIPELINE_CLOSED_ERROR);
+                    }
+                    reusable = false;
+                    break;
+                }
+                if (mPipelineDepth > 1) {
+                    mResponseReports.add(getResponseReport(responseStart, System.nanoTime(),
+                            mDownloadCounter.get() - responseOffset));
+                }
+            } catch (SocketTimeoutException e) {
+                throw e;
+            } catch (IOException e) {
+                if (!answered || fallback || mPipelineDepth == 1 || mForceCloseSocket || mDeadlineExpired) {
+                    throw e;
                 }
+                // server doesn't support pipelining : interrupted response is downloaded again
+                discardDownload(mDownloadCounter.get() - responseOffset);
+                fallback = true;
+                continue;
+            }
+            reusable = reusable && isConnectionReusable(httpFrame);
+            i++;
+        }
+        mConnectionReusable = reusable;
+        return true;
+    }
 
-                finishTask();
+    /**
+     * Build download request repeated to be pipelined on the same connection.
+     *
+     * @param count number of requests
+     * @return requests to write
+     */
+    private byte[] getPipelinedRequests(final int count) {
+
+        final StringBuilder requests = new StringBuilder();
+
+        for (int i = 0; i < count; i++) {
+            requests.append(mDownloadRequest);
+        }
+        return requests.toString().getBytes();
+    }
+
+    /**
+     * Open a new connection and send requests that have not been answered on the previous one.
+     *
+     * @param count number of requests to send
+     * @throws IOException mSocket io exception
+     */
+    private void resendPipelinedRequests(final int count) throws IOException {
+
+        closeSocket();
+        openSocket(true);
+
+        if (writeFlushSocket(getPipelinedRequests(count)) != 0) {
+            throw new SocketTimeoutException(SpeedTestConst.SOCKET_WRITE_ERROR);
+        }
+    }
+
+    /**
+     * Discard octets of a response that has to be downloaded again.
+     *
+     * @param octets number of octet discarded
+     */
+    private void discardDownload(final long octets) {
+        if (octets > 0) {
+            mDownloadCounter.add(-octets);
+            if (mRepeatWrapper.isRepeatDownload()) {
+                mRepeatWrapper.updateTempPacketSize(-octets);
+            }
+        }
+    }
+
+    /**
+     * Add a size difference to total download size.
+     *
+     * @param delta size difference in octet
+     */
+    private void updateDownloadSize(final long delta) {
+        if (delta != 0) {
+            mDownloadPckSize += delta;
+            if (mRepeatWrapper.isRepeatDownload()) {
+                mRepeatWrapper.updatePacketSize(delta);
             }
+        }
+    }
 
-        } catch (
-                SocketTimeoutException e
-                )
+    /**
+     * Build report of a single pipelined response or downloaded range.
+     *
+     * @param timeStart time at which response headers have been read in nanoseconds
+     * @param timeEnd   time at which response body has been read in nanoseconds
+     * @param size      response body size in octet
+     * @return response report
+     */
+    SpeedTestReport getResponseReport(final long timeStart, final long timeEnd, final long size) {
+
+        return new SpeedTestReport(SpeedTestMode.DOWNLOAD, (float) SpeedTestConst.PERCENT_MAX_VALUE, timeStart,
+                timeEnd, size, size, SpeedTestUtils.getTransferRate(size, timeEnd - timeStart),
+                mSocketInterface.getDefaultScale(), mSocketInterface.getDefaultRoundingMode(), 1);
+    }
+
+    /**
+     * Check HTTP frame and header parsing status.
+     *
+     * @param frameState  HTTP status line parsing status
+     * @param headerState HTTP headers parsing status
+     */
+    void checkHttpStates(final HttpStates frameState, final HttpStates headerState) {
+        SpeedTestUtils.checkHttpFrameError(mForceCloseSocket, mListenerList, frameState);
+        SpeedTestUtils.checkHttpHeaderError(mForceCloseSocket, mListenerList, headerState);
+    }
+
+    /**
+     * Process HTTP response headers received for download request.
+     *
+     * @param httpFrame HTTP response frame (status line + headers)
+     * @param protocol  protocol used for the request
+     * @param hostname  hostname reached
+     * @return true if response body is to be read
+     */
+    boolean onDownloadResponse(final HttpFrame httpFrame, final String protocol, final String hostname) {
+
+        // a server ignoring Range header sends the whole content which is only valid for a range starting at 0
+        if ((httpFrame.getStatusCode() == SpeedTestConst.HTTP_OK &&
+                httpFrame.getReasonPhrase().equalsIgnoreCase("ok") && mRangeStart <= 0) ||
+                (httpFrame.getStatusCode() == SpeedTestConst.HTTP_PARTIAL_CONTENT && mRangeStart >= 0)) {
+
+            final long length = initResponseBody(httpFrame);
+
+            // an empty body (Content-Length: 0) is valid and completes immediately
+            if (mChunkedDecoder == null && length < 0 && httpFrame.getHeaders().containsKey("content-length")) {
+                SpeedTestUtils.checkHttpContentLengthError(mForceCloseSocket,
+                        mListenerList, httpFrame);
+            }
+
+            mBodyLength = length;
+            mDownloadPckSize = Math.max(length, 0);
+            mResourceSize = getResourceSize(httpFrame);
+
+            if (mRepeatWrapper.isRepeatDownload()) {
+                mRepeatWrapper.updatePacketSize(mDownloadPckSize);
+            }
+
+            mTimeStart = System.nanoTime();
+            mDownloadCounter.startInterval(mTimeStart);
+            mDownloadProgress.reset(mTimeStart);
+            mTimeEnd = 0;
+
+            if (mRepeatWrapper.isFirstDownload()) {
+                mRepeatWrapper.setFirstDownloadRepeat(false);
+                mRepeatWrapper.setStartDate(mTimeStart);
+            }
+            return true;
+
+        } else if ((httpFrame.getStatusCode() == 301 ||
+                httpFrame.getStatusCode() == 302 ||
+                httpFrame.getStatusCode() == 307) &&
+                httpFrame.getHeaders().containsKey("location")) {
+            // redirect to Location
+            final String location = httpFrame.getHeaders().get("location");
+
+            if (location.charAt(0) == '/') {
+                mReportInterval = false;
+                finishTask();
+                startDownloadRequest(protocol + "://" + hostname + location);
+            } else {
+                mReportInterval = false;
+                finishTask();
+                startDownloadRequest(location);
+            }
+        } else {
 
-        {
             mReportInterval = false;
-            SpeedTestUtils.dispatchSocketTimeout(mForceCloseSocket, mListenerList, e.getMessage());
-            mTimeEnd = System.nanoTime();
+
+            for (int i = 0; i < mListenerList.size(); i++) {
+                mListenerList.get(i).onError(SpeedTestError.INVALID_HTTP_RESPONSE, "Error status code " +
+                        httpFrame.getStatusCode());
+            }
+
+            finishTask();
+        }
+        return false;
+    }
+
+    /**
+     * Retrieve length of response body and set chunked decoder if body is chunked.
+     *
+     * @param httpFrame HTTP response frame
+     * @return body length in octet (-1 if body is chunked or delimited by connection close)
+     */
+    private long initResponseBody(final HttpFrame httpFrame) {
+
+        final String transferEncoding = httpFrame.getHeaders().get("transfer-encoding");
+
+        // chunked is always the last transfer coding applied
+        if (transferEncoding != null && "chunked".equalsIgnoreCase(
+                transferEncoding.substring(transferEncoding.lastIndexOf(',') + 1).trim())) {
+            mChunkedDecoder = new ChunkedDecoder();
+            return -1;
+        }
+        mChunkedDecoder = null;
+
+        if (!httpFrame.getHeaders().containsKey("content-length")) {
+            return -1;
+        }
+        return Math.max(SpeedTestUtils.getContentLength(httpFrame), -1);
+    }
+
+    /**
+     * Check if current response body is empty so that download is complete once headers have been read.
+     *
+     * @return true if response has a zero Content-Length
+     */
+    boolean isResponseBodyEmpty() {
+        return mBodyLength == 0;
+    }
+
+    /**
+     * Retrieve size of the whole resource from Content-Range header or from Content-Length if whole content is sent.
+     *
+     * @param httpFrame HTTP response frame
+     * @return resource size in octet (0 if unknown)
+     */
+    private long getResourceSize(final HttpFrame httpFrame) {
+
+        final String contentRange = httpFrame.getHeaders().get("content-range");
+
+        if (contentRange == null) {
+            return Math.max(SpeedTestUtils.getContentLength(httpFrame), 0);
+        }
+        try {
+            return Long.parseLong(contentRange.substring(contentRange.lastIndexOf('/') + 1).trim());
+        } catch (NumberFormatException e) {
+            // complete length is unknown ("*")
+            return 0;
+        }
+    }
+
+    /**
+     * Complete download once all data has been read.
+     */
+    void finishDownload() {
+
+        mTimeEnd = System.nanoTime();
+        if (!clearDeadlines()) {
+            return;
+        }
+
+        // size of chunked or close delimited body is only known once it has been read
+        final boolean sizeUnknown = mDownloadPckSize == 0;
+
+        if (sizeUnknown) {
+            mDownloadPckSize = mDownloadCounter.get();
+        }
+
+        // reports notified while size was unknown have no progress percent : last report is notified again
+        flushDownloadProgress(sizeUnknown && mDownloadPckSize != 0);
+
+        if (!mConnectionReusable) {
             closeSocket();
+        }
+
+        mReportInterval = false;
+
+        if (!mRepeatWrapper.isRepeatDownload() && !mKeepAlive) {
             closeExecutors();
-        } catch (IOException |
-                InterruptedException e
-                )
+        }
 
-        {
-            mReportInterval = false;
-            catchError(e.getMessage());
+        final SpeedTestReport report = getReport(SpeedTestMode.DOWNLOAD);
+
+        for (int i = 0; i < mListenerList.size(); i++) {
+            mListenerList.get(i).onCompletion(report);
+        }
+    }
+
+    private void finishTask() {
+        clearDeadlines();
+        if (!mConnectionReusable) {
+            closeSocket();
+        }
+        if (!mRepeatWrapper.isRepeat() && !mKeepAlive) {
+            closeExecutors();
+        }
+    }
+
+    /**
+     * start download reading loop + monitor progress. Reading stops at the end of response body so that next
+     * pipelined response is left in the stream.
+     *
+     * @param length response body size in octet (-1 if body is chunked or delimited by connection close)
+     * @return true if all data has been downloaded before end of stream
+     * @throws IOException mSocket io exception
+     */
+    private boolean downloadReadingLoop(final long length) throws IOException {
+
+        if (length == 0) {
+            return true;
+        }
+        ByteBuffer buffer = ReadBufferPool.acquire(false, mReadSize.getSize());
+        long remaining = length;
+
+        try {
+            while (true) {
+                buffer = ReadBufferPool.fit(buffer, mReadSize.getSize());
+
+                final int limit = getReadLimit(mReadSize.getSize(), remaining);
+                final int read = mSocket.getInputStream().read(buffer.array(), 0, limit);
+
+                if (read == -1) {
+                    return false;
+                }
+                mReadSize.onTransfer(read, limit);
+
+                remaining -= read;
+                if (onDownloadData(buffer, 0, read) || remaining == 0) {
+                    return true;
+                }
+            }
+        } finally {
+            ReadBufferPool.release(buffer);
+        }
+    }
+
+    /**
+     * Get number of octets that can be read without going past the end of response body.
+     *
+     * @param max       max number of octets to read
+     * @param remaining number of octets remaining in response body (negative if unknown)
+     * @return number of octets to read next
+     */
+    private int getReadLimit(final int max, final long remaining) {
+        if (mChunkedDecoder != null) {
+            return mChunkedDecoder.getReadLimit(max);
+        }
+        return (remaining > 0) ? (int) Math.min(max, remaining) : max;
+    }
+
+    /**
+     * Account for response body data read from download stream, decoding it if body is chunked.
+     *
+     * @param data   data buffer
+     * @param offset offset of data read in buffer
+     * @param length number of octets read
+     * @return true if all data has been downloaded
+     * @throws IOException invalid chunked encoding
+     */
+    boolean onDownloadData(final ByteBuffer data, final int offset, final int length) throws IOException {
+
+        if (mChunkedDecoder == null) {
+            return onDownloadRead(length);
+        }
+        final int payload = mChunkedDecoder.decode(data, offset, length);
+
+        return (payload != 0 && onDownloadRead(payload)) || mChunkedDecoder.isDone();
+    }
+
+    /**
+     * Check if persistent connection mode is enabled for this task.
+     *
+     * @return true if connection is to be kept open between requests
+     */
+    private boolean isPersistentConnection() {
+        return mKeepAlive || mSocketInterface.isPersistentConnection();
+    }
+
+    /**
+     * Check if mSocket can be kept open for next request once response has been fully read.
+     *
+     * @param frame HTTP response frame
+     * @return true if persistent connection mode is enabled and server has not requested to close connection
+     */
+    private boolean isConnectionReusable(final HttpFrame frame) {
+
+        if (!isPersistentConnection() || (frame.getStatusCode() != SpeedTestConst.HTTP_OK &&
+                frame.getStatusCode() != SpeedTestConst.HTTP_PARTIAL_CONTENT)) {
+            return false;
+        }
+        final String connection = frame.getHeaders().get("connection");
+
+        return connection == null || !"close".equalsIgnoreCase(connection.trim());
+    }
+
+    /**
+     * Account for data read from download stream + monitor progress.
+     *
+     * @param read number of octet read
+     * @return true if all data has been downloaded
+     */
+    private boolean onDownloadRead(final int read) {
+
+        final long downloaded = mDownloadCounter.add(read);
+
+        if (mRepeatWrapper.isRepeatDownload()) {
+            mRepeatWrapper.updateTempPacketSize(read);
+        }
+
+        final boolean complete = downloaded == mDownloadPckSize;
+
+        if (!mReportInterval && mDownloadProgress.isDue(downloaded, complete)) {
+            notifyProgress(SpeedTestMode.DOWNLOAD);
+        }
+
+        return complete;
+    }
+
+    /**
+     * Notify last download progress if it has been coalesced by progress policy.
+     *
+     * @param force true to notify last progress even if it has already been notified
+     */
+    private void flushDownloadProgress(final boolean force) {
+        final long downloaded = mDownloadCounter.get();
+
+        if (!mReportInterval && (force || mDownloadProgress.isPending(downloaded)) &&
+                mDownloadProgress.isDue(downloaded, true)) {
+            notifyProgress(SpeedTestMode.DOWNLOAD);
+        }
+    }
+
+    /**
+     * Notify progress report to listeners.
+     *
+     * @param mode speed test mode
+     */
+    private void notifyProgress(final SpeedTestMode mode) {
+        if (mAggregated) {
+            notifyAggregatedProgress();
+            return;
+        }
+        final SpeedTestReport report = getReport(mode);
+
+        for (int i = 0; i < mListenerList.size(); i++) {
+            mListenerList.get(i).onProgress(report.getProgressPercent(), report);
+        }
+    }
+
+    /**
+     * Notify wrapper that progress has been made : wrapper builds its own report, which also computes the report of
+     * this connection.
+     */
+    private void notifyAggregatedProgress() {
+        for (int i = 0; i < mListenerList.size(); i++) {
+            mListenerList.get(i).onProgress(0, null);
+        }
+    }
+
+    /**
+     * start upload writing task.
+     *
+     * @param hostname hostname to reach
+     * @param size     upload packet size
+     */
+    private void startSocketUploadTask(final String hostname, final long size) {
+
+        try {
+            final HttpFrame frame = new HttpFrame();
+
+            final HttpStates httpStates = frame.parseHttp(mSocket.getInputStream());
+
+            if (httpStates == HttpStates.HTTP_FRAME_OK) {
+                mConnectionReusable = isConnectionReusable(frame);
+                onUploadResponse(frame, hostname, size);
+                return;
+            }
+            closeSocket();
+            if (!mErrorDispatched && !mForceCloseSocket && !mDeadlineExpired) {
+                for (int i = 0; i < mListenerList.size(); i++) {
+                    mListenerList.get(i).onError(SpeedTestError.SOCKET_ERROR, "mSocket error");
+                }
+            }
+            closeExecutors();
+        } catch (IOException | InterruptedException e) {
+            mReportInterval = false;
+            if (!mErrorDispatched) {
+                catchError(e.getMessage());
+            }
+        }
+        mErrorDispatched = false;
+    }
+
+
+    /**
+     * Process HTTP response received for upload request.
+     *
+     * @param frame    HTTP response frame
+     * @param hostname hostname reached
+     * @param size     upload packet size
+     */
+    void onUploadResponse(final HttpFrame frame, final String hostname, final long size) {
+
+        if (frame.getStatusCode() == SpeedTestConst.HTTP_OK && frame.getReasonPhrase().equalsIgnoreCase("ok")) {
+
+            mTimeEnd = System.nanoTime();
+            if (!clearDeadlines()) {
+                return;
+            }
+            mReportInterval = false;
+
+            finishTask();
+
+            final SpeedTestReport report = getReport(SpeedTestMode.UPLOAD);
+
+            for (int i = 0; i < mListenerList.size(); i++) {
+                mListenerList.get(i).onCompletion(report);
+            }
+
+        } else if ((frame.getStatusCode() == 301 ||
+                frame.getStatusCode() == 302 ||
+                frame.getStatusCode() == 307) &&
+                frame.getHeaders().containsKey("location")) {
+            // redirect to Location
+            final String location = frame.getHeaders().get("location");
+
+            if (location.charAt(0) == '/') {
+                mReportInterval = false;
+                finishTask();
+                startUploadRequest("http://" + hostname + location, size, mChunkedUploadDuration);
+            } else if (location.startsWith("https")) {
+                //unsupported protocol
+                mReportInterval = false;
+                for (int i = 0; i < mListenerList.size(); i++) {
+                    mListenerList.get(i).onError(SpeedTestError.UNSUPPORTED_PROTOCOL, "unsupported protocol :" +
+                            " " +
+                            "https");
+                }
+                finishTask();
+            } else {
+                mReportInterval = false;
+                finishTask();
+                startUploadRequest(location, size, mChunkedUploadDuration);
+            }
+        } else {
+            mReportInterval = false;
+
+            for (int i = 0; i < mListenerList.size(); i++) {
+                mListenerList.get(i).onError(SpeedTestError.INVALID_HTTP_RESPONSE, "Error status code" +
+                        " " + frame.getStatusCode());
+            }
+            finishTask();
+        }
+    }
+
+    /**
+     * Initialize upload transfer state once request headers have been sent.
+     */
+    void onUploadStart() {
+
+        mTimeStart = System.nanoTime();
+        mUploadCounter.startInterval(mTimeStart);
+        mUploadProgress.reset(mTimeStart);
+        mTimeEnd = 0;
+
+        if (mRepeatWrapper.isFirstUpload()) {
+            mRepeatWrapper.setFirstUploadRepeat(false);
+            mRepeatWrapper.setStartDate(mTimeStart);
+        }
+
+        if (mRepeatWrapper.isRepeatUpload()) {
+            mRepeatWrapper.updatePacketSize(mUploadFileSize);
+        }
+    }
+
+    /**
+     * Account for data written to upload stream.
+     *
+     * @param size number of octet written
+     */
+    private void updateUploadSize(final int size) {
+
+        mUploadCounter.add(size);
+
+        if (mRepeatWrapper.isRepeatUpload()) {
+            mRepeatWrapper.updateTempPacketSize(size);
+        }
+    }
+
+    /**
+     * Account for data written to upload stream + monitor progress.
+     *
+     * @param size number of octet written
+     */
+    void onUploadWrite(final int size) {
+
+        updateUploadSize(size);
+
+        if (!mReportInterval && mUploadProgress.isDue(mUploadCounter.get(), false)) {
+            notifyProgress(SpeedTestMode.UPLOAD);
+        }
+    }
+
+    /**
+     * Notify upload progress once all data has been written.
+     */
+    void onUploadEnd() {
+
+        if (mChunkedUploadDuration != 0) {
+            mUploadFileSize = mUploadCounter.get();
+        }
+
+        if (!mReportInterval) {
+            if (mAggregated) {
+                notifyAggregatedProgress();
+                return;
+            }
+            final SpeedTestReport report = getReport(SpeedTestMode.UPLOAD);
+
+            for (int j = 0; j < mListenerList.size(); j++) {
+                mListenerList.get(j).onProgress(SpeedTestConst.PERCENT_MAX.floatValue(),
+                        report);
+
+            }
+        }
+    }
+
+    /**
+     * Write download request to server host.
+     *
+     * @param data HTTP request to send to initiate download process
+     */
+    private void writeDownload(final byte[] data) {
+
+        if (isNioTransfer() && mPipelineDepth == 1) {
+
+            mDownloadCounter.reset();
+
+            try {
+                startNioTransfer(new NioTransfer(this, mAddress, data, mProtocol,
+                        mHostname, mSocketInterface.getSocketTimeout()));
+            } catch (IOException e) {
+                SpeedTestUtils.dispatchError(mSocketInterface, mForceCloseSocket, mListenerList, e.getMessage());
+            }
+            return;
+        }
+
+        connectAndExecuteTask(new Runnable() {
+            @Override
+            public void run() {
+
+                if (mSocket != null && !mSocket.isClosed()) {
+
+                    try {
+                        if ((mSocket.getOutputStream() != null) && (writeFlushSocket(data) != 0)) {
+                            throw new SocketTimeoutException();
+                        }
+                    } catch (SocketTimeoutException e) {
+                        // response may have been read and socket closed before write call has returned
+                        if (isTestEnded()) {
+                            return;
+                        }
+                        SpeedTestUtils.dispatchSocketTimeout(mForceCloseSocket, mListenerList, SpeedTestConst
+                                .SOCKET_WRITE_ERROR);
+                        closeSocket();
+                        closeExecutors();
+                    } catch (IOException e) {
+                        if (mDeadlineExpired) {
+                            return;
+                        }
+                        SpeedTestUtils.dispatchError(mSocketInterface, mForceCloseSocket,
+                                mListenerList, e.getMessage());
+                        closeExecutors();
+                    }
+                }
+            }
+        }, true, 0);
+    }
+
+    /**
+     * logout & disconnect FTP client.
+     *
+     * @param ftpclient ftp client
+     */
+    private void disconnectFtp(final FTPClient ftpclient) {
+
+        try {
+            if (ftpclient.isConnected()) {
+                ftpclient.logout();
+                ftpclient.disconnect();
+            }
+        } catch (IOException ex) {
+            //ex.printStackTrace();
+        }
+    }
+
+
+    /**
+     * Write next upload chunk to mSocket. RAM storage is written directly from upload body, stream storage from
+     * random data ring. File storage is transferred from file channel to socket channel without being copied to user
+     * space when mSocket is backed by a channel.
+     *
+     * @param payload    upload payload
+     * @param uploadFile file opened from payload for FILE storage case
+     * @param length     chunk size to write
+     * @return error status (-1 for error)
+     * @throws IOException upload file io exception
+     */
+    private int writeUploadChunk(final UploadPayload payload,
+                                 final RandomAccessFile uploadFile,
+                                 final int length) throws IOException {
+
+        if (payload.getRing() != null) {
+            return writeRingSocket(payload.getRing(), length);
+        }
+
+        // upload larger than payload sends payload again from its start
+        long position = mUploadCounter.get();
+        int remain = length;
+
+        while (remain > 0) {
+            final int offset = payload.getOffset(position);
+            final int size = Math.min(remain, payload.getSize() - offset);
+            if (writePayloadRegion(payload, uploadFile, offset, size) != 0) {
+                return -1;
+            }
+            position += size;
+            remain -= size;
+        }
+        return 0;
+    }
+
+    /**
+     * Write a region of RAM or FILE storage payload to mSocket.
+     *
+     * @param payload    upload payload
+     * @param uploadFile file opened from payload for FILE storage case
+     * @param offset     offset of region in payload
+     * @param length     region length
+     * @return error status (-1 for error)
+     * @throws IOException upload file io exception
+     */
+    private int writePayloadRegion(final UploadPayload payload,
+                                   final RandomAccessFile uploadFile,
+                                   final int offset,
+                                   final int length) throws IOException {
+
+        if (payload.getBody() != null) {
+            return writeFlushSocket(payload.getBody(), offset, length);
+        }
+        if (mSocket.getChannel() != null) {
+            return transferFileSocket(uploadFile.getChannel(), offset, length);
+        }
+        final byte[] data = SpeedTestUtils.readUploadData(mSocketInterface.getUploadStorageType(),
+                null,
+                uploadFile,
+                offset,
+                length);
+        return writeFlushSocket(data, 0, length);
+    }
+
+    /**
+     * Write chunked upload body : chunks of generated data are written until chunked upload deadline, then body is
+     * ended with last chunk.
+     *
+     * @param payload upload payload
+     * @return error status (-1 for error)
+     * @throws IOException upload file io exception
+     */
+    private int writeChunkedUploadBody(final UploadPayload payload) throws IOException {
+
+        // end of previous chunk data is written with next chunk size line
+        byte[] chunkHeader = null;
+        int headerSize = 0;
+        int headerOffset = SpeedTestConst.CRLF.length;
+
+        while (System.nanoTime() - mChunkedUploadDeadline < 0) {
+
+            final int chunkSize = mUploadSize.getSize();
+
+            if (chunkSize != headerSize) {
+                chunkHeader = SpeedTestUtils.getChunkHeader(chunkSize);
+                headerSize = chunkSize;
+            }
+            if (writeFlushSocket(chunkHeader, headerOffset, chunkHeader.length - headerOffset) != 0 ||
+                    writeUploadChunk(payload, null, chunkSize) != 0) {
+                return -1;
+            }
+            headerOffset = 0;
+
+            mUploadSize.onTransfer(chunkSize, chunkSize);
+            onUploadWrite(chunkSize);
+        }
+        return writeFlushSocket(SpeedTestConst.LAST_CHUNK, headerOffset,
+                SpeedTestConst.LAST_CHUNK.length - headerOffset);
+    }
+
+    /**
+     * Get storage type of upload payload : chunked upload streams data from random data ring whatever storage type
+     * is set since its size is not known in advance.
+     *
+     * @return upload payload storage type
+     */
+    private UploadStorageType getUploadPayloadType() {
+        return (mChunkedUploadDuration != 0) ? UploadStorageType.STREAM_STORAGE :
+                mSocketInterface.getUploadStorageType();
+    }
+
+    /**
+     * Transfer a region of upload file to mSocket channel.
+     *
+     * @param fileChannel upload file channel
+     * @param position    position of region in file
+     * @param length      region length
+     * @return error status (-1 for error)
+     */
+    private int transferFileSocket(final FileChannel fileChannel, final long position, final int length) {
+
+        startWriteDeadline();
+        try {
+            long transferred = 0;
+            while (transferred < length) {
+                transferred += fileChannel.transferTo(position + transferred, length - transferred,
+                        mSocket.getChannel());
+            }
+        } catch (IOException e) {
+            return -1;
+        } finally {
+            mWriteDeadline = 0;
+        }
+        return 0;
+    }
+
+    /**
+     * write and flush a region of streamed payload to mSocket.
+     *
+     * @param ring   random data ring
+     * @param length region length
+     * @return error status (-1 for error)
+     */
+    private int writeRingSocket(final RandomRing ring, final int length) {
+
+        startWriteDeadline();
+        try {
+            ring.write(mSocket.getOutputStream(), mUploadCounter.get(), length);
+            mSocket.getOutputStream().flush();
+        } catch (IOException e) {
+            return -1;
+        } finally {
+            mWriteDeadline = 0;
+        }
+        return 0;
+    }
+
+    /**
+     * Set deadline for the pending socket write according to socket timeout (no deadline if 0).
+     */
+    private void startWriteDeadline() {
+
+        final int timeout = mSocketInterface.getSocketTimeout();
+
+        if (timeout != 0) {
+            mWriteDeadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(timeout);
+        }
+    }
+
+    /**
+     * write and flush mSocket. Socket is closed by write watchdog if data can't be written before socket timeout.
+     *
+     * @param data payload to write
+     * @return error status (-1 for error)
+     * @throws IOException mSocket io exception
+     */
+    private int writeFlushSocket(final byte[] data) throws IOException {
+        return writeFlushSocket(data, 0, data.length);
+    }
+
+    /**
+     * write and flush a region of payload to mSocket.
+     *
+     * @param data   payload to write
+     * @param offset offset of region in payload
+     * @param length region length
+     * @return error status (-1 for error)
+     * @throws IOException mSocket io exception
+     */
+    private int writeFlushSocket(final byte[] data, final int offset, final int length) throws IOException {
+
+        startWriteDeadline();
+        try {
+            mSocket.getOutputStream().write(data, offset, length);
+            mSocket.getOutputStream().flush();
+        } catch (IOException e) {
+            return -1;
+        } finally {
+            mWriteDeadline = 0;
+        }
+        return 0;
+    }
+
+    /**
+     * Called from write watchdog : close socket if current write has exceeded its deadline.
+     *
+     * @param now current time in nanoseconds
+     */
+    void checkWriteTimeout(final long now) {
+
+        final long deadline = mWriteDeadline;
+
+        if (deadline != 0 && now - deadline > 0 && mSocket != null) {
+            // timeout error is dispatched by writing thread, reading thread must not dispatch socket close error
+            mErrorDispatched = true;
+            try {
+                mSocket.close();
+            } catch (IOException e) {
+                //e.printStackTrace();
+            }
+        }
+    }
+
+    /**
+     * Schedule total test deadline, replacing deadlines of previous test.
+     */
+    private void startTestDeadline() {
+
+        clearDeadlines();
+        mDeadlineExpired = false;
+        mTestDeadlineId = mDeadlineId.incrementAndGet();
+
+        final int timeout = mSocketInterface.getTestTimeout();
+
+        if (timeout != 0) {
+            mTestDeadline = scheduleDeadline(timeout, SpeedTestConst.TEST_TIMEOUT_ERROR);
+        }
+    }
+
+    /**
+     * Schedule deadline of a connection phase, replacing deadline of previous phase.
+     *
+     * @param timeout phase timeout in milliseconds (0 for none)
+     * @param message error message dispatched if deadline expires
+     */
+    void startPhaseDeadline(final int timeout, final String message) {
+
+        clearPhaseDeadline();
+
+        if (timeout != 0) {
+            mPhaseDeadline = scheduleDeadline(timeout, message);
+        }
+    }
+
+    /**
+     * Schedule first byte deadline once connected for a download.
+     *
+     * @param download define if it is a download or upload test
+     */
+    private void startFirstByteDeadline(final boolean download) {
+        if (download) {
+            startPhaseDeadline(mSocketInterface.getFirstByteTimeout(), SpeedTestConst.FIRST_BYTE_TIMEOUT_ERROR);
         }
-
-        mErrorDispatched = false;
     }
 
-    private void finishTask() {
-        closeSocket();
-        if (!mRepeatWrapper.isRepeatDownload()) {
-            closeExecutors();
+    /**
+     * Cancel deadline of current connection phase.
+     */
+    void clearPhaseDeadline() {
+
+        final ScheduledFuture<?> deadline = mPhaseDeadline;
+
+        if (deadline != null) {
+            mPhaseDeadline = null;
+            deadline.cancel(false);
         }
     }
 
     /**
-     * start download reading loop + monitor progress.
+     * Cancel all deadlines of current test, claiming the end of the test unless a deadline has expired first.
      *
-     * @throws IOException mSocket io exception
+     * @return false if test has been stopped by a deadline : completion must not be dispatched
      */
-    private void downloadReadingLoop() throws IOException {
-
-        final byte[] buffer = new byte[SpeedTestConst.READ_BUFFER_SIZE];
-        int read;
-
-        while ((read = mSocket.getInputStream().read(buffer)) != -1) {
+    private boolean clearDeadlines() {
 
-            mDownloadTemporaryPacketSize += read;
-            mDlComputationTempPacketSize += read;
+        final int deadlineId = mTestDeadlineId;
 
-            if (mRepeatWrapper.isRepeatDownload()) {
-                mRepeatWrapper.updateTempPacketSize(read);
-            }
+        mDeadlineId.compareAndSet(deadlineId, deadlineId + 2);
+        clearPhaseDeadline();
 
-            if (!mReportInterval) {
-                final SpeedTestReport report = getReport(SpeedTestMode.DOWNLOAD);
-                for (int i = 0; i < mListenerList.size(); i++) {
-                    mListenerList.get(i).onProgress(report.getProgressPercent(), report);
-                }
-            }
+        final ScheduledFuture<?> deadline = mTestDeadline;
 
-            if (mDownloadTemporaryPacketSize == mDownloadPckSize.longValueExact()) {
-                break;
-            }
+        if (deadline != null) {
+            mTestDeadline = null;
+            deadline.cancel(false);
         }
+        return mDeadlineId.get() != deadlineId + 1;
     }
 
     /**
-     * start upload writing task.
+     * Check if current test has already been completed, stopped or ended by a deadline.
      *
-     * @param hostname hostname to reach
-     * @param size     upload packet size
+     * @return true if test has ended
      */
-    private void startSocketUploadTask(final String hostname, final int size) {
-
-        try {
-            final HttpFrame frame = new HttpFrame();
-
-            final HttpStates httpStates = frame.parseHttp(mSocket.getInputStream());
-
-            if (httpStates == HttpStates.HTTP_FRAME_OK) {
+    private boolean isTestEnded() {
+        return mDeadlineId.get() != mTestDeadlineId;
+    }
 
-                if (frame.getStatusCode() == SpeedTestConst.HTTP_OK && frame.getReasonPhrase().equalsIgnoreCase("ok")) {
+    /**
+     * Schedule a deadline on shared watchdog timer.
+     *
+     * @param timeout timeout in milliseconds
+     * @param message error message dispatched if deadline expires
+     * @return scheduled deadline
+     */
+    private ScheduledFuture<?> scheduleDeadline(final int timeout, final String message) {
 
-                    mTimeEnd = System.nanoTime();
-                    mReportInterval = false;
+        final int deadlineId = mTestDeadlineId;
 
-                    finishTask();
+        return SocketWatchdog.schedule(new Runnable() {
+            @Override
+            public void run() {
+                onDeadline(deadlineId, message);
+            }
+        }, timeout);
+    }
 
-                    final SpeedTestReport report = getReport(SpeedTestMode.UPLOAD);
+    /**
+     * Called from watchdog timer when a deadline has expired : connection is closed and a socket timeout error is
+     * dispatched instead of the error caused by socket closure.
+     *
+     * @param deadlineId identifier of expired deadline
+     * @param message    error message
+     */
+    private void onDeadline(final int deadlineId, final String message) {
 
-                    for (int i = 0; i < mListenerList.size(); i++) {
-                        mListenerList.get(i).onCompletion(report);
-                    }
+        if (!mDeadlineId.compareAndSet(deadlineId, deadlineId + 1)) {
+            // test has completed or has been stopped before deadline
+            return;
+        }
+        mDeadlineExpired = true;
+        mErrorDispatched = true;
+        mReportInterval = false;
+        mTimeEnd = System.nanoTime();
 
-                } else if ((frame.getStatusCode() == 301 ||
-                        frame.getStatusCode() == 302 ||
-                        frame.getStatusCode() == 307) &&
-                        frame.getHeaders().containsKey("location")) {
-                    // redirect to Location
-                    final String location = frame.getHeaders().get("location");
+        closeSocket();
 
-                    if (location.charAt(0) == '/') {
-                        mReportInterval = false;
-                        finishTask();
-                        startUploadRequest("http://" + hostname + location, size);
-                    } else if (location.startsWith("https")) {
-                        //unsupported protocol
-                        mReportInterval = false;
-                        for (int i = 0; i < mListenerList.size(); i++) {
-                            mListenerList.get(i).onError(SpeedTestError.UNSUPPORTED_PROTOCOL, "unsupported protocol :" +
-                                    " " +
-                                    "https");
-                        }
-                        finishTask();
-                    } else {
-                        mReportInterval = false;
-                        finishTask();
-                        startUploadRequest(location, size);
-                    }
-                } else {
-                    mReportInterval = false;
+        final FTPClient ftpClient = mFtpClient;
 
-                    for (int i = 0; i < mListenerList.size(); i++) {
-                        mListenerList.get(i).onError(SpeedTestError.INVALID_HTTP_RESPONSE, "Error status code" +
-                                " " + frame.getStatusCode());
-                    }
-                    finishTask();
-                }
-                return;
-            }
-            closeSocket();
-            if (!mErrorDispatched && !mForceCloseSocket) {
-                for (int i = 0; i < mListenerList.size(); i++) {
-                    mListenerList.get(i).onError(SpeedTestError.SOCKET_ERROR, "mSocket error");
-                }
-            }
-            closeExecutors();
-        } catch (IOException | InterruptedException e) {
-            mReportInterval = false;
-            if (!mErrorDispatched) {
-                catchError(e.getMessage());
+        if (ftpClient != null) {
+            try {
+                ftpClient.disconnect();
+            } catch (IOException e) {
+                //e.printStackTrace();
             }
         }
-        mErrorDispatched = false;
+        closeExecutors();
+        SpeedTestUtils.dispatchSocketTimeout(mForceCloseSocket, mListenerList, message);
     }
 
+    /**
+     * Check if current HTTP transfer is to be performed by NIO engine (HTTPS is not supported by NIO engine).
+     *
+     * @return true if NIO engine is used
+     */
+    private boolean isNioTransfer() {
+        return mSocketInterface.getTransferEngine() == TransferEngine.NIO && "http".equals(mProtocol);
+    }
 
     /**
-     * Write download request to server host.
+     * Start a NIO transfer, releasing the previous one if any.
      *
-     * @param data HTTP request to send to initiate download process
+     * @param transfer NIO transfer
      */
-    private void writeDownload(final byte[] data) {
+    private void startNioTransfer(final NioTransfer transfer) {
+        if (mNioTransfer != null) {
+            mNioTransfer.close();
+        }
+        mNioTransfer = transfer;
+        transfer.start();
+    }
 
-        connectAndExecuteTask(new Runnable() {
-            @Override
-            public void run() {
+    /**
+     * Build size of read buffer or upload chunk for next transfer, adapted to throughput in adaptive buffer size mode.
+     *
+     * @param size initial size in octet
+     * @return read buffer or upload chunk size
+     */
+    private AdaptiveSize newBufferSize(final int size) {
+        if (mSocketInterface.isAdaptiveBufferSize()) {
+            return new AdaptiveSize(size, mSocketInterface.getMinBufferSize(), mSocketInterface.getMaxBufferSize());
+        }
+        return new AdaptiveSize(size);
+    }
 
-                if (mSocket != null && !mSocket.isClosed()) {
+    /**
+     * Get size of read buffer for current download.
+     *
+     * @return read buffer size
+     */
+    AdaptiveSize getReadSize() {
+        return mReadSize;
+    }
 
-                    try {
-                        if ((mSocket.getOutputStream() != null) && (writeFlushSocket(data) != 0)) {
-                            throw new SocketTimeoutException();
-                        }
-                    } catch (SocketTimeoutException e) {
-                        SpeedTestUtils.dispatchSocketTimeout(mForceCloseSocket, mListenerList, SpeedTestConst
-                                .SOCKET_WRITE_ERROR);
-                        closeSocket();
-                        closeExecutors();
-                    } catch (IOException e) {
-                        SpeedTestUtils.dispatchError(mSocketInterface, mForceCloseSocket,
-                                mListenerList, e.getMessage());
-                        closeExecutors();
-                    }
-                }
-            }
-        }, true, 0);
+    /**
+     * Get speed test socket holding transfer options.
+     *
+     * @return speed test socket interface
+     */
+    ISpeedTestSocket getSocketInterface() {
+        return mSocketInterface;
     }
 
     /**
-     * logout & disconnect FTP client.
+     * Get upload payload from cache and start a NIO upload transfer.
      *
-     * @param ftpclient ftp client
+     * @param head          HTTP request headers
+     * @param fileSizeOctet file size to upload in octet
      */
-    private void disconnectFtp(final FTPClient ftpclient) {
+    private void startNioUpload(final byte[] head, final long fileSizeOctet) {
+
+        UploadPayload payload = null;
+        RandomAccessFile uploadFile = null;
 
         try {
-            if (ftpclient.isConnected()) {
-                ftpclient.logout();
-                ftpclient.disconnect();
-            }
-        } catch (IOException ex) {
-            //ex.printStackTrace();
+            payload = UploadPayloadCache.acquire(getUploadPayloadType(), fileSizeOctet);
+            uploadFile = payload.openFile();
+            startNioTransfer(new NioTransfer(this, mAddress, head, mHostname, payload, uploadFile, fileSizeOctet,
+                    mUploadSize, mChunkedUploadDeadline, mSocketInterface.getSocketTimeout()));
+        } catch (IOException e) {
+            mReportInterval = false;
+            releasePayload(payload, uploadFile);
+            SpeedTestUtils.dispatchError(mSocketInterface, mForceCloseSocket, mListenerList, e.getMessage());
         }
     }
 
+    /**
+     * Close upload file and give payload back to cache.
+     *
+     * @param payload    upload payload (may be null)
+     * @param uploadFile file opened from payload (may be null)
+     */
+    private void releasePayload(final UploadPayload payload, final RandomAccessFile uploadFile) {
+        if (uploadFile != null) {
+            try {
+                uploadFile.close();
+            } catch (IOException e) {
+                //e.printStackTrace();
+            }
+        }
+        if (payload != null) {
+            UploadPayloadCache.release(payload);
+        }
+    }
 
     /**
-     * write and flush mSocket.
+     * Called from NIO event loop when transfer has failed.
      *
-     * @param data payload to write
-     * @return error status (-1 for error)
-     * @throws IOException mSocket io exception
+     * @param error        error enum
+     * @param errorMessage error message
      */
-    private int writeFlushSocket(final byte[] data) throws IOException {
+    void onTransferError(final SpeedTestError error, final String errorMessage) {
+        if (mDeadlineExpired) {
+            return;
+        }
+        mReportInterval = false;
+        mTimeEnd = System.nanoTime();
+        closeExecutors();
+        SpeedTestUtils.dispatchError(mSocketInterface, mForceCloseSocket, mListenerList, error, errorMessage);
+    }
 
-        final ExecutorService executor = Executors.newSingleThreadExecutor();
-
-        @SuppressWarnings("unchecked") final Future<Integer> future = executor.submit(new Callable() {
-
-            /**
-             * execute sequential write/flush task.
-             *
-             * @return status
-             */
-            public Integer call() {
-                try {
-                    mSocket.getOutputStream().write(data);
-                    mSocket.getOutputStream().flush();
-                } catch (IOException e) {
-                    return -1;
-                }
-                return 0;
-            }
-        });
-        int status;
-        try {
-            status = future.get(mSocketInterface.getSocketTimeout(), TimeUnit.MILLISECONDS);
-        } catch (TimeoutException e) {
-            future.cancel(true);
-            status = -1;
-        } catch (InterruptedException | ExecutionException e) {
-            status = -1;
+    /**
+     * Called from NIO event loop when no data could be read/written before socket timeout.
+     *
+     * @param errorMessage error message
+     */
+    void onTransferTimeout(final String errorMessage) {
+        if (mDeadlineExpired) {
+            return;
         }
-        executor.shutdownNow();
-        return status;
+        mReportInterval = false;
+        mTimeEnd = System.nanoTime();
+        closeExecutors();
+        SpeedTestUtils.dispatchSocketTimeout(mForceCloseSocket, mListenerList, errorMessage);
     }
 
     /**
@@ -919,6 +2207,9 @@ public class SpeedTestTask {
      * @param errorMessage error message from Exception
      */
     private void catchError(final String errorMessage) {
+        if (mDeadlineExpired) {
+            return;
+        }
         mTimeEnd = System.nanoTime();
         closeSocket();
         closeExecutors();
@@ -934,16 +2225,16 @@ public class SpeedTestTask {
      */
     public SpeedTestReport getReport(final SpeedTestMode mode) {
 
-        BigDecimal temporaryPacketSize = BigDecimal.ZERO;
-        BigDecimal totalPacketSize = BigDecimal.ZERO;
+        long temporaryPacketSize = 0;
+        long totalPacketSize = 0;
 
         switch (mode) {
             case DOWNLOAD:
-                temporaryPacketSize = new BigDecimal(mDownloadTemporaryPacketSize);
+                temporaryPacketSize = mDownloadCounter.get();
                 totalPacketSize = mDownloadPckSize;
                 break;
             case UPLOAD:
-                temporaryPacketSize = new BigDecimal(mUploadTempFileSize);
+                temporaryPacketSize = mUploadCounter.get();
                 totalPacketSize = mUploadFileSize;
                 break;
             default:
@@ -957,59 +2248,40 @@ public class SpeedTestTask {
             currentTime = mTimeEnd;
         }
 
-        BigDecimal transferRateOps = BigDecimal.ZERO;
+        double transferRateOps = 0;
 
-        final int scale = mSocketInterface.getDefaultScale();
-        final RoundingMode roundingMode = mSocketInterface.getDefaultRoundingMode();
+        final TransferCounter counter = (mode == SpeedTestMode.DOWNLOAD) ? mDownloadCounter : mUploadCounter;
+        final TransferCounter.Sample interval;
 
         switch (mSocketInterface.getComputationMethod()) {
-            case MEDIAN_ALL_TIME:
-                BigDecimal dividerAllTime = new BigDecimal(currentTime - mTimeComputeStart)
-                        .divide(SpeedTestConst.NANO_DIVIDER, scale, roundingMode);
-
-                if (shallCalculateTransferRate(currentTime) && dividerAllTime.compareTo(BigDecimal.ZERO) != 0) {
-                    transferRateOps = temporaryPacketSize.divide(dividerAllTime, scale, roundingMode);
-                }
-                break;
             case MEDIAN_INTERVAL:
-
-                final BigDecimal tempPacket = (mode == SpeedTestMode.DOWNLOAD) ? new BigDecimal
-                        (mDlComputationTempPacketSize) : new BigDecimal(mUlComputationTempFileSize);
-
-                BigDecimal dividerMedian = new BigDecimal(currentTime - mTimeComputeStart)
-                        .divide(SpeedTestConst.NANO_DIVIDER, scale, roundingMode);
-
-                if (shallCalculateTransferRate(currentTime) && dividerMedian.compareTo(BigDecimal.ZERO) != 0) {
-                    transferRateOps = tempPacket.divide(dividerMedian, scale, roundingMode);
-                }
-                // reset those values for the next computation
-                mDlComputationTempPacketSize = 0;
-                mUlComputationTempFileSize = 0;
-                mTimeComputeStart = System.nanoTime();
+                // next computation starts at this report
+                interval = counter.takeInterval(currentTime);
                 break;
             default:
+                interval = counter.getInterval(currentTime);
                 break;
         }
 
-        final BigDecimal transferRateBitps = transferRateOps.multiply(SpeedTestConst.BIT_MULTIPLIER);
-
-        BigDecimal percent = BigDecimal.ZERO;
+        if (shallCalculateTransferRate(currentTime)) {
+            transferRateOps = SpeedTestUtils.getTransferRate(interval.mOctets, interval.mTime);
+        }
 
-        SpeedTestReport report;
+        final int scale = mSocketInterface.getDefaultScale();
+        final RoundingMode roundingMode = mSocketInterface.getDefaultRoundingMode();
 
         if (mRepeatWrapper.isRepeat()) {
-            report = mRepeatWrapper.getRepeatReport(scale, roundingMode, mode, currentTime, transferRateOps);
-        } else {
-            if (totalPacketSize.compareTo(BigDecimal.ZERO) != 0) {
-                percent = temporaryPacketSize.multiply(SpeedTestConst.PERCENT_MAX).divide(totalPacketSize, scale,
-                        roundingMode);
-            }
-            report = new SpeedTestReport(mode, percent.floatValue(),
-                    mTimeStart, currentTime, temporaryPacketSize.longValueExact(), totalPacketSize.longValueExact(),
-                    transferRateOps, transferRateBitps,
-                    1);
+            return mRepeatWrapper.getRepeatReport(scale, roundingMode, mode, currentTime, transferRateOps);
+        }
+        final SpeedTestReport report = new SpeedTestReport(mode,
+                SpeedTestUtils.getProgressPercent(temporaryPacketSize, totalPacketSize),
+                mTimeStart, currentTime, temporaryPacketSize, totalPacketSize,
+                transferRateOps, scale, roundingMode, 1).withResolutionTime(mResolutionTime);
+
+        if (mode == SpeedTestMode.DOWNLOAD) {
+            return report.withResponseReports(new ArrayList<>(mResponseReports)).withBufferSize(mReadSize.getSize());
         }
-        return report;
+        return report.withBufferSize(mUploadSize.getSize());
     }
 
     /**
@@ -1085,9 +2357,12 @@ public class SpeedTestTask {
                 public void run() {
 
                     final FTPClient ftpclient = new FTPClient();
+                    mFtpClient = ftpclient;
 
                     try {
-                        ftpclient.connect(url.getHost(), url.getPort() != -1 ? url.getPort() : 21);
+                        ftpclient.setConnectTimeout(mSocketInterface.getConnectTimeout());
+                        ftpclient.connect(resolve(url.getHost()), url.getPort() != -1 ? url.getPort() : 21);
+                        startFirstByteDeadline(true);
                         ftpclient.login(user, password);
                         if (mSocketInterface.getFtpMode() == FtpMode.PASSIVE) {
                             ftpclient.enterLocalPassiveMode();
@@ -1096,11 +2371,11 @@ public class SpeedTestTask {
                         }
                         ftpclient.setFileType(FTP.BINARY_FILE_TYPE);
 
-                        mDownloadTemporaryPacketSize = 0;
-                        mDlComputationTempPacketSize = 0;
+                        mDownloadCounter.reset();
 
                         mTimeStart = System.nanoTime();
-                        mTimeComputeStart = System.nanoTime();
+                        mDownloadCounter.startInterval(mTimeStart);
+                        mDownloadProgress.reset(mTimeStart);
 
                         mTimeEnd = 0;
 
@@ -1109,44 +2384,40 @@ public class SpeedTestTask {
                             mRepeatWrapper.setStartDate(mTimeStart);
                         }
 
-                        mDownloadPckSize = new BigDecimal(getFileSize(ftpclient, url.getPath()));
+                        mDownloadPckSize = getFileSize(ftpclient, url.getPath());
 
                         if (mRepeatWrapper.isRepeatDownload()) {
                             mRepeatWrapper.updatePacketSize(mDownloadPckSize);
                         }
 
                         mFtpInputstream = ftpclient.retrieveFileStream(url.getPath());
+                        clearPhaseDeadline();
 
                         if (mFtpInputstream != null) {
 
-                            final byte[] bytesArray = new byte[SpeedTestConst.READ_BUFFER_SIZE];
-
-                            int read;
-                            while ((read = mFtpInputstream.read(bytesArray)) != -1) {
-
-                                mDownloadTemporaryPacketSize += read;
-                                mDlComputationTempPacketSize += read;
-
-                                if (mRepeatWrapper.isRepeatDownload()) {
-                                    mRepeatWrapper.updateTempPacketSize(read);
-                                }
-
-                                if (!mReportInterval) {
-                                    final SpeedTestReport report = getReport(SpeedTestMode.DOWNLOAD);
+                            ByteBuffer buffer = ReadBufferPool.acquire(false, mReadSize.getSize());
 
-                                    for (int i = 0; i < mListenerList.size(); i++) {
-                                        mListenerList.get(i).onProgress(report.getProgressPercent(), report);
+                            try {
+                                int read;
+                                while ((read = mFtpInputstream.read(buffer.array(), 0, mReadSize.getSize())) != -1) {
+                                    mReadSize.onTransfer(read, mReadSize.getSize());
+                                    if (onDownloadRead(read)) {
+                                        break;
                                     }
+                                    buffer = ReadBufferPool.fit(buffer, mReadSize.getSize());
                                 }
-
-                                if (mDownloadTemporaryPacketSize == mDownloadPckSize.longValueExact()) {
-                                    break;
-                                }
+                            } finally {
+                                ReadBufferPool.release(buffer);
                             }
 
                             mFtpInputstream.close();
 
                             mTimeEnd = System.nanoTime();
+                            if (!clearDeadlines()) {
+                                return;
+                            }
+
+                            flushDownloadProgress(false);
 
                             mReportInterval = false;
                             final SpeedTestReport report = getReport(SpeedTestMode.DOWNLOAD);
@@ -1157,6 +2428,7 @@ public class SpeedTestTask {
 
                         } else {
                             mReportInterval = false;
+                            clearDeadlines();
                             SpeedTestUtils.dispatchError(mSocketInterface, mForceCloseSocket,
                                     mListenerList, "cant create stream " +
                                             "from uri " + uri + " with reply code : " + ftpclient.getReplyCode());
@@ -1172,6 +2444,7 @@ public class SpeedTestTask {
                         catchError(e.getMessage());
                     } finally {
                         mErrorDispatched = false;
+                        mFtpClient = null;
                         disconnectFtp(ftpclient);
                     }
                 }
@@ -1192,11 +2465,11 @@ public class SpeedTestTask {
      */
     public void startFtpUpload(
             final String uri,
-            final int fileSizeOctet) {
+            final long fileSizeOctet) {
 
         mSpeedTestMode = SpeedTestMode.UPLOAD;
 
-        mUploadFileSize = new BigDecimal(fileSizeOctet);
+        mUploadFileSize = fileSizeOctet;
         mForceCloseSocket = false;
         mErrorDispatched = false;
 
@@ -1223,12 +2496,15 @@ public class SpeedTestTask {
                 public void run() {
 
                     final FTPClient ftpClient = new FTPClient();
-                    final RandomGen randomGen = new RandomGen();
 
+                    UploadPayload payload = null;
                     RandomAccessFile uploadFile = null;
 
+                    mFtpClient = ftpClient;
+
                     try {
-                        ftpClient.connect(url.getHost(), url.getPort() != -1 ? url.getPort() : 21);
+                        ftpClient.setConnectTimeout(mSocketInterface.getConnectTimeout());
+                        ftpClient.connect(resolve(url.getHost()), url.getPort() != -1 ? url.getPort() : 21);
                         ftpClient.login(finalUser, finalPwd);
                         if (mSocketInterface.getFtpMode() == FtpMode.PASSIVE) {
                             ftpClient.enterLocalPassiveMode();
@@ -1237,40 +2513,17 @@ public class SpeedTestTask {
                         }
                         ftpClient.setFileType(FTP.BINARY_FILE_TYPE);
 
-                        byte[] fileContent = new byte[]{};
-
-                        if (mSocketInterface.getUploadStorageType() == UploadStorageType.RAM_STORAGE) {
-                            /* generate a file with size of fileSizeOctet octet */
-                            fileContent = randomGen.generateRandomArray(fileSizeOctet);
-                        } else {
-                            uploadFile = randomGen.generateRandomFile(fileSizeOctet);
-                            uploadFile.seek(0);
-                        }
+                        payload = UploadPayloadCache.acquire(mSocketInterface.getUploadStorageType(),
+                                fileSizeOctet);
+                        uploadFile = payload.openFile();
 
                         mFtpOutputstream = ftpClient.storeFileStream(url.getPath());
 
                         if (mFtpOutputstream != null) {
 
-                            mUploadTempFileSize = 0;
-                            mUlComputationTempFileSize = 0;
-
-                            final int uploadChunkSize = mSocketInterface.getUploadChunkSize();
-
-                            final int step = fileSizeOctet / uploadChunkSize;
-                            final int remain = fileSizeOctet % uploadChunkSize;
-
-                            mTimeStart = System.nanoTime();
-                            mTimeComputeStart = System.nanoTime();
-                            mTimeEnd = 0;
-
-                            if (mRepeatWrapper.isFirstUpload()) {
-                                mRepeatWrapper.setFirstUploadRepeat(false);
-                                mRepeatWrapper.setStartDate(mTimeStart);
-                            }
+                            mUploadCounter.reset();
 
-                            if (mRepeatWrapper.isRepeatUpload()) {
-                                mRepeatWrapper.updatePacketSize(mUploadFileSize);
-                            }
+                            onUploadStart();
 
                             if (mForceCloseSocket) {
                                 mFtpOutputstream.close();
@@ -1280,63 +2533,29 @@ public class SpeedTestTask {
                                 }
                                 SpeedTestUtils.dispatchError(mSocketInterface, mForceCloseSocket, mListenerList, "");
                             } else {
-                                for (int i = 0; i < step; i++) {
-
-
-                                    final byte[] chunk = SpeedTestUtils.readUploadData(mSocketInterface
-                                                    .getUploadStorageType(),
-                                            fileContent,
-                                            uploadFile,
-                                            mUploadTempFileSize,
-                                            uploadChunkSize);
-
-                                    mFtpOutputstream.write(chunk, 0, uploadChunkSize);
-
-                                    mUploadTempFileSize += uploadChunkSize;
-                                    mUlComputationTempFileSize += uploadChunkSize;
-
-                                    if (mRepeatWrapper.isRepeatUpload()) {
-                                        mRepeatWrapper.updateTempPacketSize(uploadChunkSize);
-                                    }
-
-                                    if (!mReportInterval) {
+                                long written = 0;
 
-                                        final SpeedTestReport report = getReport(SpeedTestMode.UPLOAD);
+                                while (written < fileSizeOctet) {
 
-                                        for (int j = 0; j < mListenerList.size(); j++) {
-                                            mListenerList.get(j).onProgress(report.getProgressPercent(), report);
-                                        }
-                                    }
-                                }
-
-                                if (remain != 0) {
-
-                                    final byte[] chunk = SpeedTestUtils.readUploadData(mSocketInterface
-                                                    .getUploadStorageType(),
-                                            fileContent,
-                                            uploadFile,
-                                            mUploadTempFileSize,
-                                            remain);
+                                    final int uploadChunkSize = mUploadSize.getSize();
+                                    final int length = (int) Math.min(uploadChunkSize, fileSizeOctet - written);
 
-                                    mFtpOutputstream.write(chunk, 0, remain);
-
-                                    mUploadTempFileSize += remain;
-                                    mUlComputationTempFileSize += remain;
-
-                                    if (mRepeatWrapper.isRepeatUpload()) {
-                                        mRepeatWrapper.updateTempPacketSize(remain);
-                                    }
-                                }
-                                if (!mReportInterval) {
-                                    final SpeedTestReport report = getReport(SpeedTestMode.UPLOAD);
+                                    writeFtpChunk(payload, uploadFile, length);
 
-                                    for (int j = 0; j < mListenerList.size(); j++) {
-                                        mListenerList.get(j).onProgress(SpeedTestConst.PERCENT_MAX.floatValue(),
-                                                report);
+                                    written += length;
+                                    mUploadSize.onTransfer(length, length);
 
+                                    if (length == uploadChunkSize) {
+                                        onUploadWrite(length);
+                                    } else {
+                                        updateUploadSize(length);
                                     }
                                 }
+                                onUploadEnd();
                                 mTimeEnd = System.nanoTime();
+                                if (!clearDeadlines()) {
+                                    return;
+                                }
                                 mFtpOutputstream.close();
                                 mReportInterval = false;
 
@@ -1352,12 +2571,16 @@ public class SpeedTestTask {
                             }
                         } else {
                             mReportInterval = false;
+                            clearDeadlines();
                             SpeedTestUtils.dispatchError(mSocketInterface, mForceCloseSocket,
                                     mListenerList, "cant create stream" +
                                             " " +
                                             "from uri " + uri + " with reply code : " + ftpClient.getReplyCode());
                         }
                     } catch (SocketTimeoutException e) {
+                        if (mDeadlineExpired) {
+                            return;
+                        }
                         //e.printStackTrace();
                         mReportInterval = false;
                         mErrorDispatched = true;
@@ -1371,6 +2594,9 @@ public class SpeedTestTask {
                         closeSocket();
                         closeExecutors();
                     } catch (IOException e) {
+                        if (mDeadlineExpired) {
+                            return;
+                        }
                         //e.printStackTrace();
                         mReportInterval = false;
                         mErrorDispatched = true;
@@ -1379,15 +2605,9 @@ public class SpeedTestTask {
                         closeExecutors();
                     } finally {
                         mErrorDispatched = false;
+                        mFtpClient = null;
                         disconnectFtp(ftpClient);
-                        if (uploadFile != null) {
-                            try {
-                                uploadFile.close();
-                                randomGen.deleteFile();
-                            } catch (IOException e) {
-                                //e.printStackTrace();
-                            }
-                        }
+                        releasePayload(payload, uploadFile);
                     }
                 }
             });
@@ -1398,11 +2618,57 @@ public class SpeedTestTask {
         }
     }
 
+    /**
+     * Write next upload chunk to FTP output stream. RAM storage is written directly from upload body, stream storage
+     * from random data ring.
+     *
+     * @param payload    upload payload
+     * @param uploadFile file opened from payload for FILE storage case
+     * @param length     chunk size to write
+     * @throws IOException FTP stream io exception
+     */
+    private void writeFtpChunk(final UploadPayload payload,
+                               final RandomAccessFile uploadFile,
+                               final int length) throws IOException {
+
+        if (payload.getRing() != null) {
+            payload.getRing().write(mFtpOutputstream, mUploadCounter.get(), length);
+            return;
+        }
+
+        // upload larger than payload sends payload again from its start
+        long position = mUploadCounter.get();
+        int remain = length;
+
+        while (remain > 0) {
+            final int offset = payload.getOffset(position);
+            final int size = Math.min(remain, payload.getSize() - offset);
+
+            if (payload.getBody() != null) {
+                mFtpOutputstream.write(payload.getBody(), offset, size);
+            } else {
+                final byte[] data = SpeedTestUtils.readUploadData(mSocketInterface.getUploadStorageType(),
+                        null,
+                        uploadFile,
+                        offset,
+                        size);
+                mFtpOutputstream.write(data, 0, size);
+            }
+            position += size;
+            remain -= size;
+        }
+    }
+
     /**
      * Close socket streams and mSocket object.
      */
     public void closeSocket() {
 
+        mConnectionReusable = false;
+
+        if (mNioTransfer != null) {
+            mNioTransfer.abort();
+        }
         if (mSocket != null) {
             try {
                 mSocket.close();
@@ -1416,6 +2682,7 @@ public class SpeedTestTask {
      */
     public void forceStopTask() {
         mForceCloseSocket = true;
+        clearDeadlines();
         if (mFtpInputstream != null) {
             try {
                 mFtpInputstream.close();
@@ -1482,4 +2749,51 @@ public class SpeedTestTask {
     public SpeedTestMode getSpeedTestMode() {
         return mSpeedTestMode;
     }
+
+    /**
+     * retrieve number of octet transferred so far for the current download/upload.
+     *
+     * @param mode speed test mode requested
+     * @return number of octet transferred
+     */
+    public long getTemporaryPacketSize(final SpeedTestMode mode) {
+        return (mode == SpeedTestMode.DOWNLOAD) ? mDownloadCounter.get() : mUploadCounter.get();
+    }
+
+    /**
+     * retrieve number of octet to transfer for the current download/upload.
+     *
+     * @param mode speed test mode requested
+     * @return number of octet to transfer
+     */
+    public long getTotalPacketSize(final SpeedTestMode mode) {
+        return (mode == SpeedTestMode.DOWNLOAD) ? mDownloadPckSize : mUploadFileSize;
+    }
+
+    /**
+     * retrieve start time of the current transfer in nanoseconds.
+     *
+     * @return start time (0 if transfer has not started)
+     */
+    public long getTimeStart() {
+        return mTimeStart;
+    }
+
+    /**
+     * retrieve end time of the current transfer in nanoseconds.
+     *
+     * @return end time (0 if transfer is still running)
+     */
+    public long getTimeEnd() {
+        return mTimeEnd;
+    }
+
+    /**
+     * retrieve size of the whole resource given by last download response.
+     *
+     * @return resource size in octet (0 if unknown)
+     */
+    public long getResourceSize() {
+        return mResourceSize;
+    }
 }
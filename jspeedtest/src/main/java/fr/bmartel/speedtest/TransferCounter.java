@@ -0,0 +1,168 @@
+/*
+ * The MIT License (MIT)
+ * <p/>
+ * Copyright (c) 2016-2017 Bertrand Martel
+ * <p/>
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ * <p/>
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ * <p/>
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+package fr.bmartel.speedtest;
+
+import java.util.concurrent.atomic.AtomicLongFieldUpdater;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * Number of octet transferred by a task, shared between the transfer thread and the report thread without lock.
+ * <p/>
+ * Counter is written by a single transfer thread with ordered stores only. Transfer rate intervals are delimited by
+ * an immutable (octet, time) sample swapped atomically by the report thread so that interval reset never loses
+ * octets counted concurrently and each interval is read as a consistent pair. Counter value is padded so that it
+ * doesn't share a cache line with data written by other threads.
+ *
+ * @author Bertrand Martel
+ */
+final class TransferCounter {
+
+    /**
+     * updater of counter value.
+     */
+    private static final AtomicLongFieldUpdater<TransferCounter> OCTETS =
+            AtomicLongFieldUpdater.newUpdater(TransferCounter.class, "mOctets");
+
+    /**
+     * padding before counter value.
+     */
+    @SuppressWarnings("unused")
+    private long mPad1, mPad2, mPad3, mPad4, mPad5, mPad6, mPad7;
+
+    /**
+     * number of octet transferred.
+     */
+    private volatile long mOctets;
+
+    /**
+     * padding after counter value.
+     */
+    @SuppressWarnings("unused")
+    private long mPad9, mPad10, mPad11, mPad12, mPad13, mPad14, mPad15;
+
+    /**
+     * counter value and time at the start of current interval.
+     */
+    private final AtomicReference<Sample> mIntervalStart = new AtomicReference<>(new Sample(0, System.nanoTime()));
+
+    /**
+     * Number of octet transferred at a given time or during an interval.
+     */
+    static final class Sample {
+
+        /**
+         * number of octet.
+         */
+        final long mOctets;
+
+        /**
+         * time in nanoseconds (interval duration for an interval sample).
+         */
+        final long mTime;
+
+        /**
+         * Build sample.
+         *
+         * @param octets number of octet
+         * @param time   time in nanoseconds
+         */
+        Sample(final long octets, final long time) {
+            mOctets = octets;
+            mTime = time;
+        }
+    }
+
+    /**
+     * Reset counter to 0 and start a new interval : this must not be called concurrently with add.
+     */
+    void reset() {
+        OCTETS.set(this, 0);
+        mIntervalStart.set(new Sample(0, System.nanoTime()));
+    }
+
+    /**
+     * Add transferred octets, called by transfer thread only.
+     *
+     * @param octets number of octet transferred
+     * @return number of octet transferred since reset
+     */
+    long add(final long octets) {
+        final long value = mOctets + octets;
+        OCTETS.lazySet(this, value);
+        return value;
+    }
+
+    /**
+     * Get number of octet transferred since reset.
+     *
+     * @return number of octet
+     */
+    long get() {
+        return mOctets;
+    }
+
+    /**
+     * Start a new interval from current counter value.
+     *
+     * @param time interval start time in nanoseconds
+     */
+    void startInterval(final long time) {
+        mIntervalStart.set(new Sample(mOctets, time));
+    }
+
+    /**
+     * Get number of octet transferred and time elapsed since the start of current interval.
+     *
+     * @param time current time in nanoseconds
+     * @return interval sample
+     */
+    Sample getInterval(final long time) {
+        return getInterval(mIntervalStart.get(), new Sample(mOctets, time));
+    }
+
+    /**
+     * Get number of octet transferred and time elapsed since the start of current interval, then start a new
+     * interval at current time.
+     *
+     * @param time current time in nanoseconds
+     * @return interval sample
+     */
+    Sample takeInterval(final long time) {
+        final Sample end = new Sample(mOctets, time);
+        return getInterval(mIntervalStart.getAndSet(end), end);
+    }
+
+    /**
+     * Build interval sample between two samples.
+     *
+     * @param start sample at interval start
+     * @param end   sample at interval end
+     * @return interval sample
+     */
+    private static Sample getInterval(final Sample start, final Sample end) {
+        // counter may have been reset since interval has started
+        return new Sample(Math.max(end.mOctets - start.mOctets, 0), end.mTime - start.mTime);
+    }
+}
@@ -0,0 +1,200 @@
+/*
+ * The MIT License (MIT)
+ * <p/>
+ * Copyright (c) 2016-2017 Bertrand Martel
+ * <p/>
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ * <p/>
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ * <p/>
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package fr.bmartel.speedtest;
+
+import fr.bmartel.speedtest.model.UploadStorageType;
+import fr.bmartel.speedtest.utils.RandomGen;
+import fr.bmartel.speedtest.utils.RandomRing;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+
+/**
+ * Random data uploaded to server, shared by all uploads using the same storage type and size.
+ * <p/>
+ * Payload is read-only once generated : RAM body and STREAM ring are shared as is, FILE storage users open their own
+ * file descriptor.
+ *
+ * @author Bertrand Martel
+ */
+class UploadPayload {
+
+    /**
+     * upload storage type.
+     */
+    private final UploadStorageType mStorageType;
+
+    /**
+     * payload size in octet.
+     */
+    private final int mSize;
+
+    /**
+     * number of uploads using this payload.
+     */
+    private int mRefCount;
+
+    /**
+     * define if random data has been generated.
+     */
+    private boolean mGenerated;
+
+    /**
+     * full upload body for RAM storage case.
+     */
+    private byte[] mBody;
+
+    /**
+     * random data ring for STREAM storage case.
+     */
+    private RandomRing mRing;
+
+    /**
+     * random generator owning upload file for FILE storage case.
+     */
+    private RandomGen mFileGenerator;
+
+    /**
+     * Build payload.
+     *
+     * @param storageType upload storage type
+     * @param size        payload size in octet
+     */
+    UploadPayload(final UploadStorageType storageType, final int size) {
+        mStorageType = storageType;
+        mSize = size;
+    }
+
+    /**
+     * Generate random data if not already done.
+     *
+     * @throws IOException upload file could not be written
+     */
+    synchronized void generate() throws IOException {
+
+        if (mGenerated) {
+            return;
+        }
+
+        switch (mStorageType) {
+            case RAM_STORAGE:
+                mBody = new RandomGen().generateRandomArray(mSize);
+                break;
+            case STREAM_STORAGE:
+                mRing = new RandomRing(mSize);
+                break;
+            default:
+                final RandomGen randomGen = new RandomGen();
+                try {
+                    randomGen.generateRandomFile(mSize).close();
+                } catch (IOException e) {
+                    randomGen.deleteFile();
+                    throw e;
+                }
+                mFileGenerator = randomGen;
+                break;
+        }
+        mGenerated = true;
+    }
+
+    /**
+     * Get payload size in octet (ring size for STREAM storage).
+     *
+     * @return payload size
+     */
+    int getSize() {
+        return mSize;
+    }
+
+    /**
+     * Get offset in payload of an upload position : uploads larger than payload send it again from its start.
+     *
+     * @param position position in upload
+     * @return offset in payload
+     */
+    int getOffset(final long position) {
+        return (int) (position % mSize);
+    }
+
+    /**
+     * Get number of uploads using this payload.
+     *
+     * @return reference count
+     */
+    int getRefCount() {
+        return mRefCount;
+    }
+
+    /**
+     * Update number of uploads using this payload.
+     *
+     * @param delta reference count delta
+     */
+    void updateRefCount(final int delta) {
+        mRefCount += delta;
+    }
+
+    /**
+     * Get full upload body.
+     *
+     * @return body for RAM storage case (null otherwise)
+     */
+    synchronized byte[] getBody() {
+        return mBody;
+    }
+
+    /**
+     * Get random data ring.
+     *
+     * @return ring for STREAM storage case (null otherwise)
+     */
+    synchronized RandomRing getRing() {
+        return mRing;
+    }
+
+    /**
+     * Open upload file for reading, caller has to close it.
+     *
+     * @return upload file for FILE storage case (null otherwise)
+     * @throws IOException file could not be opened
+     */
+    synchronized RandomAccessFile openFile() throws IOException {
+        final File file = (mFileGenerator != null) ? mFileGenerator.getFile() : null;
+        return (file != null) ? new RandomAccessFile(file, "r") : null;
+    }
+
+    /**
+     * Release random data once payload is evicted from cache.
+     */
+    synchronized void delete() {
+        if (mFileGenerator != null) {
+            mFileGenerator.deleteFile();
+            mFileGenerator = null;
+        }
+        mBody = null;
+        mRing = null;
+        mGenerated = false;
+    }
+}
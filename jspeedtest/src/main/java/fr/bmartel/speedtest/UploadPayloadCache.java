@@ -0,0 +1,157 @@
+/*
+ * The MIT License (MIT)
+ * <p/>
+ * Copyright (c) 2016-2017 Bertrand Martel
+ * <p/>
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ * <p/>
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ * <p/>
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package fr.bmartel.speedtest;
+
+import fr.bmartel.speedtest.model.UploadStorageType;
+
+import java.io.IOException;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Process wide cache of upload payloads : repeated and concurrent uploads with the same storage type and size share
+ * the same random data instead of generating it for each upload.
+ * <p/>
+ * Payloads not in use are evicted in least recently used order when total size of cached payloads exceeds maximum
+ * size.
+ *
+ * @author Bertrand Martel
+ */
+public final class UploadPayloadCache {
+
+    /**
+     * cached payloads in least recently used order.
+     */
+    private static final Map<String, UploadPayload> PAYLOADS = new LinkedHashMap<>(16, 0.75f, true);
+
+    /**
+     * maximum size of cached payloads in octet.
+     */
+    private static long sMaxSize = SpeedTestConst.DEFAULT_UPLOAD_CACHE_SIZE;
+
+    /**
+     * total size of cached payloads in octet.
+     */
+    private static long sSize;
+
+    /**
+     * Utility class.
+     */
+    private UploadPayloadCache() {
+    }
+
+    /**
+     * Get a payload for an upload, generating it if not cached. Payload must be released at the end of upload.
+     *
+     * @param storageType upload storage type
+     * @param size        upload size in octet
+     * @return upload payload
+     * @throws IOException upload file could not be written
+     */
+    static UploadPayload acquire(final UploadStorageType storageType, final long size) throws IOException {
+
+        final int payloadSize = (storageType == UploadStorageType.STREAM_STORAGE) ?
+                SpeedTestConst.UPLOAD_RING_SIZE : (int) Math.min(size, SpeedTestConst.MAX_UPLOAD_PAYLOAD_SIZE);
+
+        final String key = storageType + ":" + payloadSize;
+
+        UploadPayload payload;
+
+        synchronized (UploadPayloadCache.class) {
+            payload = PAYLOADS.get(key);
+            if (payload == null) {
+                payload = new UploadPayload(storageType, payloadSize);
+                PAYLOADS.put(key, payload);
+                sSize += payloadSize;
+            }
+            payload.updateRefCount(1);
+        }
+
+        try {
+            payload.generate();
+        } catch (IOException e) {
+            release(payload);
+            throw e;
+        }
+        return payload;
+    }
+
+    /**
+     * Release a payload at the end of upload.
+     *
+     * @param payload upload payload
+     */
+    static synchronized void release(final UploadPayload payload) {
+        payload.updateRefCount(-1);
+        evict(sMaxSize);
+    }
+
+    /**
+     * Evict payloads not in use until total size is under a limit.
+     *
+     * @param maxSize size limit in octet
+     */
+    private static void evict(final long maxSize) {
+
+        final Iterator<UploadPayload> iterator = PAYLOADS.values().iterator();
+
+        while (sSize > maxSize && iterator.hasNext()) {
+            final UploadPayload payload = iterator.next();
+            if (payload.getRefCount() == 0) {
+                iterator.remove();
+                sSize -= payload.getSize();
+                payload.delete();
+            }
+        }
+    }
+
+    /**
+     * Set maximum size of cached payloads (0 to disable caching).
+     *
+     * @param maxSize maximum size in octet
+     */
+    public static synchronized void setMaxSize(final long maxSize) {
+        if (maxSize >= 0) {
+            sMaxSize = maxSize;
+            evict(sMaxSize);
+        }
+    }
+
+    /**
+     * Get maximum size of cached payloads.
+     *
+     * @return maximum size in octet
+     */
+    public static synchronized long getMaxSize() {
+        return sMaxSize;
+    }
+
+    /**
+     * Release all payloads not in use.
+     */
+    public static synchronized void clear() {
+        evict(0);
+    }
+}
@@ -28,6 +28,7 @@ import fr.bmartel.speedtest.RepeatWrapper;
 import fr.bmartel.speedtest.SpeedTestReport;
 import fr.bmartel.speedtest.model.ComputationMethod;
 import fr.bmartel.speedtest.model.FtpMode;
+import fr.bmartel.speedtest.model.TransferEngine;
 import fr.bmartel.speedtest.model.UploadStorageType;
 
 import java.math.RoundingMode;
@@ -45,7 +46,7 @@ public interface ISpeedTestSocket {
      * @param uri           uri to fetch
      * @param fileSizeOctet size of file to upload
      */
-    void startUpload(String uri, int fileSizeOctet);
+    void startUpload(String uri, long fileSizeOctet);
 
     /**
      * Start download process.
@@ -69,6 +70,21 @@ public interface ISpeedTestSocket {
      */
     void removeSpeedTestListener(ISpeedTestListener listener);
 
+    /**
+     * Add a listener used by the library itself : it is always notified from transfer threads, even if listener
+     * events are delivered from an executor.
+     *
+     * @param listener internal listener to be added
+     */
+    void addInternalListener(ISpeedTestListener listener);
+
+    /**
+     * Remove a listener used by the library itself.
+     *
+     * @param listener internal listener to be removed
+     */
+    void removeInternalListener(ISpeedTestListener listener);
+
     /**
      * close socket + shutdown thread pool.
      */
@@ -183,4 +199,130 @@ public interface ISpeedTestSocket {
      * @return ftp mode
      */
     FtpMode getFtpMode();
+
+    /**
+     * Get engine used to perform socket transfers.
+     *
+     * @return transfer engine
+     */
+    TransferEngine getTransferEngine();
+
+    /**
+     * Get persistent connection mode.
+     *
+     * @return true if HTTP connection is reused between requests
+     */
+    boolean isPersistentConnection();
+
+    /**
+     * Get number of HTTP download requests pipelined on the same connection.
+     *
+     * @return number of pipelined requests
+     */
+    int getPipelineDepth();
+
+    /**
+     * Get adaptive buffer size mode.
+     *
+     * @return true if read buffer and upload chunk sizes are adapted to throughput
+     */
+    boolean isAdaptiveBufferSize();
+
+    /**
+     * Get minimum size of read buffer and upload chunk in adaptive buffer size mode.
+     *
+     * @return minimum size in octet
+     */
+    int getMinBufferSize();
+
+    /**
+     * Get maximum size of read buffer and upload chunk in adaptive buffer size mode.
+     *
+     * @return maximum size in octet
+     */
+    int getMaxBufferSize();
+
+    /**
+     * Get socket receive buffer size.
+     *
+     * @return SO_RCVBUF value in octet (0 if system default is used)
+     */
+    int getReceiveBufferSize();
+
+    /**
+     * Get socket send buffer size.
+     *
+     * @return SO_SNDBUF value in octet (0 if system default is used)
+     */
+    int getSendBufferSize();
+
+    /**
+     * Get TCP_NODELAY option.
+     *
+     * @return true if Nagle's algorithm is disabled
+     */
+    boolean isTcpNoDelay();
+
+    /**
+     * Get socket traffic class.
+     *
+     * @return IP traffic class value (-1 if not set)
+     */
+    int getTrafficClass();
+
+    /**
+     * Get TCP quick ack option.
+     *
+     * @return true if TCP_QUICKACK is set on Linux
+     */
+    boolean isQuickAck();
+
+    /**
+     * Get target rate used to size socket buffers in auto socket buffer mode.
+     *
+     * @return target rate in bit/s (0 if auto socket buffer mode is disabled)
+     */
+    long getAutoBufferTargetRate();
+
+    /**
+     * Get connect timeout.
+     *
+     * @return max time in milliseconds to establish TCP connection (0 if not defined)
+     */
+    int getConnectTimeout();
+
+    /**
+     * Get TLS handshake timeout.
+     *
+     * @return max time in milliseconds to complete TLS handshake (0 if not defined)
+     */
+    int getHandshakeTimeout();
+
+    /**
+     * Get first byte timeout.
+     *
+     * @return max time in milliseconds between connection and download response (0 if not defined)
+     */
+    int getFirstByteTimeout();
+
+    /**
+     * Get test timeout.
+     *
+     * @return max duration in milliseconds of each download/upload (0 if not defined)
+     */
+    int getTestTimeout();
+
+    /**
+     * Get min time between two progress reports notified from the transfer thread.
+     *
+     * @return min time in milliseconds (0 if not defined)
+     */
+    int getProgressMinInterval();
+
+    /**
+     * Get min number of octet transferred between two progress reports notified from the transfer thread.
+     *
+     * @return min number of octet (0 if not defined)
+     */
+    long getProgressMinOctets();
 }
@@ -37,5 +37,9 @@ public enum UploadStorageType {
     /**
      * Upload file is stored in a temporary file that will be deleted at the end of upload.
      */
-    FILE_STORAGE
+    FILE_STORAGE,
+    /**
+     * Upload data is streamed from a small ring of random data, memory used doesn't depend on upload size.
+     */
+    STREAM_STORAGE
 }
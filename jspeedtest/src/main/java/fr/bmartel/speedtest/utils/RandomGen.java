@@ -33,21 +33,45 @@ import java.util.Random;
 
 /**
  * Generate Random byte array, file for randomly generated uploaded file.
+ * <p/>
+ * Data is generated with a xorshift64* generator written straight into the destination array : it is not suitable
+ * for cryptographic use but it is incompressible and much faster than java.util.Random.
  *
  * @author Bertrand Martel
  */
 public class RandomGen {
 
     /**
-     * Random object.
+     * xorshift64* multiplier.
+     */
+    private static final long MULTIPLIER = 2685821657736338717L;
+
+    /**
+     * source of seed for each generator.
      */
-    private final Random mRandom = new Random();
+    private static final Random SEED_GENERATOR = new Random();
+
+    /**
+     * generator state (never 0).
+     */
+    private long mState;
 
     /**
      * Random generated file.
      */
     private File mFile;
 
+    /**
+     * Build random generator.
+     */
+    public RandomGen() {
+        long seed;
+        synchronized (SEED_GENERATOR) {
+            seed = SEED_GENERATOR.nextLong();
+        }
+        mState = (seed != 0) ? seed : MULTIPLIER;
+    }
+
     /**
      * Generate random byte array.
      *
@@ -57,22 +81,47 @@ public class RandomGen {
     public byte[] generateRandomArray(final int length) {
 
         final byte[] buffer = new byte[length];
+        nextBytes(buffer, 0, length);
+        return buffer;
+    }
 
-        final int iter = length / SpeedTestConst.UPLOAD_FILE_WRITE_CHUNK;
-        final int remain = length % SpeedTestConst.UPLOAD_FILE_WRITE_CHUNK;
-
-        for (int i = 0; i < iter; i++) {
-            final byte[] random = new byte[SpeedTestConst.UPLOAD_FILE_WRITE_CHUNK];
-            mRandom.nextBytes(random);
-            System.arraycopy(random, 0, buffer, i * SpeedTestConst.UPLOAD_FILE_WRITE_CHUNK, SpeedTestConst
-                    .UPLOAD_FILE_WRITE_CHUNK);
-        }
-        if (remain > 0) {
-            final byte[] random = new byte[remain];
-            mRandom.nextBytes(random);
-            System.arraycopy(random, 0, buffer, iter * SpeedTestConst.UPLOAD_FILE_WRITE_CHUNK, remain);
+    /**
+     * Fill a region of byte array with random data.
+     *
+     * @param buffer destination array
+     * @param offset offset of region in array
+     * @param length region length
+     */
+    public void nextBytes(final byte[] buffer, final int offset, final int length) {
+
+        long state = mState;
+        final int end = offset + length;
+        int index = offset;
+
+        while (index < end) {
+            state ^= state >>> 12;
+            state ^= state << 25;
+            state ^= state >>> 27;
+            long random = state * MULTIPLIER;
+
+            if (end - index >= 8) {
+                buffer[index] = (byte) random;
+                buffer[index + 1] = (byte) (random >>> 8);
+                buffer[index + 2] = (byte) (random >>> 16);
+                buffer[index + 3] = (byte) (random >>> 24);
+                buffer[index + 4] = (byte) (random >>> 32);
+                buffer[index + 5] = (byte) (random >>> 40);
+                buffer[index + 6] = (byte) (random >>> 48);
+                buffer[index + 7] = (byte) (random >>> 56);
+                index += 8;
+            } else {
+                while (index < end) {
+                    buffer[index++] = (byte) random;
+                    random >>>= 8;
+                }
+            }
         }
-        return buffer;
+        mState = state;
     }
 
     /**
@@ -92,20 +141,29 @@ public class RandomGen {
         final int iter = length / SpeedTestConst.UPLOAD_FILE_WRITE_CHUNK;
         final int remain = length % SpeedTestConst.UPLOAD_FILE_WRITE_CHUNK;
 
+        final byte[] random = new byte[SpeedTestConst.UPLOAD_FILE_WRITE_CHUNK];
+
         for (int i = 0; i < iter; i++) {
-            final byte[] random = new byte[SpeedTestConst.UPLOAD_FILE_WRITE_CHUNK];
-            mRandom.nextBytes(random);
+            nextBytes(random, 0, SpeedTestConst.UPLOAD_FILE_WRITE_CHUNK);
             randomFile.write(random);
         }
         if (remain > 0) {
-            final byte[] random = new byte[remain];
-            mRandom.nextBytes(random);
-            randomFile.write(random);
+            nextBytes(random, 0, remain);
+            randomFile.write(random, 0, remain);
         }
 
         return randomFile;
     }
 
+    /**
+     * Get last generated random file.
+     *
+     * @return random file (null if no file was generated)
+     */
+    public File getFile() {
+        return mFile;
+    }
+
     /**
      * Delete random file.
      */
@@ -0,0 +1,92 @@
+/*
+ * The MIT License (MIT)
+ * <p/>
+ * Copyright (c) 2016-2017 Bertrand Martel
+ * <p/>
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ * <p/>
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ * <p/>
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+package fr.bmartel.speedtest.utils;
+
+import java.io.IOException;
+import java.io.OutputStream;
+
+/**
+ * Ring of random data used to stream an upload payload of any size with constant memory.
+ * <p/>
+ * Data at a given payload position is read from the ring at (position modulo ring size).
+ *
+ * @author Bertrand Martel
+ */
+public class RandomRing {
+
+    /**
+     * random data.
+     */
+    private final byte[] mData;
+
+    /**
+     * Generate a ring of random data.
+     *
+     * @param size ring size in octet
+     */
+    public RandomRing(final int size) {
+        mData = new RandomGen().generateRandomArray(size);
+    }
+
+    /**
+     * Get random data backing the ring.
+     *
+     * @return random data
+     */
+    public byte[] getData() {
+        return mData;
+    }
+
+    /**
+     * Get offset in ring data of a payload position.
+     *
+     * @param position position in payload
+     * @return offset in ring data
+     */
+    public int getOffset(final long position) {
+        return (int) (position % mData.length);
+    }
+
+    /**
+     * Write a region of payload to output stream.
+     *
+     * @param outputStream output stream
+     * @param position     position of region in payload
+     * @param length       region length
+     * @throws IOException output stream io exception
+     */
+    public void write(final OutputStream outputStream, final long position, final int length) throws IOException {
+
+        int offset = getOffset(position);
+        int remain = length;
+
+        while (remain > 0) {
+            final int size = Math.min(remain, mData.length - offset);
+            outputStream.write(mData, offset, size);
+            remain -= size;
+            offset = 0;
+        }
+    }
+}
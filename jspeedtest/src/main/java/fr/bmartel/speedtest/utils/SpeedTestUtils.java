@@ -51,6 +51,28 @@ public class SpeedTestUtils {
      */
     private static SecureRandom random = new SecureRandom();
 
+    /**
+     * Compute a transfer rate.
+     *
+     * @param size        number of octet transferred
+     * @param elapsedTime time spent transferring in nanoseconds
+     * @return transfer rate in octet/s (0 if no time has elapsed)
+     */
+    public static double getTransferRate(final long size, final long elapsedTime) {
+        return (elapsedTime > 0) ? size * SpeedTestConst.NANOS_PER_SECOND / elapsedTime : 0;
+    }
+
+    /**
+     * Compute transfer progress.
+     *
+     * @param size      number of octet transferred
+     * @param totalSize total number of octet to transfer
+     * @return progress in percent (0 if total size is unknown)
+     */
+    public static float getProgressPercent(final long size, final long totalSize) {
+        return (totalSize != 0) ? (float) (size * SpeedTestConst.PERCENT_MAX_VALUE / totalSize) : 0;
+    }
+
     /**
      * Generate a random file name for file FTP upload.
      *
@@ -190,6 +212,26 @@ public class SpeedTestUtils {
         }
     }
 
+    /**
+     * Get Content-Length of a HTTP frame as a 64-bit value since HttpFrame parses it as an int.
+     *
+     * @param httpFrame http frame
+     * @return content length in octet (0 if not set, -1 if invalid)
+     */
+    public static long getContentLength(final HttpFrame httpFrame) {
+
+        final String contentLength = httpFrame.getHeaders().get("content-length");
+
+        if (contentLength == null) {
+            return 0;
+        }
+        try {
+            return Long.parseLong(contentLength.trim());
+        } catch (NumberFormatException e) {
+            return -1;
+        }
+    }
+
     /**
      * check for http content length error.
      *
@@ -202,11 +244,21 @@ public class SpeedTestUtils {
             final List<ISpeedTestListener> listenerList,
             final HttpFrame httpFrame) {
 
-        if (httpFrame.getContentLength() <= 0 && !forceCloseSocket) {
+        if (getContentLength(httpFrame) <= 0 && !forceCloseSocket) {
             for (int i = 0; i < listenerList.size(); i++) {
                 listenerList.get(i).onError(SpeedTestError.INVALID_HTTP_RESPONSE, "Error content length " +
                         "is inconsistent");
             }
         }
     }
+
+    /**
+     * Get chunk size line of chunked transfer encoding, preceded by the end of previous chunk data.
+     *
+     * @param chunkSize chunk size in octet
+     * @return end of previous chunk data + chunk size line
+     */
+    public static byte[] getChunkHeader(final int chunkSize) {
+        return ("\r\n" + Integer.toHexString(chunkSize) + "\r\n").getBytes();
+    }
 }
@@ -0,0 +1,106 @@
+/*
+ * The MIT License (MIT)
+ * <p/>
+ * Copyright (c) 2016-2017 Bertrand Martel
+ * <p/>
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ * <p/>
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ * <p/>
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+package fr.bmartel.speedtest;
+
+import fr.bmartel.speedtest.model.SpeedTestMode;
+import fr.bmartel.speedtest.test.AbstractTest;
+import fr.bmartel.speedtest.test.utils.TestUtils;
+import org.junit.Assert;
+import org.junit.Test;
+
+/**
+ * Speed Test report computed by the library testing.
+ *
+ * @author Bertrand Martel
+ */
+public class ComputedReportTest extends AbstractTest {
+
+    /**
+     * unit examples message header.
+     */
+    private static final String HEADER = TestUtils.generateMessageHeader(ComputedReportTest.class);
+
+    /**
+     * tested transfer rate o/s.
+     */
+    private static final double TRANSFER_RATE_OCT = 20000.54;
+
+    /**
+     * tested buffer size.
+     */
+    private static final int BUFFER_SIZE = 131070;
+
+    /**
+     * tested hostname resolution time.
+     */
+    private static final long RESOLUTION_TIME = 25000000;
+
+    /**
+     * Build a report computed by the library.
+     *
+     * @return speed test report
+     */
+    private static SpeedTestReport buildReport() {
+        return new SpeedTestReport(SpeedTestMode.DOWNLOAD, 98, 0, 1, 65535, 128000, TRANSFER_RATE_OCT,
+                SpeedTestConst.DEFAULT_SCALE, SpeedTestConst.DEFAULT_ROUNDING_MODE, 2)
+                .withBufferSize(BUFFER_SIZE)
+                .withResolutionTime(RESOLUTION_TIME);
+    }
+
+    /**
+     * test transfer rates of computed report.
+     */
+    @Test
+    public void transferRateTest() {
+
+        final SpeedTestReport report = buildReport();
+
+        Assert.assertEquals(HEADER + "transfer rate value in octet are not equals",
+                report.getTransferRateOctetValue(), TRANSFER_RATE_OCT, 0);
+        Assert.assertEquals(HEADER + "transfer rate value in bit are not equals",
+                report.getTransferRateBitValue(), TRANSFER_RATE_OCT * 8, 0);
+        Assert.assertEquals(HEADER + "transfer rate in octet should have default scale",
+                report.getTransferRateOctet().scale(), SpeedTestConst.DEFAULT_SCALE);
+        Assert.assertEquals(HEADER + "transfer rate in octet are not equals",
+                report.getTransferRateOctet().doubleValue(), TRANSFER_RATE_OCT, 0);
+    }
+
+    /**
+     * test buffer size of computed report.
+     */
+    @Test
+    public void bufferSizeTest() {
+        Assert.assertEquals(HEADER + "buffer size are not equals", buildReport().getBufferSize(), BUFFER_SIZE);
+    }
+
+    /**
+     * test hostname resolution time of computed report.
+     */
+    @Test
+    public void resolutionTimeTest() {
+        Assert.assertEquals(HEADER + "resolution time are not equals", buildReport().getResolutionTime(),
+                RESOLUTION_TIME);
+    }
+}
@@ -0,0 +1,257 @@
+/*
+ * The MIT License (MIT)
+ * <p/>
+ * Copyright (c) 2016-2017 Bertrand Martel
+ * <p/>
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ * <p/>
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ * <p/>
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+package fr.bmartel.speedtest;
+
+import fr.bmartel.speedtest.inter.ISpeedTestListener;
+import fr.bmartel.speedtest.model.OverflowPolicy;
+import fr.bmartel.speedtest.model.SpeedTestError;
+import fr.bmartel.speedtest.test.AbstractTest;
+import fr.bmartel.speedtest.test.utils.TestUtils;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Executor;
+
+/**
+ * Listener dispatcher testing : events are delivered from a paused executor run on demand.
+ *
+ * @author Bertrand Martel
+ */
+public class ListenerDispatcherTest extends AbstractTest {
+
+    /**
+     * unit examples message header.
+     */
+    private static final String HEADER = TestUtils.generateMessageHeader(ListenerDispatcherTest.class);
+
+    /**
+     * max number of progress events queued.
+     */
+    private static final int CAPACITY = 3;
+
+    /**
+     * time to wait for a blocked producer in milliseconds.
+     */
+    private static final int BLOCK_WAITING_TIME = 200;
+
+    /**
+     * Executor queuing tasks until they are run by the test.
+     */
+    private static class PausedExecutor implements Executor {
+
+        /**
+         * tasks waiting to be run.
+         */
+        private final ConcurrentLinkedQueue<Runnable> mTasks = new ConcurrentLinkedQueue<>();
+
+        @Override
+        public void execute(final Runnable command) {
+            mTasks.add(command);
+        }
+
+        /**
+         * Run all queued tasks including tasks queued meanwhile.
+         */
+        private void runAll() {
+            Runnable task;
+            while ((task = mTasks.poll()) != null) {
+                task.run();
+            }
+        }
+    }
+
+    /**
+     * Listener recording events : progress is recorded with its percent, completion as "C" and error as "E".
+     */
+    private static class RecordingListener implements ISpeedTestListener {
+
+        /**
+         * events received.
+         */
+        private final List<String> mEvents = new ArrayList<>();
+
+        @Override
+        public void onCompletion(final SpeedTestReport report) {
+            mEvents.add("C");
+        }
+
+        @Override
+        public void onProgress(final float percent, final SpeedTestReport report) {
+            mEvents.add(String.valueOf((int) percent));
+        }
+
+        @Override
+        public void onError(final SpeedTestError speedTestError, final String errorMessage) {
+            mEvents.add("E");
+        }
+    }
+
+    /**
+     * test events are delivered in order from executor only.
+     */
+    @Test
+    public void orderTest() {
+        final PausedExecutor executor = new PausedExecutor();
+        final RecordingListener listener = new RecordingListener();
+        final ListenerDispatcher dispatcher = new ListenerDispatcher(executor, CAPACITY, OverflowPolicy.DROP_OLDEST);
+        dispatcher.addListener(listener);
+
+        dispatcher.onProgress(1, null);
+        dispatcher.onProgress(2, null);
+        dispatcher.onCompletion(null);
+        dispatcher.onError(SpeedTestError.SOCKET_ERROR, "");
+
+        Assert.assertTrue(HEADER + "events should not be delivered before executor runs", listener.mEvents.isEmpty());
+
+        executor.runAll();
+
+        Assert.assertEquals(HEADER + "events are not delivered in order", Arrays.asList("1", "2", "C", "E"),
+                listener.mEvents);
+    }
+
+    /**
+     * test oldest progress events are dropped when queue is full.
+     */
+    @Test
+    public void dropOldestTest() {
+        final PausedExecutor executor = new PausedExecutor();
+        final RecordingListener listener = new RecordingListener();
+        final ListenerDispatcher dispatcher = new ListenerDispatcher(executor, CAPACITY, OverflowPolicy.DROP_OLDEST);
+        dispatcher.addListener(listener);
+
+        for (int i = 1; i <= 6; i++) {
+            dispatcher.onProgress(i, null);
+        }
+        dispatcher.onCompletion(null);
+
+        executor.runAll();
+
+        Assert.assertEquals(HEADER + "newest progress events should be kept", Arrays.asList("4", "5", "6", "C"),
+                listener.mEvents);
+    }
+
+    /**
+     * test progress events received while queue is full are coalesced into the latest one.
+     */
+    @Test
+    public void coalesceTest() {
+        final PausedExecutor executor = new PausedExecutor();
+        final RecordingListener listener = new RecordingListener();
+        final ListenerDispatcher dispatcher = new ListenerDispatcher(executor, CAPACITY, OverflowPolicy.COALESCE);
+        dispatcher.addListener(listener);
+
+        for (int i = 1; i <= 6; i++) {
+            dispatcher.onProgress(i, null);
+        }
+        dispatcher.onCompletion(null);
+
+        executor.runAll();
+
+        Assert.assertEquals(HEADER + "progress events should be coalesced into the latest one",
+                Arrays.asList("1", "2", "3", "6", "C"), listener.mEvents);
+
+        dispatcher.onProgress(7, null);
+        executor.runAll();
+
+        Assert.assertEquals(HEADER + "progress should not be coalesced once queue is drained", "7",
+                listener.mEvents.get(listener.mEvents.size() - 1));
+    }
+
+    /**
+     * test producer is blocked when queue is full until executor delivers events.
+     *
+     * @throws InterruptedException producer thread interrupted
+     */
+    @Test
+    public void blockTest() throws InterruptedException {
+        final PausedExecutor executor = new PausedExecutor();
+        final RecordingListener listener = new RecordingListener();
+        final ListenerDispatcher dispatcher = new ListenerDispatcher(executor, CAPACITY, OverflowPolicy.BLOCK);
+        dispatcher.addListener(listener);
+
+        final Thread producer = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                for (int i = 1; i <= 6; i++) {
+                    dispatcher.onProgress(i, null);
+                }
+                dispatcher.onCompletion(null);
+            }
+        });
+        producer.start();
+        producer.join(BLOCK_WAITING_TIME);
+
+        Assert.assertTrue(HEADER + "producer should be blocked while queue is full", producer.isAlive());
+        Assert.assertTrue(HEADER + "events should not be delivered before executor runs", listener.mEvents.isEmpty());
+
+        while (producer.isAlive()) {
+            executor.runAll();
+            Thread.yield();
+        }
+        producer.join();
+        executor.runAll();
+
+        Assert.assertEquals(HEADER + "no progress event should be dropped", Arrays.asList("1", "2", "3", "4", "5",
+                "6", "C"), listener.mEvents);
+    }
+
+    /**
+     * test completion and error events are never dropped whatever the overflow policy.
+     */
+    @Test
+    public void completionNotDroppedTest() {
+
+        for (final OverflowPolicy policy : new OverflowPolicy[]{OverflowPolicy.DROP_OLDEST,
+                OverflowPolicy.COALESCE}) {
+
+            final PausedExecutor executor = new PausedExecutor();
+            final RecordingListener listener = new RecordingListener();
+            final ListenerDispatcher dispatcher = new ListenerDispatcher(executor, 1, policy);
+            dispatcher.addListener(listener);
+
+            dispatcher.onProgress(1, null);
+            dispatcher.onCompletion(null);
+            for (int i = 2; i <= 4; i++) {
+                dispatcher.onProgress(i, null);
+            }
+            dispatcher.onError(SpeedTestError.SOCKET_ERROR, "");
+            dispatcher.onProgress(5, null);
+
+            executor.runAll();
+
+            Assert.assertTrue(HEADER + "completion should be delivered with " + policy,
+                    listener.mEvents.contains("C"));
+            Assert.assertTrue(HEADER + "error should be delivered with " + policy, listener.mEvents.contains("E"));
+            Assert.assertTrue(HEADER + "completion should be delivered before error with " + policy,
+                    listener.mEvents.indexOf("C") < listener.mEvents.indexOf("E"));
+            Assert.assertTrue(HEADER + "latest progress should be delivered with " + policy,
+                    listener.mEvents.contains("5"));
+        }
+    }
+}
@@ -0,0 +1,132 @@
+/*
+ * The MIT License (MIT)
+ * <p/>
+ * Copyright (c) 2016-2017 Bertrand Martel
+ * <p/>
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ * <p/>
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ * <p/>
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+package fr.bmartel.speedtest;
+
+import fr.bmartel.speedtest.test.AbstractTest;
+import fr.bmartel.speedtest.test.utils.TestUtils;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Transfer counter testing.
+ *
+ * @author Bertrand Martel
+ */
+public class TransferCounterTest extends AbstractTest {
+
+    /**
+     * unit examples message header.
+     */
+    private static final String HEADER = TestUtils.generateMessageHeader(TransferCounterTest.class);
+
+    /**
+     * number of add call performed by transfer thread.
+     */
+    private static final int ADD_COUNT = 2000000;
+
+    /**
+     * max number of octet added in one call.
+     */
+    private static final int MAX_OCTETS = 7;
+
+    /**
+     * test that octets added by transfer thread are all counted in intervals taken concurrently.
+     */
+    @Test
+    public void concurrentIntervalTest() throws InterruptedException {
+
+        final TransferCounter counter = new TransferCounter();
+
+        final CountDownLatch startLatch = new CountDownLatch(1);
+        final AtomicBoolean transferring = new AtomicBoolean(true);
+        final AtomicLong intervalOctets = new AtomicLong();
+        final AtomicLong intervalNum = new AtomicLong();
+        final AtomicBoolean negativeDuration = new AtomicBoolean();
+
+        final Thread reportThread = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                try {
+                    startLatch.await();
+                } catch (InterruptedException e) {
+                    return;
+                }
+                while (transferring.get()) {
+                    final TransferCounter.Sample interval = counter.takeInterval(System.nanoTime());
+                    intervalOctets.addAndGet(interval.mOctets);
+                    intervalNum.incrementAndGet();
+                    if (interval.mTime < 0) {
+                        negativeDuration.set(true);
+                    }
+                    // interleave reads of current interval which must not start a new one
+                    counter.getInterval(System.nanoTime());
+                }
+            }
+        });
+
+        reportThread.start();
+
+        long expected = 0;
+
+        startLatch.countDown();
+
+        for (int i = 0; i < ADD_COUNT; i++) {
+            final int octets = 1 + i % MAX_OCTETS;
+            expected += octets;
+            Assert.assertEquals(HEADER + "wrong counter value", expected, counter.add(octets));
+        }
+
+        transferring.set(false);
+        reportThread.join();
+
+        intervalOctets.addAndGet(counter.takeInterval(System.nanoTime()).mOctets);
+
+        Assert.assertTrue(HEADER + "no interval taken concurrently", intervalNum.get() > 0);
+        Assert.assertFalse(HEADER + "negative interval duration", negativeDuration.get());
+        Assert.assertEquals(HEADER + "wrong total octets", expected, counter.get());
+        Assert.assertEquals(HEADER + "octets lost across intervals", expected, intervalOctets.get());
+    }
+
+    /**
+     * test that interval is reset with counter.
+     */
+    @Test
+    public void resetTest() {
+
+        final TransferCounter counter = new TransferCounter();
+
+        counter.add(1000);
+        counter.reset();
+        counter.add(10);
+
+        Assert.assertEquals(HEADER + "wrong total octets", 10, counter.get());
+        Assert.assertEquals(HEADER + "wrong interval octets", 10, counter.takeInterval(System.nanoTime()).mOctets);
+        Assert.assertEquals(HEADER + "wrong interval octets", 0, counter.takeInterval(System.nanoTime()).mOctets);
+    }
+}
@@ -0,0 +1,8 @@
+/**
+ * Speed test library unit test of package-private classes.
+ * <p/>
+ *
+ * @author Bertrand Martel
+ * @version 1.2
+ */
+package fr.bmartel.speedtest;
@@ -29,6 +29,8 @@ import fr.bmartel.speedtest.utils.RandomGen;
 import org.junit.Assert;
 import org.junit.Test;
 
+import java.util.zip.Deflater;
+
 /**
  * Random file generator examples.
  *
@@ -57,4 +59,24 @@ public class RandomGenTest {
             Assert.assertEquals(HEADER + "random generated array are not equals", length, SIZES[i]);
         }
     }
+
+    /**
+     * test random data is written only in requested region and is not compressible.
+     */
+    @Test
+    public void nextBytesTest() {
+        final byte[] buffer = new byte[10003];
+        new RandomGen().nextBytes(buffer, 1, buffer.length - 2);
+
+        Assert.assertEquals(HEADER + "random data written before region", 0, buffer[0]);
+        Assert.assertEquals(HEADER + "random data written after region", 0, buffer[buffer.length - 1]);
+
+        final Deflater deflater = new Deflater(Deflater.BEST_COMPRESSION);
+        deflater.setInput(buffer);
+        deflater.finish();
+        final int compressedLength = deflater.deflate(new byte[buffer.length * 2]);
+        deflater.end();
+
+        Assert.assertTrue(HEADER + "random data is compressible", compressedLength >= buffer.length - 2);
+    }
 }
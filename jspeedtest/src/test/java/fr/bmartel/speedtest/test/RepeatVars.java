@@ -29,8 +29,8 @@ import fr.bmartel.speedtest.SpeedTestSocket;
 import org.junit.Assert;
 
 import java.lang.reflect.Field;
-import java.math.BigDecimal;
 import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
 
 /**
  * Repeat vars wrapper to retrieve those private fields and test directly in SpeedTestSocketTest class.
@@ -266,8 +266,8 @@ public class RepeatVars {
      * @return
      * @throws IllegalAccessException
      */
-    public BigDecimal getRepeatPacketSize() throws IllegalAccessException {
-        return (BigDecimal) mRepeatPacketSize.get(mRepeatWrapper);
+    public long getRepeatPacketSize() throws IllegalAccessException {
+        return ((AtomicLong) mRepeatPacketSize.get(mRepeatWrapper)).get();
     }
 
     /**
@@ -276,8 +276,8 @@ public class RepeatVars {
      * @param repeatPacketSize
      * @throws IllegalAccessException
      */
-    public void setRepeatPacketSize(final BigDecimal repeatPacketSize) throws IllegalAccessException {
-        this.mRepeatPacketSize.set(mRepeatWrapper, repeatPacketSize);
+    public void setRepeatPacketSize(final long repeatPacketSize) throws IllegalAccessException {
+        ((AtomicLong) this.mRepeatPacketSize.get(mRepeatWrapper)).set(repeatPacketSize);
     }
 
     /**
@@ -286,7 +286,7 @@ public class RepeatVars {
      * @return
      */
     public long getRepeatTempPckSize() throws IllegalAccessException {
-        return mRepeatTempPckSize.getLong(mRepeatWrapper);
+        return ((AtomicLong) mRepeatTempPckSize.get(mRepeatWrapper)).get();
     }
 
     /**
@@ -295,7 +295,7 @@ public class RepeatVars {
      * @param repeatTempPckSize
      */
     public void setRepeatTempPckSize(final long repeatTempPckSize) throws IllegalAccessException {
-        this.mRepeatTempPckSize.setLong(mRepeatWrapper, repeatTempPckSize);
+        ((AtomicLong) this.mRepeatTempPckSize.get(mRepeatWrapper)).set(repeatTempPckSize);
     }
 
     /**
@@ -345,8 +345,8 @@ public class RepeatVars {
      * @throws IllegalAccessException
      */
     @SuppressWarnings("unchecked")
-    public List<BigDecimal> getRepeatTransferRateList() throws IllegalAccessException {
-        return (List<BigDecimal>) mRepeatTransferRateList.get(mRepeatWrapper);
+    public List<Double> getRepeatTransferRateList() throws IllegalAccessException {
+        return (List<Double>) mRepeatTransferRateList.get(mRepeatWrapper);
     }
 
     /**
@@ -355,7 +355,7 @@ public class RepeatVars {
      * @param repeatTransferRateList
      * @throws IllegalAccessException
      */
-    public void setRepeatTransferRateList(final List<BigDecimal> repeatTransferRateList) throws IllegalAccessException {
+    public void setRepeatTransferRateList(final List<Double> repeatTransferRateList) throws IllegalAccessException {
         this.mRepeatTransferRateList.set(mRepeatWrapper, repeatTransferRateList);
     }
 
@@ -30,12 +30,14 @@ import fr.bmartel.protocol.http.StatusCodeObject;
 import fr.bmartel.protocol.http.constants.StatusCodeList;
 import fr.bmartel.protocol.http.inter.IHttpFrame;
 import fr.bmartel.protocol.http.states.HttpStates;
+import fr.bmartel.speedtest.SpeedTestConst;
 import fr.bmartel.speedtest.SpeedTestReport;
 import fr.bmartel.speedtest.SpeedTestSocket;
 import fr.bmartel.speedtest.inter.IRepeatListener;
 import fr.bmartel.speedtest.inter.ISpeedTestListener;
 import fr.bmartel.speedtest.model.SpeedTestError;
 import fr.bmartel.speedtest.model.SpeedTestMode;
+import fr.bmartel.speedtest.model.TransferEngine;
 import fr.bmartel.speedtest.model.UploadStorageType;
 import fr.bmartel.speedtest.test.server.HttpServer;
 import fr.bmartel.speedtest.test.server.IHttpServerEventListener;
@@ -50,11 +52,21 @@ import org.junit.Before;
 import org.junit.Ignore;
 import org.junit.Test;
 
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
 import java.math.BigDecimal;
 import java.net.MalformedURLException;
+import java.net.ServerSocket;
+import java.net.Socket;
 import java.net.URL;
+import java.util.Arrays;
 import java.util.HashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
 import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
 
 import static java.util.concurrent.TimeUnit.SECONDS;
 
@@ -110,6 +122,11 @@ public class SpeedTestFunctionalTest extends ServerRetryTest {
      */
     private final static String SPEED_TEST_SERVER_URI_TIMEOUT = "/timeout";
 
+    /**
+     * chunked transfer encoding uri.
+     */
+    private final static String SPEED_TEST_SERVER_URI_CHUNKED = "/chunked";
+
     /**
      * upload server uri.
      */
@@ -120,6 +137,51 @@ public class SpeedTestFunctionalTest extends ServerRetryTest {
      */
     private final static int WAITING_TIMEOUT_LONG_OPERATION = 10;
 
+    /**
+     * number of connections used for parallel download/upload.
+     */
+    private final static int PARALLEL_CONNECTION_COUNT = 4;
+
+    /**
+     * number of requests pipelined for pipelined download.
+     */
+    private final static int PIPELINE_DEPTH = 4;
+
+    /**
+     * size of each chunk sent by chunked download uri.
+     */
+    private final static int CHUNK_SIZE = 65536;
+
+    /**
+     * deadline used for deadline tests in milliseconds (shorter than socket timeout).
+     */
+    private final static int DEADLINE_TIMEOUT = 500;
+
+    /**
+     * socket timeout used for write deadline tests in milliseconds.
+     */
+    private final static int WRITE_TIMEOUT = 500;
+
+    /**
+     * upload size used for write deadline tests (much larger than socket buffers).
+     */
+    private final static int WRITE_TIMEOUT_UPLOAD_SIZE = 50000000;
+
+    /**
+     * upload size used for storage type tests : larger than stream storage ring and not a multiple of upload chunk.
+     */
+    private final static int STORAGE_UPLOAD_SIZE = SpeedTestConst.UPLOAD_RING_SIZE * 2 + 12345;
+
+    /**
+     * min number of octet between two progress reports for progress policy tests.
+     */
+    private final static long PROGRESS_MIN_OCTETS = 300000;
+
+    /**
+     * min time between two progress reports for progress policy tests (longer than transfer).
+     */
+    private final static int PROGRESS_MIN_INTERVAL = WAITING_TIMEOUT_LONG_OPERATION * 1000;
+
     /**
      * transfer rate reference in octet.
      */
@@ -155,6 +217,11 @@ public class SpeedTestFunctionalTest extends ServerRetryTest {
      */
     private int chainCount = 1;
 
+    /**
+     * upload body size received by server.
+     */
+    private final AtomicLong mUploadReceivedSize = new AtomicLong();
+
     @Before
     public void setup() {
         mExpectedTransferRateOps = null;
@@ -191,6 +258,92 @@ public class SpeedTestFunctionalTest extends ServerRetryTest {
         stopTask();
     }
 
+    @Test
+    public void parallelDownload1MTest() throws TimeoutException {
+        initTask(true);
+        mSocket.setConnectionCount(PARALLEL_CONNECTION_COUNT);
+        testDownload(SPEED_TEST_SERVER_URI_DL_1MO);
+        Assert.assertEquals(PARALLEL_CONNECTION_COUNT, mSocket.getLiveReport().getConnectionReports().size());
+        Assert.assertEquals(PARALLEL_CONNECTION_COUNT * 1000000, mSocket.getLiveReport().getTotalPacketSize());
+        stopTask();
+    }
+
+    @Test
+    public void chunkedDownload1MTest() throws TimeoutException {
+        initTask(true);
+        testDownload(SPEED_TEST_SERVER_URI_CHUNKED);
+        Assert.assertEquals(1000000, mSocket.getLiveReport().getTemporaryPacketSize());
+        Assert.assertEquals(1000000, mSocket.getLiveReport().getTotalPacketSize());
+        stopTask();
+    }
+
+    @Test
+    public void segmentedDownload1MTest() throws TimeoutException {
+        initTask(true);
+        mSocket.setConnectionCount(PARALLEL_CONNECTION_COUNT);
+        mSocket.setSegmentedDownload(true);
+        testDownload(SPEED_TEST_SERVER_URI_DL_1MO);
+        Assert.assertEquals(1000000, mSocket.getLiveReport().getTemporaryPacketSize());
+        Assert.assertEquals(1000000, mSocket.getLiveReport().getTotalPacketSize());
+        stopTask();
+    }
+
+    @Test
+    public void mirrorDownload1MTest() throws TimeoutException {
+        initTask(true);
+        final String uri = "http://" + SPEED_TEST_SERVER_HOST + ":" + SPEED_TEST_SERVER_PORT +
+                SPEED_TEST_SERVER_URI_DL_1MO;
+        mWaiter = new Waiter();
+        mSocket.startMirrorDownload(Arrays.asList(uri, uri));
+        mWaiter.await(WAITING_TIMEOUT_LONG_OPERATION, SECONDS);
+        testTransferRate();
+        mSocket.forceStopTask();
+        Assert.assertEquals(2, mSocket.getLiveReport().getMirrorReports().size());
+        Assert.assertEquals(1000000, mSocket.getLiveReport().getTotalPacketSize());
+        stopTask();
+    }
+
+    @Test
+    public void pipelinedDownload1MTest() throws TimeoutException {
+        initTask(true);
+        mSocket.setPipelineDepth(PIPELINE_DEPTH);
+        testDownload(SPEED_TEST_SERVER_URI_DL_1MO);
+        Assert.assertEquals(PIPELINE_DEPTH, mSocket.getLiveReport().getResponseReports().size());
+        Assert.assertEquals(PIPELINE_DEPTH * 1000000, mSocket.getLiveReport().getTotalPacketSize());
+        stopTask();
+    }
+
+    @Test
+    public void nioDownload1MTest() throws TimeoutException {
+        initTask(true);
+        mSocket.setTransferEngine(TransferEngine.NIO);
+        testDownload(SPEED_TEST_SERVER_URI_DL_1MO);
+        stopTask();
+    }
+
+    @Test
+    public void progressMinOctetsTest() throws TimeoutException {
+        testProgressPolicy(TransferEngine.BLOCKING, SPEED_TEST_SERVER_URI_DL_1MO, 0, PROGRESS_MIN_OCTETS,
+                (int) (1000000 / PROGRESS_MIN_OCTETS) + 1);
+    }
+
+    @Test
+    public void progressMinIntervalTest() throws TimeoutException {
+        testProgressPolicy(TransferEngine.BLOCKING, SPEED_TEST_SERVER_URI_DL_1MO, PROGRESS_MIN_INTERVAL, 0, 1);
+    }
+
+    @Test
+    public void chunkedProgressMinOctetsTest() throws TimeoutException {
+        testProgressPolicy(TransferEngine.BLOCKING, SPEED_TEST_SERVER_URI_CHUNKED, 0, PROGRESS_MIN_OCTETS,
+                (int) (1000000 / PROGRESS_MIN_OCTETS) + 1);
+    }
+
+    @Test
+    public void nioChunkedProgressMinOctetsTest() throws TimeoutException {
+        testProgressPolicy(TransferEngine.NIO, SPEED_TEST_SERVER_URI_CHUNKED, 0, PROGRESS_MIN_OCTETS,
+                (int) (1000000 / PROGRESS_MIN_OCTETS) + 1);
+    }
+
     @Test
     public void downloadErrorTest() throws TimeoutException {
         initTask(true);
@@ -207,6 +360,54 @@ public class SpeedTestFunctionalTest extends ServerRetryTest {
         stopTask();
     }
 
+    @Test
+    public void parallelUpload1MTest() throws TimeoutException {
+        initTask(false);
+        mSocket.setConnectionCount(PARALLEL_CONNECTION_COUNT);
+        testUpload(SPEED_TEST_SERVER_URI_UL, 1000000, false);
+        Assert.assertEquals(PARALLEL_CONNECTION_COUNT, mSocket.getLiveReport().getConnectionReports().size());
+        Assert.assertEquals(1000000, mSocket.getLiveReport().getTotalPacketSize());
+        stopTask();
+    }
+
+    @Test
+    public void nioUpload1MTest() throws TimeoutException {
+        initTask(false);
+        mSocket.setTransferEngine(TransferEngine.NIO);
+        testUpload(SPEED_TEST_SERVER_URI_UL, 1000000, true);
+        stopTask();
+    }
+
+    @Test
+    public void fileStorageUploadTest() throws TimeoutException {
+        testUploadStorage(TransferEngine.BLOCKING, UploadStorageType.FILE_STORAGE);
+    }
+
+    @Test
+    public void ramStorageUploadTest() throws TimeoutException {
+        testUploadStorage(TransferEngine.BLOCKING, UploadStorageType.RAM_STORAGE);
+    }
+
+    @Test
+    public void streamStorageUploadTest() throws TimeoutException {
+        testUploadStorage(TransferEngine.BLOCKING, UploadStorageType.STREAM_STORAGE);
+    }
+
+    @Test
+    public void nioFileStorageUploadTest() throws TimeoutException {
+        testUploadStorage(TransferEngine.NIO, UploadStorageType.FILE_STORAGE);
+    }
+
+    @Test
+    public void nioRamStorageUploadTest() throws TimeoutException {
+        testUploadStorage(TransferEngine.NIO, UploadStorageType.RAM_STORAGE);
+    }
+
+    @Test
+    public void nioStreamStorageUploadTest() throws TimeoutException {
+        testUploadStorage(TransferEngine.NIO, UploadStorageType.STREAM_STORAGE);
+    }
+
     @Test
     public void uploadRedirectTest() throws TimeoutException {
         initTask(false);
@@ -323,6 +524,237 @@ public class SpeedTestFunctionalTest extends ServerRetryTest {
         mSocket.clearListeners();
     }
 
+    @Test
+    public void firstByteTimeoutTest() throws TimeoutException, InterruptedException {
+        mSocket = new SpeedTestSocket();
+        mSocket.setFirstByteTimeout(DEADLINE_TIMEOUT);
+        testDeadline(SpeedTestConst.FIRST_BYTE_TIMEOUT_ERROR);
+    }
+
+    @Test
+    public void nioFirstByteTimeoutTest() throws TimeoutException, InterruptedException {
+        mSocket = new SpeedTestSocket();
+        mSocket.setTransferEngine(TransferEngine.NIO);
+        mSocket.setFirstByteTimeout(DEADLINE_TIMEOUT);
+        testDeadline(SpeedTestConst.FIRST_BYTE_TIMEOUT_ERROR);
+    }
+
+    @Test
+    public void testTimeoutTest() throws TimeoutException, InterruptedException {
+        mSocket = new SpeedTestSocket();
+        mSocket.setTestTimeout(DEADLINE_TIMEOUT);
+        testDeadline(SpeedTestConst.TEST_TIMEOUT_ERROR);
+    }
+
+    /**
+     * Download from timeout uri with a deadline shorter than socket timeout : deadline must be notified once with a
+     * socket timeout error and error caused by socket closure must not be notified.
+     *
+     * @param message error message expected
+     */
+    private void testDeadline(final String message) throws TimeoutException, InterruptedException {
+
+        startServer();
+
+        mSocketTimeout = 2000;
+        mSocket.setSocketTimeout(mSocketTimeout);
+
+        final AtomicInteger timeoutNum = new AtomicInteger();
+        final AtomicInteger otherEventNum = new AtomicInteger();
+
+        mWaiter = new Waiter();
+
+        mSocket.addSpeedTestListener(new ISpeedTestListener() {
+            @Override
+            public void onCompletion(final SpeedTestReport report) {
+                otherEventNum.incrementAndGet();
+            }
+
+            @Override
+            public void onProgress(final float percent, final SpeedTestReport report) {
+                //called to notify download progress
+            }
+
+            @Override
+            public void onError(final SpeedTestError speedTestError, final String errorMessage) {
+                if (speedTestError != SpeedTestError.SOCKET_TIMEOUT) {
+                    otherEventNum.incrementAndGet();
+                } else if (timeoutNum.incrementAndGet() == 1) {
+                    mWaiter.assertEquals(message, errorMessage);
+                    mWaiter.resume();
+                }
+            }
+        });
+
+        final long start = System.nanoTime();
+
+        mSocket.startDownload("http://" + SPEED_TEST_SERVER_HOST + ":" + SPEED_TEST_SERVER_PORT +
+                SPEED_TEST_SERVER_URI_TIMEOUT);
+
+        mWaiter.await(WAITING_TIMEOUT_LONG_OPERATION, SECONDS);
+
+        Assert.assertTrue("deadline should expire before socket timeout",
+                System.nanoTime() - start < TimeUnit.MILLISECONDS.toNanos(mSocketTimeout));
+
+        // wait for server response and socket timeout
+        Thread.sleep(mSocketTimeout + 2000);
+
+        Assert.assertEquals(1, timeoutNum.get());
+        Assert.assertEquals(0, otherEventNum.get());
+
+        stopServer();
+        mSocket.clearListeners();
+    }
+
+    @Test
+    public void writeTimeoutTest() throws TimeoutException, InterruptedException, IOException {
+        testWriteDeadline(TransferEngine.BLOCKING);
+    }
+
+    @Test
+    public void nioWriteTimeoutTest() throws TimeoutException, InterruptedException, IOException {
+        testWriteDeadline(TransferEngine.NIO);
+    }
+
+    /**
+     * Upload to a server that accepts connection but never reads : blocked write must be notified once with a socket
+     * timeout write error and error caused by socket closure must not be notified.
+     *
+     * @param engine transfer engine
+     */
+    private void testWriteDeadline(final TransferEngine engine) throws TimeoutException, InterruptedException,
+            IOException {
+
+        final ServerSocket server = new ServerSocket();
+        server.setReceiveBufferSize(4096);
+        server.bind(null);
+
+        final CountDownLatch release = new CountDownLatch(1);
+
+        new Thread(new Runnable() {
+            @Override
+            public void run() {
+                try {
+                    final Socket client = server.accept();
+                    release.await();
+                    client.close();
+                } catch (IOException | InterruptedException e) {
+                    //server closed
+                }
+            }
+        }).start();
+
+        mSocket = new SpeedTestSocket();
+        mSocket.setTransferEngine(engine);
+        mSocket.setSocketTimeout(WRITE_TIMEOUT);
+
+        final AtomicInteger timeoutNum = new AtomicInteger();
+        final AtomicInteger otherEventNum = new AtomicInteger();
+
+        mWaiter = new Waiter();
+
+        mSocket.addSpeedTestListener(new ISpeedTestListener() {
+            @Override
+            public void onCompletion(final SpeedTestReport report) {
+                otherEventNum.incrementAndGet();
+            }
+
+            @Override
+            public void onProgress(final float percent, final SpeedTestReport report) {
+                //called to notify upload progress
+            }
+
+            @Override
+            public void onError(final SpeedTestError speedTestError, final String errorMessage) {
+                if (speedTestError != SpeedTestError.SOCKET_TIMEOUT) {
+                    otherEventNum.incrementAndGet();
+                } else if (timeoutNum.incrementAndGet() == 1) {
+                    mWaiter.assertEquals(SpeedTestConst.SOCKET_WRITE_ERROR, errorMessage);
+                    mWaiter.resume();
+                }
+            }
+        });
+
+        mSocket.startUpload("http://" + SPEED_TEST_SERVER_HOST + ":" + server.getLocalPort() +
+                SPEED_TEST_SERVER_URI_UL, WRITE_TIMEOUT_UPLOAD_SIZE);
+
+        try {
+            mWaiter.await(WAITING_TIMEOUT_LONG_OPERATION, SECONDS);
+
+            // wait for any error caused by socket closure
+            Thread.sleep(WRITE_TIMEOUT * 4);
+
+            Assert.assertEquals(1, timeoutNum.get());
+            Assert.assertEquals(0, otherEventNum.get());
+        } finally {
+            release.countDown();
+            server.close();
+            mSocket.clearListeners();
+        }
+    }
+
+    /**
+     * Download 1Mo with a progress policy : intermediate progress reports must be coalesced and last report must
+     * always feature 100% progress.
+     *
+     * @param engine       transfer engine
+     * @param uri          download uri
+     * @param minInterval  min time between two progress reports in milliseconds
+     * @param minOctets    min number of octet between two progress reports
+     * @param maxReportNum max number of progress reports expected
+     */
+    private void testProgressPolicy(final TransferEngine engine,
+                                    final String uri,
+                                    final int minInterval,
+                                    final long minOctets,
+                                    final int maxReportNum) throws TimeoutException {
+
+        calculateReference();
+
+        mSocket = new SpeedTestSocket();
+        mSocket.setSocketTimeout(TestCommon.DEFAULT_SOCKET_TIMEOUT);
+        mSocket.setTransferEngine(engine);
+        mSocket.setProgressMinInterval(minInterval);
+        mSocket.setProgressMinOctets(minOctets);
+
+        final AtomicInteger reportNum = new AtomicInteger();
+        final AtomicReference<SpeedTestReport> lastReport = new AtomicReference<>();
+
+        mWaiter = new Waiter();
+
+        mSocket.addSpeedTestListener(new ISpeedTestListener() {
+            @Override
+            public void onCompletion(final SpeedTestReport report) {
+                mWaiter.resume();
+            }
+
+            @Override
+            public void onProgress(final float percent, final SpeedTestReport report) {
+                reportNum.incrementAndGet();
+                lastReport.set(report);
+            }
+
+            @Override
+            public void onError(final SpeedTestError speedTestError, final String errorMessage) {
+                mWaiter.fail(TestCommon.DOWNLOAD_ERROR_STR + speedTestError);
+                mWaiter.resume();
+            }
+        });
+
+        mSocket.startDownload("http://" + SPEED_TEST_SERVER_HOST + ":" + SPEED_TEST_SERVER_PORT + uri);
+
+        mWaiter.await(WAITING_TIMEOUT_LONG_OPERATION, SECONDS);
+
+        Assert.assertTrue("progress reports should be coalesced : " + reportNum.get(),
+                reportNum.get() <= maxReportNum);
+        Assert.assertNotNull(lastReport.get());
+        Assert.assertEquals(100, lastReport.get().getProgressPercent(), 0);
+        Assert.assertEquals(1000000, lastReport.get().getTemporaryPacketSize());
+        Assert.assertEquals(1000000, lastReport.get().getTotalPacketSize());
+
+        stopTask();
+    }
+
     /**
      * Test upload with given packet size.
      *
@@ -346,6 +778,36 @@ public class SpeedTestFunctionalTest extends ServerRetryTest {
         mSocket.forceStopTask();
     }
 
+    /**
+     * Upload with given storage type : server must receive exactly the requested number of octets, stream storage
+     * ring being sent several times.
+     *
+     * @param engine      transfer engine
+     * @param storageType upload storage type
+     */
+    private void testUploadStorage(final TransferEngine engine, final UploadStorageType storageType) throws
+            TimeoutException {
+
+        initTask(false);
+        mSocket.setTransferEngine(engine);
+        mSocket.setUploadStorageType(storageType);
+        mUploadReceivedSize.set(0);
+
+        mWaiter = new Waiter();
+
+        mSocket.startUpload("http://" + SPEED_TEST_SERVER_HOST + ":" + SPEED_TEST_SERVER_PORT +
+                SPEED_TEST_SERVER_URI_UL, STORAGE_UPLOAD_SIZE);
+
+        mWaiter.await(WAITING_TIMEOUT_LONG_OPERATION, SECONDS);
+
+        testTransferRate();
+        Assert.assertEquals(STORAGE_UPLOAD_SIZE, mSocket.getLiveReport().getTemporaryPacketSize());
+        Assert.assertEquals(STORAGE_UPLOAD_SIZE, mUploadReceivedSize.get());
+
+        mSocket.forceStopTask();
+        stopTask();
+    }
+
     /**
      * Test download with given URI.
      *
@@ -737,6 +1199,9 @@ public class SpeedTestFunctionalTest extends ServerRetryTest {
                                             waiter.fail(e.getMessage());
                                         }
                                         break;
+                                    case SPEED_TEST_SERVER_URI_CHUNKED:
+                                        httpStream.writeHttpFrame(getChunkedResponse(1000000));
+                                        return;
                                     default:
                                         break;
                                 }
@@ -764,6 +1229,7 @@ public class SpeedTestFunctionalTest extends ServerRetryTest {
                                                 StatusCodeList.MOVED_PERMANENTLY, httpStream);
                                         return;
                                     case SPEED_TEST_SERVER_URI_UL:
+                                        mUploadReceivedSize.addAndGet(httpFrame.getBody().getBytes().length);
                                         break;
                                     case SPEED_TEST_SERVER_URI_TIMEOUT:
                                         try {
@@ -780,9 +1246,7 @@ public class SpeedTestFunctionalTest extends ServerRetryTest {
                             default:
                                 break;
                         }
-                        httpStream.writeHttpFrame(new HttpResponseFrame(
-                                StatusCodeList.OK, new HttpVersion(1, 1),
-                                new HashMap<String, String>(), body).toString().getBytes());
+                        httpStream.writeHttpFrame(getResponse(body));
                     } catch (MalformedURLException e) {
                         e.printStackTrace();
                         return;
@@ -803,6 +1267,52 @@ public class SpeedTestFunctionalTest extends ServerRetryTest {
         waiter.await(TestCommon.WAITING_TIMEOUT_DEFAULT_SEC, SECONDS);
     }
 
+    /**
+     * Build a 200 OK response with body octets written as is, so that body length always matches Content-Length
+     * whatever the default charset.
+     *
+     * @param body response body
+     * @return HTTP response
+     */
+    private byte[] getResponse(final byte[] body) {
+
+        final ByteArrayOutputStream response = new ByteArrayOutputStream();
+        final byte[] header = ("HTTP/1.1 200 OK\r\nContent-Length: " + body.length + "\r\n\r\n").getBytes();
+
+        response.write(header, 0, header.length);
+        response.write(body, 0, body.length);
+
+        return response.toByteArray();
+    }
+
+    /**
+     * Build a response featuring a body sent with chunked transfer encoding.
+     *
+     * @param size body size in octet
+     * @return HTTP response
+     */
+    private byte[] getChunkedResponse(final int size) {
+
+        final ByteArrayOutputStream response = new ByteArrayOutputStream();
+        final byte[] header = "HTTP/1.1 200 OK\r\nTransfer-Encoding: chunked\r\n\r\n".getBytes();
+        final byte[] data = new RandomGen().generateRandomArray(CHUNK_SIZE);
+        final byte[] lineEnd = "\r\n".getBytes();
+
+        response.write(header, 0, header.length);
+
+        for (int offset = 0; offset < size; offset += CHUNK_SIZE) {
+            final int length = Math.min(CHUNK_SIZE, size - offset);
+            final byte[] sizeLine = (Integer.toHexString(length) + "\r\n").getBytes();
+            response.write(sizeLine, 0, sizeLine.length);
+            response.write(data, 0, length);
+            response.write(lineEnd, 0, lineEnd.length);
+        }
+        final byte[] lastChunk = "0\r\n\r\n".getBytes();
+        response.write(lastChunk, 0, lastChunk.length);
+
+        return response.toByteArray();
+    }
+
     private void sendRedirect(final String url, final StatusCodeObject code, final IHttpStream httpStream) {
         final HashMap<String, String> headers = new HashMap<String, String>();
         headers.put("Location", url);
@@ -84,6 +84,25 @@ public class SpeedTestProxyTest extends ServerRetryTest {
         stopTask();
     }
 
+    @Test
+    @Ignore
+    public void parallelDownloadProxy1MTest() throws TimeoutException {
+        initTask(true);
+        mSocket.setConnectionCount(TestCommon.PARALLEL_CONNECTION_COUNT);
+        testDownload("http://" + TestCommon.SPEED_TEST_SERVER_HOST + TestCommon.SPEED_TEST_SERVER_URI_DL_1MO);
+        stopTask();
+    }
+
+    @Test
+    @Ignore
+    public void segmentedDownloadProxy1MTest() throws TimeoutException {
+        initTask(true);
+        mSocket.setConnectionCount(TestCommon.PARALLEL_CONNECTION_COUNT);
+        mSocket.setSegmentedDownload(true);
+        testDownload("http://" + TestCommon.SPEED_TEST_SERVER_HOST + TestCommon.SPEED_TEST_SERVER_URI_DL_1MO);
+        stopTask();
+    }
+
     @Test
     @Ignore
     public void uploadProxy1MTest() throws TimeoutException {
@@ -90,6 +90,16 @@ public class SpeedTestReportTest {
      */
     private static final int REQUEST_NUM = 2;
 
+    /**
+     * tested temporary packet size larger than 2Go.
+     */
+    private static final long LARGE_TEMPORARY_PACKET_SIZE = 3000000000L;
+
+    /**
+     * tested total packet size larger than 2Go.
+     */
+    private static final long LARGE_TOTAL_PACKET_SIZE = 5000000000L;
+
     /**
      * test speed test report object.
      */
@@ -120,5 +130,33 @@ public class SpeedTestReportTest {
         Assert.assertEquals(HEADER + "transfer rate in bit are not equals", report.getTransferRateBit(),
                 TRANSFER_RATE_BIT);
         Assert.assertEquals(HEADER + "request number are not equals", report.getRequestNum(), REQUEST_NUM);
+        Assert.assertEquals(HEADER + "buffer size should be 0 when not set", report.getBufferSize(), 0);
+        Assert.assertEquals(HEADER + "transfer rate value in octet are not equals",
+                report.getTransferRateOctetValue(), TRANSFER_RATE_OCT.doubleValue(), 0);
+        Assert.assertEquals(HEADER + "transfer rate value in bit are not equals",
+                report.getTransferRateBitValue(), TRANSFER_RATE_BIT.doubleValue(), 0);
+    }
+
+    /**
+     * test speed test report object with sizes larger than 2Go.
+     */
+    @Test
+    public void speedTestReportLargeSizeTest() {
+
+        final SpeedTestReport report = new SpeedTestReport(
+                SPEED_TEST_MODE,
+                PROGRESS,
+                START_TIME,
+                REPORT_TIME,
+                LARGE_TEMPORARY_PACKET_SIZE,
+                LARGE_TOTAL_PACKET_SIZE,
+                TRANSFER_RATE_OCT,
+                TRANSFER_RATE_BIT,
+                REQUEST_NUM);
+
+        Assert.assertEquals(HEADER + "temporary packet size are not equals", report.getTemporaryPacketSize(),
+                LARGE_TEMPORARY_PACKET_SIZE);
+        Assert.assertEquals(HEADER + "total packet size are not equals", report.getTotalPacketSize(),
+                LARGE_TOTAL_PACKET_SIZE);
     }
 }
@@ -25,7 +25,9 @@
 package fr.bmartel.speedtest.test;
 
 import fr.bmartel.speedtest.*;
+import fr.bmartel.speedtest.inter.IHostResolver;
 import fr.bmartel.speedtest.inter.ISpeedTestListener;
+import fr.bmartel.speedtest.model.OverflowPolicy;
 import fr.bmartel.speedtest.model.SpeedTestError;
 import fr.bmartel.speedtest.model.SpeedTestMode;
 import fr.bmartel.speedtest.test.utils.SpeedTestUtils;
@@ -37,9 +39,13 @@ import org.junit.Test;
 
 import java.lang.reflect.Field;
 import java.math.RoundingMode;
+import java.net.InetAddress;
 import java.net.Socket;
+import java.net.UnknownHostException;
 import java.util.ArrayList;
 import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.TimeoutException;
 
@@ -102,6 +108,98 @@ public class SpeedTestSocketTest extends AbstractTest {
 
     }
 
+    /**
+     * test connect, TLS handshake, first byte and test timeouts default values & setters.
+     */
+    @Test
+    public void deadlineSetterTest() {
+        Assert.assertEquals(HEADER + "connect timeout should be 0 for default value", mSocket.getConnectTimeout(), 0);
+        Assert.assertEquals(HEADER + "handshake timeout should be 0 for default value", mSocket
+                .getHandshakeTimeout(), 0);
+        Assert.assertEquals(HEADER + "first byte timeout should be 0 for default value", mSocket
+                .getFirstByteTimeout(), 0);
+        Assert.assertEquals(HEADER + "test timeout should be 0 for default value", mSocket.getTestTimeout(), 0);
+
+        mSocket.setConnectTimeout(TestCommon.SOCKET_TO_INVALID);
+        mSocket.setHandshakeTimeout(TestCommon.SOCKET_TO_INVALID);
+        mSocket.setFirstByteTimeout(TestCommon.SOCKET_TO_INVALID);
+        mSocket.setTestTimeout(TestCommon.SOCKET_TO_INVALID);
+        Assert.assertEquals(HEADER + "connect timeout should not be negative", mSocket.getConnectTimeout(), 0);
+        Assert.assertEquals(HEADER + "handshake timeout should not be negative", mSocket.getHandshakeTimeout(), 0);
+        Assert.assertEquals(HEADER + "first byte timeout should not be negative", mSocket.getFirstByteTimeout(), 0);
+        Assert.assertEquals(HEADER + "test timeout should not be negative", mSocket.getTestTimeout(), 0);
+
+        mSocket.setConnectTimeout(TestCommon.CONNECT_TO);
+        mSocket.setHandshakeTimeout(TestCommon.HANDSHAKE_TO);
+        mSocket.setFirstByteTimeout(TestCommon.FIRST_BYTE_TO);
+        mSocket.setTestTimeout(TestCommon.TEST_TO);
+        Assert.assertEquals(HEADER + "connect timeout incorrect value after set", mSocket.getConnectTimeout(),
+                TestCommon.CONNECT_TO);
+        Assert.assertEquals(HEADER + "handshake timeout incorrect value after set", mSocket.getHandshakeTimeout(),
+                TestCommon.HANDSHAKE_TO);
+        Assert.assertEquals(HEADER + "first byte timeout incorrect value after set", mSocket.getFirstByteTimeout(),
+                TestCommon.FIRST_BYTE_TO);
+        Assert.assertEquals(HEADER + "test timeout incorrect value after set", mSocket.getTestTimeout(),
+                TestCommon.TEST_TO);
+    }
+
+    /**
+     * test progress policy default values & setters.
+     */
+    @Test
+    public void progressPolicySetterTest() {
+        Assert.assertEquals(HEADER + "progress min interval should be 0 for default value", mSocket
+                .getProgressMinInterval(), 0);
+        Assert.assertEquals(HEADER + "progress min octets should be 0 for default value", mSocket
+                .getProgressMinOctets(), 0);
+
+        mSocket.setProgressMinInterval(-1);
+        mSocket.setProgressMinOctets(-1);
+        Assert.assertEquals(HEADER + "progress min interval should not be negative", mSocket
+                .getProgressMinInterval(), 0);
+        Assert.assertEquals(HEADER + "progress min octets should not be negative", mSocket
+                .getProgressMinOctets(), 0);
+
+        mSocket.setProgressMinInterval(TestCommon.PROGRESS_MIN_INTERVAL);
+        mSocket.setProgressMinOctets(TestCommon.PROGRESS_MIN_OCTETS);
+        Assert.assertEquals(HEADER + "progress min interval incorrect value after set", mSocket
+                .getProgressMinInterval(), TestCommon.PROGRESS_MIN_INTERVAL);
+        Assert.assertEquals(HEADER + "progress min octets incorrect value after set", mSocket
+                .getProgressMinOctets(), TestCommon.PROGRESS_MIN_OCTETS);
+    }
+
+    /**
+     * test listener executor default values & setters.
+     */
+    @Test
+    public void listenerExecutorSetterTest() {
+        Assert.assertNull(HEADER + "listener executor should be null for default value", mSocket
+                .getListenerExecutor());
+        Assert.assertNull(HEADER + "overflow policy should be null for default value", mSocket
+                .getListenerOverflowPolicy());
+
+        final ExecutorService executor = Executors.newSingleThreadExecutor();
+
+        mSocket.setListenerExecutor(executor, 0, OverflowPolicy.BLOCK);
+        Assert.assertNull(HEADER + "listener executor should not be set with invalid capacity", mSocket
+                .getListenerExecutor());
+
+        mSocket.setListenerExecutor(executor, TestCommon.LISTENER_QUEUE_CAPACITY, OverflowPolicy.COALESCE);
+        Assert.assertEquals(HEADER + "listener executor incorrect value after set", mSocket.getListenerExecutor(),
+                executor);
+        Assert.assertEquals(HEADER + "listener queue capacity incorrect value after set", mSocket
+                .getListenerQueueCapacity(), TestCommon.LISTENER_QUEUE_CAPACITY);
+        Assert.assertEquals(HEADER + "overflow policy incorrect value after set", mSocket
+                .getListenerOverflowPolicy(), OverflowPolicy.COALESCE);
+
+        mSocket.setListenerExecutor(null);
+        Assert.assertNull(HEADER + "listener executor should be null after reset", mSocket.getListenerExecutor());
+        Assert.assertEquals(HEADER + "listener queue capacity should be 0 after reset", mSocket
+                .getListenerQueueCapacity(), 0);
+
+        executor.shutdown();
+    }
+
     /**
      * test upload chunk size default value.
      */
@@ -121,6 +219,174 @@ public class SpeedTestSocketTest extends AbstractTest {
                 TestCommon.UPLOAD_CHUNK_INVALID);
     }
 
+    /**
+     * test persistent connection default value & setter.
+     */
+    @Test
+    public void persistentConnectionSetterTest() {
+        Assert.assertFalse(HEADER + "persistent connection should be disabled by default", mSocket
+                .isPersistentConnection());
+        mSocket.setPersistentConnection(true);
+        Assert.assertTrue(HEADER + "persistent connection incorrect value after set", mSocket
+                .isPersistentConnection());
+    }
+
+    /**
+     * test segmented download default value & setter.
+     */
+    @Test
+    public void segmentedDownloadSetterTest() {
+        Assert.assertFalse(HEADER + "segmented download should be disabled by default", mSocket
+                .isSegmentedDownload());
+        mSocket.setSegmentedDownload(true);
+        Assert.assertTrue(HEADER + "segmented download incorrect value after set", mSocket
+                .isSegmentedDownload());
+    }
+
+    /**
+     * test adaptive buffer size default value & setters.
+     */
+    @Test
+    public void adaptiveBufferSizeSetterTest() {
+        Assert.assertFalse(HEADER + "adaptive buffer size should be disabled by default", mSocket
+                .isAdaptiveBufferSize());
+        mSocket.setAdaptiveBufferSize(true);
+        Assert.assertTrue(HEADER + "adaptive buffer size incorrect value after set", mSocket
+                .isAdaptiveBufferSize());
+        mSocket.setBufferSizeBounds(TestCommon.MAX_BUFFER_SIZE, TestCommon.MIN_BUFFER_SIZE);
+        Assert.assertEquals(HEADER + "min buffer size should not be greater than max", mSocket.getMinBufferSize(),
+                SpeedTestConst.DEFAULT_MIN_BUFFER_SIZE);
+        mSocket.setBufferSizeBounds(TestCommon.MIN_BUFFER_SIZE, TestCommon.MAX_BUFFER_SIZE);
+        Assert.assertEquals(HEADER + "min buffer size incorrect value after set", mSocket.getMinBufferSize(),
+                TestCommon.MIN_BUFFER_SIZE);
+        Assert.assertEquals(HEADER + "max buffer size incorrect value after set", mSocket.getMaxBufferSize(),
+                TestCommon.MAX_BUFFER_SIZE);
+    }
+
+    /**
+     * test socket options default values & setters.
+     */
+    @Test
+    public void socketOptionsSetterTest() {
+        Assert.assertEquals(HEADER + "receive buffer size should be 0 for default value", mSocket
+                .getReceiveBufferSize(), 0);
+        Assert.assertEquals(HEADER + "send buffer size should be 0 for default value", mSocket.getSendBufferSize(), 0);
+        Assert.assertFalse(HEADER + "TCP_NODELAY should be disabled by default", mSocket.isTcpNoDelay());
+        Assert.assertEquals(HEADER + "traffic class should not be set by default", mSocket.getTrafficClass(),
+                SpeedTestConst.DEFAULT_TRAFFIC_CLASS);
+        Assert.assertFalse(HEADER + "quick ack should be disabled by default", mSocket.isQuickAck());
+        Assert.assertEquals(HEADER + "auto socket buffer mode should be disabled by default", mSocket
+                .getAutoBufferTargetRate(), 0);
+
+        mSocket.setReceiveBufferSize(-1);
+        mSocket.setSendBufferSize(-1);
+        mSocket.setTrafficClass(256);
+        mSocket.setAutoBufferTargetRate(-1);
+        Assert.assertEquals(HEADER + "receive buffer size should not be negative", mSocket.getReceiveBufferSize(), 0);
+        Assert.assertEquals(HEADER + "send buffer size should not be negative", mSocket.getSendBufferSize(), 0);
+        Assert.assertEquals(HEADER + "traffic class should not be greater than 255", mSocket.getTrafficClass(),
+                SpeedTestConst.DEFAULT_TRAFFIC_CLASS);
+        Assert.assertEquals(HEADER + "target rate should not be negative", mSocket.getAutoBufferTargetRate(), 0);
+
+        mSocket.setReceiveBufferSize(TestCommon.RECEIVE_BUFFER_SIZE);
+        mSocket.setSendBufferSize(TestCommon.SEND_BUFFER_SIZE);
+        mSocket.setTcpNoDelay(true);
+        mSocket.setTrafficClass(TestCommon.TRAFFIC_CLASS);
+        mSocket.setQuickAck(true);
+        mSocket.setAutoBufferTargetRate(TestCommon.AUTO_BUFFER_TARGET_RATE);
+        Assert.assertEquals(HEADER + "receive buffer size incorrect value after set", mSocket
+                .getReceiveBufferSize(), TestCommon.RECEIVE_BUFFER_SIZE);
+        Assert.assertEquals(HEADER + "send buffer size incorrect value after set", mSocket.getSendBufferSize(),
+                TestCommon.SEND_BUFFER_SIZE);
+        Assert.assertTrue(HEADER + "TCP_NODELAY incorrect value after set", mSocket.isTcpNoDelay());
+        Assert.assertEquals(HEADER + "traffic class incorrect value after set", mSocket.getTrafficClass(),
+                TestCommon.TRAFFIC_CLASS);
+        Assert.assertTrue(HEADER + "quick ack incorrect value after set", mSocket.isQuickAck());
+        Assert.assertEquals(HEADER + "target rate incorrect value after set", mSocket.getAutoBufferTargetRate(),
+                TestCommon.AUTO_BUFFER_TARGET_RATE);
+    }
+
+    /**
+     * test pipeline depth default value & setter.
+     */
+    @Test
+    public void pipelineDepthSetterTest() {
+        Assert.assertEquals(HEADER + "pipeline depth should be 1 for default value", mSocket.getPipelineDepth(), 1);
+        mSocket.setPipelineDepth(0);
+        Assert.assertEquals(HEADER + "pipeline depth should not be 0", mSocket.getPipelineDepth(), 1);
+        mSocket.setPipelineDepth(TestCommon.PIPELINE_DEPTH);
+        Assert.assertEquals(HEADER + "pipeline depth incorrect value after set", mSocket.getPipelineDepth(),
+                TestCommon.PIPELINE_DEPTH);
+    }
+
+    /**
+     * test upload payload cache maximum size setter.
+     */
+    @Test
+    public void uploadCacheSizeSetterTest() {
+        final long defaultSize = UploadPayloadCache.getMaxSize();
+        UploadPayloadCache.setMaxSize(TestCommon.UPLOAD_CACHE_SIZE);
+        Assert.assertEquals(HEADER + "upload cache size incorrect value after set", UploadPayloadCache.getMaxSize(),
+                TestCommon.UPLOAD_CACHE_SIZE);
+        UploadPayloadCache.setMaxSize(-1);
+        Assert.assertEquals(HEADER + "upload cache size should not be negative", UploadPayloadCache.getMaxSize(),
+                TestCommon.UPLOAD_CACHE_SIZE);
+        UploadPayloadCache.setMaxSize(defaultSize);
+    }
+
+    /**
+     * test read buffer pool maximum size setter.
+     */
+    @Test
+    public void readBufferPoolSizeSetterTest() {
+        final long defaultSize = ReadBufferPool.getMaxSize();
+        ReadBufferPool.setMaxSize(TestCommon.READ_BUFFER_POOL_SIZE);
+        Assert.assertEquals(HEADER + "read buffer pool size incorrect value after set", ReadBufferPool.getMaxSize(),
+                TestCommon.READ_BUFFER_POOL_SIZE);
+        ReadBufferPool.setMaxSize(-1);
+        Assert.assertEquals(HEADER + "read buffer pool size should not be negative", ReadBufferPool.getMaxSize(),
+                TestCommon.READ_BUFFER_POOL_SIZE);
+        ReadBufferPool.setMaxSize(0);
+        Assert.assertEquals(HEADER + "read buffer pool should be empty", ReadBufferPool.getPooledSize(), 0);
+        ReadBufferPool.setMaxSize(defaultSize);
+    }
+
+    /**
+     * test DNS cache resolver, time to live and prefetch.
+     */
+    @Test
+    public void dnsCacheTest() throws UnknownHostException {
+
+        final int[] resolutions = new int[1];
+
+        DnsCache.setResolver(new IHostResolver() {
+            @Override
+            public InetAddress[] resolve(final String hostname) throws UnknownHostException {
+                resolutions[0]++;
+                return new InetAddress[]{InetAddress.getByAddress(TestCommon.DNS_CACHE_ADDRESS)};
+            }
+        });
+        DnsCache.prefetch(TestCommon.DNS_CACHE_HOST);
+        final InetAddress address = DnsCache.resolve(TestCommon.DNS_CACHE_HOST);
+        Assert.assertEquals(HEADER + "prefetched host should not be resolved again", resolutions[0], 1);
+        Assert.assertEquals(HEADER + "hostname should be kept", address.getHostName(), TestCommon.DNS_CACHE_HOST);
+        Assert.assertArrayEquals(HEADER + "address incorrect value", address.getAddress(),
+                TestCommon.DNS_CACHE_ADDRESS);
+
+        DnsCache.setTtl(0);
+        DnsCache.resolve(TestCommon.DNS_CACHE_HOST);
+        DnsCache.resolve(TestCommon.DNS_CACHE_HOST);
+        Assert.assertEquals(HEADER + "host should be resolved for each call when cache is disabled", resolutions[0],
+                3);
+        Assert.assertEquals(HEADER + "no host should be cached when cache is disabled", DnsCache.getCachedCount(), 0);
+
+        DnsCache.setTtl(-1);
+        Assert.assertEquals(HEADER + "ttl should not be negative", DnsCache.getTtl(), 0);
+
+        DnsCache.setTtl(SpeedTestConst.DEFAULT_DNS_CACHE_TTL);
+        DnsCache.setResolver(null);
+    }
+
     /**
      * test rounding mode setter valid value.
      */
@@ -608,6 +874,41 @@ public class SpeedTestSocketTest extends AbstractTest {
         mSocket.clearListeners();
     }
 
+    @Test
+    public void chunkedUploadTest() throws TimeoutException {
+
+        mSocket.setSocketTimeout(TestCommon.DEFAULT_SOCKET_TIMEOUT);
+
+        final int duration = 2000;
+
+        mSocket.addSpeedTestListener(new ISpeedTestListener() {
+            @Override
+            public void onCompletion(final SpeedTestReport report) {
+                mWaiter.assertTrue(report.getTemporaryPacketSize() > 0);
+                mWaiter.assertEquals(report.getTemporaryPacketSize(), report.getTotalPacketSize());
+                mWaiter.resume();
+            }
+
+            @Override
+            public void onProgress(final float percent, final SpeedTestReport report) {
+                //called to notify upload progress
+            }
+
+            @Override
+            public void onError(final SpeedTestError speedTestError, final String errorMessage) {
+                mWaiter.fail("unexpected error in onUploadError : " + speedTestError);
+            }
+        });
+
+        mWaiter = new Waiter();
+        mSocket.startChunkedUpload("http://" + TestCommon.SPEED_TEST_SERVER_HOST + ":" + TestCommon
+                .SPEED_TEST_SERVER_PORT + TestCommon.SPEED_TEST_SERVER_URI_UL, duration);
+
+        mWaiter.await(duration + TestCommon.FIXED_DURATION_OFFSET, TimeUnit.MILLISECONDS);
+
+        mSocket.clearListeners();
+    }
+
     /*
     @Test
     public void fixDurationWithReportIntervalTest() throws TimeoutException {
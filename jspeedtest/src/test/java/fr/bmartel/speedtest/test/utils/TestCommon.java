@@ -46,6 +46,46 @@ public class TestCommon {
      */
     public static final int SOCKET_TO_INVALID = -1;
 
+    /**
+     * value for connect timeout.
+     */
+    public static final int CONNECT_TO = 3000;
+
+    /**
+     * value for TLS handshake timeout.
+     */
+    public static final int HANDSHAKE_TO = 4000;
+
+    /**
+     * value for first byte timeout.
+     */
+    public static final int FIRST_BYTE_TO = 5000;
+
+    /**
+     * value for total test timeout.
+     */
+    public static final int TEST_TO = 30000;
+
+    /**
+     * value for min time between two progress reports.
+     */
+    public static final int PROGRESS_MIN_INTERVAL = 100;
+
+    /**
+     * value for min number of octet between two progress reports.
+     */
+    public static final long PROGRESS_MIN_OCTETS = 100000;
+
+    /**
+     * number of connections used for parallel & segmented download.
+     */
+    public static final int PARALLEL_CONNECTION_COUNT = 4;
+
+    /**
+     * value for listener event queue capacity.
+     */
+    public static final int LISTENER_QUEUE_CAPACITY = 64;
+
     /**
      * default value of upload chunk size.
      */
@@ -56,6 +96,61 @@ public class TestCommon {
      */
     public static final int UPLOAD_CHUNK_INVALID = 30000;
 
+    /**
+     * upload payload cache size value.
+     */
+    public static final long UPLOAD_CACHE_SIZE = 100000000;
+
+    /**
+     * minimum buffer size value for adaptive buffer size mode.
+     */
+    public static final int MIN_BUFFER_SIZE = 8192;
+
+    /**
+     * maximum buffer size value for adaptive buffer size mode.
+     */
+    public static final int MAX_BUFFER_SIZE = 524288;
+
+    /**
+     * socket receive buffer size value.
+     */
+    public static final int RECEIVE_BUFFER_SIZE = 4194304;
+
+    /**
+     * socket send buffer size value.
+     */
+    public static final int SEND_BUFFER_SIZE = 2097152;
+
+    /**
+     * socket traffic class value.
+     */
+    public static final int TRAFFIC_CLASS = 0x10;
+
+    /**
+     * target rate value for auto socket buffer mode.
+     */
+    public static final long AUTO_BUFFER_TARGET_RATE = 1000000000L;
+
+    /**
+     * hostname resolved by DNS cache test resolver.
+     */
+    public static final String DNS_CACHE_HOST = "speedtest.example";
+
+    /**
+     * address returned by DNS cache test resolver.
+     */
+    public static final byte[] DNS_CACHE_ADDRESS = new byte[]{(byte) 192, 0, 2, 1};
+
+    /**
+     * read buffer pool size value.
+     */
+    public static final long READ_BUFFER_POOL_SIZE = 8388608;
+
+    /**
+     * pipeline depth value.
+     */
+    public static final int PIPELINE_DEPTH = 8;
+
     /**
      * speed examples server host name.
      */